@@ -0,0 +1,45 @@
+package com.marketstem.database.redis;
+
+import com.fabahaba.jedipus.JedisExecutor;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.io.Closeable;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Plain pool against a single local Redis so benchmarks never touch the sentinel cluster.
+ */
+public class LocalJedisExecutor implements JedisExecutor, Closeable {
+
+  private final JedisPool jedisPool;
+
+  public LocalJedisExecutor() {
+    this(System.getProperty("redis.host", "localhost"), Integer.getInteger("redis.port", 6379));
+  }
+
+  public LocalJedisExecutor(final String host, final int port) {
+    this.jedisPool = new JedisPool(host, port);
+  }
+
+  @Override
+  public void acceptJedis(final Consumer<Jedis> jedisConsumer) {
+    try (final Jedis jedis = jedisPool.getResource()) {
+      jedisConsumer.accept(jedis);
+    }
+  }
+
+  @Override
+  public <T> T applyJedis(final Function<Jedis, T> jedisFunc) {
+    try (final Jedis jedis = jedisPool.getResource()) {
+      return jedisFunc.apply(jedis);
+    }
+  }
+
+  @Override
+  public void close() {
+    jedisPool.close();
+  }
+}
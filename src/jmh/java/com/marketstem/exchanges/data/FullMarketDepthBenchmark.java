@@ -0,0 +1,131 @@
+package com.marketstem.exchanges.data;
+
+import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.data.FullMarketDepth.MarketDepthBuilder;
+import com.marketstem.exchanges.data.ScaledMarketDepth.ScaledMarketDepthBuilder;
+import com.marketstem.services.marketdata.ExchangeDepthService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FullMarketDepthBenchmark {
+
+  static final AssetPair BTC_USD = AssetPair.fromStrings("BTC", "USD");
+
+  @Param({"10", "100", "1000"})
+  private int levels;
+
+  private String[][] bids;
+  private String[][] asks;
+  private FullMarketDepth depth;
+  private ScaledMarketDepth scaledDepth;
+  private String depthJson;
+  private BigDecimal priceAssetSpend;
+  private BigDecimal tradeAssetSpend;
+
+  @Setup
+  public void setup() {
+    final Random random = new Random(42);
+    bids = new String[levels][];
+    asks = new String[levels][];
+    BigDecimal bidPrice = new BigDecimal("250.00000000");
+    BigDecimal askPrice = new BigDecimal("250.01000000");
+    BigDecimal bidQuantitySum = BigDecimal.ZERO;
+    BigDecimal askCostSum = BigDecimal.ZERO;
+    for (int i = 0; i < levels; i++) {
+      final BigDecimal bidQuantity = randomQuantity(random);
+      final BigDecimal askQuantity = randomQuantity(random);
+      bids[i] = new String[] {bidPrice.toPlainString(), bidQuantity.toPlainString()};
+      asks[i] = new String[] {askPrice.toPlainString(), askQuantity.toPlainString()};
+      if (i < levels / 2) {
+        bidQuantitySum = bidQuantitySum.add(bidQuantity);
+        askCostSum = askCostSum.add(askQuantity.multiply(askPrice));
+      }
+      bidPrice = bidPrice.subtract(randomTick(random));
+      askPrice = askPrice.add(randomTick(random));
+    }
+    // Spend roughly half of each side so both consume loops walk the book.
+    tradeAssetSpend = bidQuantitySum.max(BigDecimal.ONE);
+    priceAssetSpend = askCostSum.max(BigDecimal.ONE);
+    depth = build();
+    scaledDepth = buildScaled();
+    depthJson = ExchangeDepthService.MARKET_DEPTH_GSON.toJson(depth);
+  }
+
+  private static BigDecimal randomQuantity(final Random random) {
+    return BigDecimal.valueOf(1 + random.nextInt(5_000_000_00), 8);
+  }
+
+  private static BigDecimal randomTick(final Random random) {
+    return BigDecimal.valueOf(1 + random.nextInt(50), 2);
+  }
+
+  @Benchmark
+  public FullMarketDepth build() {
+    final MarketDepthBuilder builder = FullMarketDepth.builder(Exchange.BITSTAMP, BTC_USD);
+    for (final String[] bid : bids) {
+      builder.addBid(bid[0], bid[1]);
+    }
+    for (final String[] ask : asks) {
+      builder.addAsk(ask[0], ask[1]);
+    }
+    return builder.build();
+  }
+
+  @Benchmark
+  public Optional<BigDecimal> spendXTradeConsumeAsks() {
+    return depth.spendXTrade(priceAssetSpend, BTC_USD.getPriceAsset());
+  }
+
+  @Benchmark
+  public Optional<BigDecimal> spendXTradeConsumeBids() {
+    return depth.spendXTrade(tradeAssetSpend, BTC_USD.getTradeAsset());
+  }
+
+  @Benchmark
+  public ScaledMarketDepth buildScaled() {
+    final ScaledMarketDepthBuilder builder = ScaledMarketDepth.builder(Exchange.BITSTAMP, BTC_USD);
+    for (final String[] bid : bids) {
+      builder.addBid(bid[0], bid[1]);
+    }
+    for (final String[] ask : asks) {
+      builder.addAsk(ask[0], ask[1]);
+    }
+    return builder.build();
+  }
+
+  @Benchmark
+  public Optional<BigDecimal> spendXTradeScaledConsumeAsks() {
+    return scaledDepth.spendXTrade(priceAssetSpend, BTC_USD.getPriceAsset());
+  }
+
+  @Benchmark
+  public Optional<BigDecimal> spendXTradeScaledConsumeBids() {
+    return scaledDepth.spendXTrade(tradeAssetSpend, BTC_USD.getTradeAsset());
+  }
+
+  @Benchmark
+  public FullMarketDepth deserialize() {
+    return ExchangeDepthService.MARKET_DEPTH_GSON.fromJson(depthJson, FullMarketDepth.class);
+  }
+}
@@ -0,0 +1,49 @@
+package com.marketstem.exchanges.data;
+
+import com.marketstem.exchanges.Exchange;
+import com.marketstem.services.marketdata.ExchangeTickerService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TickerMarshallerBenchmark {
+
+  private Ticker ticker;
+  private String tickerJson;
+
+  @Setup
+  public void setup() {
+    ticker =
+        new Ticker(Exchange.BITSTAMP, FullMarketDepthBenchmark.BTC_USD, new BigDecimal(
+            "251.37000000"), new BigDecimal("251.21"), new BigDecimal("251.45"), new BigDecimal(
+            "256.00"), new BigDecimal("244.10"), new BigDecimal("12876.43105521"));
+    tickerJson = ExchangeTickerService.TICKER_GSON.toJson(ticker);
+  }
+
+  @Benchmark
+  public String serialize() {
+    return ExchangeTickerService.TICKER_GSON.toJson(ticker);
+  }
+
+  @Benchmark
+  public Ticker deserialize() {
+    return ExchangeTickerService.TICKER_GSON.fromJson(tickerJson, Ticker.class);
+  }
+}
@@ -0,0 +1,180 @@
+package com.marketstem.serialization;
+
+import com.fabahaba.fava.serialization.gson.InstantIso8601JsonMarshaller;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.exchanges.data.AssetPair.AssetPairMarshaller;
+import com.marketstem.exchanges.data.FullMarketDepth;
+import com.marketstem.exchanges.data.FullMarketDepth.MarketDepthBuilder;
+import com.marketstem.exchanges.data.FullMarketDepth.MarketDepthDeserializer;
+import com.marketstem.exchanges.data.PublicLimitOrder;
+import com.marketstem.exchanges.data.PublicLimitOrder.PublicLimitOrderSerializer;
+import com.marketstem.exchanges.data.PublicTrade;
+import com.marketstem.exchanges.data.PublicTrade.PublicTradeMarshaller;
+import com.marketstem.exchanges.data.Ticker;
+import com.marketstem.exchanges.data.Ticker.TickerMarshaller;
+import com.marketstem.services.cache.MarketDataCacheService;
+import com.marketstem.services.marketdata.aggregation.data.AggregateTickerSnapshot;
+import com.marketstem.services.marketdata.aggregation.data.AggregateTickerSnapshot.AggregateTickerSnapshotMarshaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tree marshallers ({@code JsonMarshaller}/{@code JsonDeserializer}) against the streaming
+ * {@code TypeAdapter}s registered in {@link Marshalling#BASE_GSON_BUILDER}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MarshallingBenchmark {
+
+  private static final AssetPair BTC_USD = AssetPair.fromStrings("BTC", "USD");
+  private static final int DEPTH_LEVELS = 100;
+  private static final int TICKERS_PER_MESSAGE = 50;
+
+  @Param({"tree", "streaming"})
+  private String marshalling;
+
+  private Gson gson;
+  private Ticker ticker;
+  private String tickerJson;
+  private String tickersJson;
+  private FullMarketDepth depth;
+  private String depthJson;
+  private PublicTrade trade;
+  private String tradeJson;
+  private AggregateTickerSnapshot aggregateTicker;
+  private String aggregateTickerJson;
+
+  @Setup
+  public void setup() {
+    gson = marshalling.equals("tree") ? treeGson() : Marshalling.BASE_GSON;
+
+    ticker =
+        new Ticker(Exchange.BITSTAMP, BTC_USD, new BigDecimal("251.37000000"), new BigDecimal(
+            "251.21"), new BigDecimal("251.45"), new BigDecimal("256.00"), new BigDecimal(
+            "244.10"), new BigDecimal("12876.43105521"));
+    tickerJson = gson.toJson(ticker);
+    final List<Ticker> tickers = new ArrayList<>();
+    for (int i = 0; i < TICKERS_PER_MESSAGE; i++) {
+      tickers.add(ticker);
+    }
+    tickersJson = gson.toJson(tickers, MarketDataCacheService.TICKER_TYPE);
+
+    final MarketDepthBuilder depthBuilder = FullMarketDepth.builder(Exchange.BITSTAMP, BTC_USD);
+    for (int level = 0; level < DEPTH_LEVELS; level++) {
+      depthBuilder.addBid(BigDecimal.valueOf(25000 - level * 7, 2),
+          BigDecimal.valueOf(100_000_000L + level * 3_141_593L, 8));
+      depthBuilder.addAsk(BigDecimal.valueOf(25001 + level * 7, 2),
+          BigDecimal.valueOf(100_000_000L + level * 2_718_282L, 8));
+    }
+    depth = depthBuilder.build();
+    depthJson = gson.toJson(depth);
+
+    trade =
+        PublicTrade.create("1234567", BTC_USD, new BigDecimal("0.51200000"), new BigDecimal(
+            "251.37"), Instant.now());
+    tradeJson = gson.toJson(trade);
+
+    final Map<Exchange, BigDecimal> exchangeVolumes = new EnumMap<>(Exchange.class);
+    exchangeVolumes.put(Exchange.BITSTAMP, new BigDecimal("12876.43105521"));
+    exchangeVolumes.put(Exchange.BITFINEX, new BigDecimal("30211.1"));
+    final Map<AssetPair, BigDecimal> marketVolumes = new HashMap<>();
+    marketVolumes.put(BTC_USD, new BigDecimal("43087.53105521"));
+    marketVolumes.put(AssetPair.fromStrings("BTC", "EUR"), new BigDecimal("8110.2"));
+    aggregateTicker =
+        new AggregateTickerSnapshot(BTC_USD, Optional.of(new BigDecimal("251.45")),
+            Optional.of(new BigDecimal("251.21")), Optional.of(new BigDecimal("251.37")),
+            Optional.of(new BigDecimal("251.30")), Optional.of(new BigDecimal("244.10")),
+            Optional.of(new BigDecimal("256.00")), new BigDecimal("43087.53105521"),
+            exchangeVolumes, new BigDecimal("51197.73105521"), new BigDecimal("51197.73105521"),
+            marketVolumes, Instant.now());
+    aggregateTickerJson = gson.toJson(aggregateTicker);
+  }
+
+  /**
+   * The registrations the services used before the streaming adapters.
+   */
+  private static Gson treeGson() {
+    return new GsonBuilder().enableComplexMapKeySerialization().disableHtmlEscaping()
+        .registerTypeAdapter(BigDecimal.class, new BigDecimalSerializer())
+        .registerTypeAdapter(Instant.class, new InstantIso8601JsonMarshaller())
+        .registerTypeAdapter(AssetPair.class, new AssetPairMarshaller())
+        .registerTypeAdapter(PublicLimitOrder.class, new PublicLimitOrderSerializer())
+        .registerTypeAdapter(Ticker.class, new TickerMarshaller())
+        .registerTypeAdapter(FullMarketDepth.class, new MarketDepthDeserializer())
+        .registerTypeAdapter(PublicTrade.class, new PublicTradeMarshaller())
+        .registerTypeAdapter(AggregateTickerSnapshot.class, new AggregateTickerSnapshotMarshaller())
+        .create();
+  }
+
+  @Benchmark
+  public String serializeTicker() {
+    return gson.toJson(ticker);
+  }
+
+  @Benchmark
+  public Ticker deserializeTicker() {
+    return gson.fromJson(tickerJson, Ticker.class);
+  }
+
+  @Benchmark
+  public List<Ticker> deserializeTickers() {
+    return gson.fromJson(tickersJson, MarketDataCacheService.TICKER_TYPE);
+  }
+
+  @Benchmark
+  public String serializeDepth() {
+    return gson.toJson(depth);
+  }
+
+  @Benchmark
+  public FullMarketDepth deserializeDepth() {
+    return gson.fromJson(depthJson, FullMarketDepth.class);
+  }
+
+  @Benchmark
+  public String serializeTrade() {
+    return gson.toJson(trade);
+  }
+
+  @Benchmark
+  public PublicTrade deserializeTrade() {
+    return gson.fromJson(tradeJson, PublicTrade.class);
+  }
+
+  @Benchmark
+  public String serializeAggregateTicker() {
+    return gson.toJson(aggregateTicker);
+  }
+
+  @Benchmark
+  public AggregateTickerSnapshot deserializeAggregateTicker() {
+    return gson.fromJson(aggregateTickerJson, AggregateTickerSnapshot.class);
+  }
+}
@@ -0,0 +1,115 @@
+package com.marketstem.services.marketdata.aggregation;
+
+import com.fabahaba.jedipus.cache.RedisHashCache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.marketstem.database.redis.LocalJedisExecutor;
+import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.services.marketdata.aggregation.data.AggregateTickerSnapshot;
+import com.marketstem.services.marketdata.aggregation.data.ConversionRate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requires a local Redis, see {@link LocalJedisExecutor}. Seeds its own hash so production keys are
+ * never read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AssetConverterBenchmark {
+
+  private static final String HASH_NAME = "AGGREGATE_TICKER_JMH";
+
+  private static final AssetPair BTC_USD = AssetPair.fromStrings("BTC", "USD");
+  private static final AssetPair USD_BTC = BTC_USD.reverse();
+  private static final AssetPair LTC_USD = AssetPair.fromStrings("LTC", "USD");
+  private static final AssetPair DOGE_EUR = AssetPair.fromStrings("DOGE", "EUR");
+
+  private LocalJedisExecutor jedisExecutor;
+  private AssetConverter assetConverter;
+
+  @Setup
+  public void setup() {
+    jedisExecutor = new LocalJedisExecutor();
+    jedisExecutor.acceptJedis(jedis -> jedis.del(HASH_NAME));
+
+    final RedisHashCache<AssetPair, AggregateTickerSnapshot> aggregateTickers =
+        new RedisHashCache<>(AggregateTickerSnapshot.AGGREGATE_TICKER_GSON, jedisExecutor,
+            HASH_NAME, AssetPair.class, AggregateTickerSnapshot.class, CacheBuilder.newBuilder()
+                .maximumSize(1000).expireAfterAccess(120, TimeUnit.SECONDS)
+                .refreshAfterWrite(30, TimeUnit.SECONDS));
+
+    final ImmutableMap.Builder<AssetPair, AggregateTickerSnapshot> snapshots =
+        ImmutableMap.builder();
+    put(snapshots, "BTC", "USD", "250.12", "31000");
+    put(snapshots, "BTC", "EUR", "223.40", "9000");
+    put(snapshots, "BTC", "CNY", "1552.3", "240000");
+    put(snapshots, "LTC", "BTC", "0.01205", "120000");
+    put(snapshots, "DOGE", "LTC", "0.00001050", "90000000");
+    put(snapshots, "XRP", "BTC", "0.00003410", "30000000");
+    put(snapshots, "NXT", "BTC", "0.00004400", "4000000");
+    put(snapshots, "DRK", "BTC", "0.01010000", "20000");
+    aggregateTickers.putAll(snapshots.build());
+
+    assetConverter = new AssetConverter(aggregateTickers);
+  }
+
+  private static void put(final ImmutableMap.Builder<AssetPair, AggregateTickerSnapshot> snapshots,
+      final String tradeAsset, final String priceAsset, final String price, final String volume) {
+    final AssetPair market = AssetPair.fromStrings(tradeAsset, priceAsset);
+    final Optional<BigDecimal> last = Optional.of(new BigDecimal(price));
+    final BigDecimal totalVolume = new BigDecimal(volume);
+    final Map<Exchange, BigDecimal> exchangeVolumes =
+        ImmutableMap.of(Exchange.BITSTAMP, totalVolume);
+    final Map<AssetPair, BigDecimal> marketVolumes = ImmutableMap.of(market, totalVolume);
+    snapshots.put(market, new AggregateTickerSnapshot(market, last, last, last, last, last, last,
+        totalVolume, exchangeVolumes, totalVolume, totalVolume, marketVolumes, Instant.now()));
+  }
+
+  @TearDown
+  public void tearDown() {
+    jedisExecutor.acceptJedis(jedis -> jedis.del(HASH_NAME));
+    jedisExecutor.close();
+  }
+
+  @Benchmark
+  public Optional<ConversionRate> direct() {
+    return assetConverter.getConversionRate(BTC_USD);
+  }
+
+  @Benchmark
+  public Optional<ConversionRate> reverse() {
+    return assetConverter.getConversionRate(USD_BTC);
+  }
+
+  @Benchmark
+  public Optional<ConversionRate> oneProxy() {
+    return assetConverter.getConversionRate(LTC_USD);
+  }
+
+  @Benchmark
+  public Optional<ConversionRate> twoProxies() {
+    return assetConverter.getConversionRate(DOGE_EUR);
+  }
+}
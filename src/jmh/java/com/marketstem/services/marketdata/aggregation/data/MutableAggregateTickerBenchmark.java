@@ -0,0 +1,79 @@
+package com.marketstem.services.marketdata.aggregation.data;
+
+import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.exchanges.data.Ticker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MutableAggregateTickerBenchmark {
+
+  private static final AssetPair BTC_USD = AssetPair.fromStrings("BTC", "USD");
+
+  @Param({"4", "18"})
+  private int numExchanges;
+
+  private Ticker[] tickers;
+  private MutableAggregateTicker aggregateTicker;
+  private int nextTicker;
+
+  @Setup(Level.Trial)
+  public void createTickers() {
+    final Random random = new Random(42);
+    final Exchange[] exchanges = Exchange.values();
+    tickers = new Ticker[numExchanges];
+    for (int i = 0; i < numExchanges; i++) {
+      final BigDecimal last = BigDecimal.valueOf(25_000 + random.nextInt(200), 2);
+      tickers[i] =
+          new Ticker(exchanges[i % exchanges.length], BTC_USD, last, last.subtract(BigDecimal
+              .valueOf(random.nextInt(50), 2)), last.add(BigDecimal.valueOf(random.nextInt(50), 2)),
+              last.add(BigDecimal.TEN), last.subtract(BigDecimal.TEN), BigDecimal.valueOf(
+                  random.nextInt(1_000_000_000), 4));
+    }
+  }
+
+  /**
+   * Rebuilt every iteration because the VWA last price window grows with each snapshot.
+   */
+  @Setup(Level.Iteration)
+  public void createAggregateTicker() {
+    aggregateTicker = MutableAggregateTicker.getInstance(tickers[0]);
+    for (final Ticker ticker : tickers) {
+      aggregateTicker.addTicker(ticker);
+    }
+    nextTicker = 0;
+  }
+
+  @Benchmark
+  public MutableAggregateTicker addTicker() {
+    final Ticker ticker = tickers[nextTicker];
+    nextTicker = (nextTicker + 1) % tickers.length;
+    return aggregateTicker.addTicker(ticker);
+  }
+
+  @Benchmark
+  public AggregateTickerSnapshot createSnapshot() {
+    return aggregateTicker.createSnapshot();
+  }
+}
@@ -24,4 +24,29 @@ public interface MarketstemS3cured extends S3curedCache {
   default Gson getGson() {
     return Marshalling.BASE_GSON;
   }
+
+  /**
+   * @return the {@link #getEndpointOverrideProperty()} system property if set, so a separate
+   *         cluster, e.g. a simulated one, can point at its own servers, else the configured one.
+   */
+  @Override
+  default String getEndpoint() {
+    final String override = System.getProperty(getEndpointOverrideProperty());
+    return override == null ? S3curedCache.super.getEndpoint() : override;
+  }
+
+  /**
+   * @return e.g. {@code marketstem.endpoint.RedisExecutor.MARKETSTEM}.
+   */
+  default String getEndpointOverrideProperty() {
+    return "marketstem.endpoint." + getClass().getSimpleName() + "." + name();
+  }
+
+  /**
+   * @return whether the endpoint is overridden with one other than the configured endpoint.
+   */
+  default boolean isEndpointOverridden() {
+    final String override = System.getProperty(getEndpointOverrideProperty());
+    return override != null && !override.equals(S3curedCache.super.getEndpoint());
+  }
 }
@@ -1,24 +1,25 @@
 package com.marketstem.exchanges;
 
-import com.fabahaba.fava.collect.MapUtils;
-import com.fabahaba.jedipus.cache.RedisHashCache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.util.concurrent.RateLimiter;
 import com.marketstem.database.redis.RedisExecutor;
 import com.marketstem.exchanges.data.AssetPair;
 import com.marketstem.exchanges.data.AssetPair.AssetPairMarshaller;
+import com.marketstem.exchanges.ratelimit.DistributedRateLimiter;
 import com.marketstem.serialization.Marshalling;
+import com.marketstem.services.cache.PipelinedRedisHashCache;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 public abstract class BaseExchangeClient implements ExchangeClient {
 
   private final Exchange exchange;
-  private final RedisHashCache<AssetPair, Long> lastTradeIds;
+  private final PipelinedRedisHashCache<AssetPair, Long> lastTradeIds;
   private final RateLimiter publicApiRateLimiter;
   private final RateLimiter authenticateApiRateLimiter;
+  private final DistributedRateLimiter distributedApiRateLimiter;
   private final double tickerRate;
   private final double depthRate;
   private final double tradesRate;
@@ -28,21 +29,24 @@ public abstract class BaseExchangeClient implements ExchangeClient {
       final double tradesRate) {
     this.exchange = exchange;
     this.lastTradeIds =
-        new RedisHashCache<>(Marshalling.BASE_GSON_BUILDER.registerTypeAdapter(AssetPair.class,
-            new AssetPairMarshaller()).create(), RedisExecutor.MARKETSTEM, "lastTradeIds."
-            + exchange, AssetPair.class, Long.class, CacheBuilder.newBuilder().expireAfterAccess(
-            60, TimeUnit.SECONDS));
+        new PipelinedRedisHashCache<>(Marshalling.BASE_GSON_BUILDER.registerTypeAdapter(
+            AssetPair.class, new AssetPairMarshaller()).create(), RedisExecutor.MARKETSTEM,
+            "lastTradeIds." + exchange, AssetPair.class, Long.class, CacheBuilder.newBuilder()
+                .expireAfterAccess(60, TimeUnit.SECONDS));
 
     this.publicApiRateLimiter = RateLimiter.create(publicApiRate);
     this.authenticateApiRateLimiter = RateLimiter.create(authenticatedApiRate);
+    this.distributedApiRateLimiter =
+        DistributedRateLimiter.create(exchange + ".public", publicApiRate);
     this.tickerRate = tickerRate;
     this.depthRate = depthRate;
     this.tradesRate = tradesRate;
   }
 
-  private final Map<String, RateLimiter> tickerRateLimiters = new HashMap<>();
-  private final Map<String, RateLimiter> depthRateLimiters = new HashMap<>();
-  private final Map<String, RateLimiter> tradesRateLimiters = new HashMap<>();
+  // Read by the pollers' workers and re-rated by the poll scheduler concurrently.
+  private final ConcurrentMap<String, RateLimiter> tickerRateLimiters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, RateLimiter> depthRateLimiters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, RateLimiter> tradesRateLimiters = new ConcurrentHashMap<>();
 
   @Override
   public RateLimiter getAuthenticatedApiLimiter() {
@@ -54,37 +58,42 @@ public abstract class BaseExchangeClient implements ExchangeClient {
     return publicApiRateLimiter;
   }
 
+  @Override
+  public DistributedRateLimiter getDistributedApiLimiter() {
+    return distributedApiRateLimiter;
+  }
+
   @Override
   public RateLimiter getTickerRateLimiter(final AssetPair assetPair) {
-    return MapUtils.createIfNull(tickerRateLimiters, assetPair.toString(),
-        () -> RateLimiter.create(tickerRate));
+    return tickerRateLimiters.computeIfAbsent(assetPair.toString(),
+        key -> RateLimiter.create(tickerRate));
   }
 
   @Override
   public RateLimiter getTickersRateLimiter() {
-    return MapUtils.createIfNull(tickerRateLimiters, "*", () -> RateLimiter.create(tickerRate));
+    return tickerRateLimiters.computeIfAbsent("*", key -> RateLimiter.create(tickerRate));
   }
 
   @Override
   public RateLimiter getDepthRateLimiter(final AssetPair assetPair) {
-    return MapUtils.createIfNull(depthRateLimiters, assetPair.toString(),
-        () -> RateLimiter.create(depthRate));
+    return depthRateLimiters.computeIfAbsent(assetPair.toString(),
+        key -> RateLimiter.create(depthRate));
   }
 
   @Override
   public RateLimiter getDepthsRateLimiter() {
-    return MapUtils.createIfNull(depthRateLimiters, "*", () -> RateLimiter.create(depthRate));
+    return depthRateLimiters.computeIfAbsent("*", key -> RateLimiter.create(depthRate));
   }
 
   @Override
   public RateLimiter getTradesRateLimiter(final AssetPair assetPair) {
-    return MapUtils.createIfNull(tradesRateLimiters, assetPair.toString(),
-        () -> RateLimiter.create(tradesRate));
+    return tradesRateLimiters.computeIfAbsent(assetPair.toString(),
+        key -> RateLimiter.create(tradesRate));
   }
 
   @Override
   public RateLimiter getTradesRateLimiter() {
-    return MapUtils.createIfNull(tradesRateLimiters, "*", () -> RateLimiter.create(tradesRate));
+    return tradesRateLimiters.computeIfAbsent("*", key -> RateLimiter.create(tradesRate));
   }
 
   @Override
@@ -93,7 +102,7 @@ public abstract class BaseExchangeClient implements ExchangeClient {
   }
 
   @Override
-  public RedisHashCache<AssetPair, Long> getLastTradeIdsCache() {
+  public PipelinedRedisHashCache<AssetPair, Long> getLastTradeIdsCache() {
     return lastTradeIds;
   }
 
@@ -92,6 +92,14 @@ public enum Exchange {
     return getData().getExchangeClient();
   }
 
+  public ExchangePoller getPoller() {
+    return getData().getPoller();
+  }
+
+  public MarketPollScheduler getPollScheduler() {
+    return getData().getPollScheduler();
+  }
+
   public Optional<Map<Object, BigDecimal>> getWallet() {
     return getClient().getWallet();
   }
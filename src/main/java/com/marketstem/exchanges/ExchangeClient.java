@@ -1,23 +1,21 @@
 package com.marketstem.exchanges;
 
-import com.fabahaba.fava.cache.AsyncCacheLoader;
 import com.fabahaba.fava.func.Retryable;
 import com.fabahaba.jedipus.cache.RedisHashCache;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.RateLimiter;
 import com.marketstem.config.MarketstemS3cured;
+import com.marketstem.exchanges.MarketPollScheduler.Resource;
 import com.marketstem.exchanges.data.Asset;
 import com.marketstem.exchanges.data.AssetPair;
 import com.marketstem.exchanges.data.FullMarketDepth;
 import com.marketstem.exchanges.data.PublicTrade;
 import com.marketstem.exchanges.data.Ticker;
+import com.marketstem.exchanges.ratelimit.DistributedRateLimiter;
+import com.marketstem.services.cache.PipelinedRedisHashCache;
 import com.marketstem.services.cache.RedisHashCaches;
-import com.xeiam.xchange.ExchangeFactory;
-import com.xeiam.xchange.ExchangeSpecification;
 import com.xeiam.xchange.currency.CurrencyPair;
 import com.xeiam.xchange.dto.trade.Wallet;
 import com.xeiam.xchange.exceptions.ExchangeException;
@@ -34,7 +32,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 public interface ExchangeClient extends MarketstemS3cured, Retryable {
@@ -44,55 +42,16 @@ public interface ExchangeClient extends MarketstemS3cured, Retryable {
     return Exchange.class.getSimpleName().toLowerCase() + "-secrets";
   }
 
-  static final LoadingCache<ExchangeClient, ThreadLocal<com.xeiam.xchange.Exchange>> xeiamExchangeClients =
-      CacheBuilder
-          .newBuilder()
-          .refreshAfterWrite(1, TimeUnit.HOURS)
-          .build(
-              AsyncCacheLoader.create(
-                  exchangeClient -> {
-                    final ThreadLocal<com.xeiam.xchange.Exchange> localExchangeClient =
-                        ThreadLocal.withInitial(() -> {
-                          final com.xeiam.xchange.Exchange xeiamExchangeClient =
-                              ExchangeFactory.INSTANCE.createExchange(exchangeClient.getExchange()
-                                  .getExchangeClass().getName());
-                          final ExchangeSpecification exchangeSpec =
-                              xeiamExchangeClient.getExchangeSpecification();
-                          final String user = exchangeClient.getUser();
-                          if (user != null) {
-                            exchangeSpec.setUserName(user);
-                          }
-                          final String pass = exchangeClient.getPass();
-                          if (pass != null) {
-                            exchangeSpec.setPassword(pass);
-                          }
-                          final String key = exchangeClient.getKey();
-                          if (key != null) {
-                            exchangeSpec.setApiKey(key);
-                          }
-                          final String secret = exchangeClient.getSecret();
-                          if (secret != null) {
-                            exchangeSpec.setSecretKey(secret);
-                          }
-
-                          xeiamExchangeClient.applySpecification(exchangeSpec);
-
-                          exchangeClient.getExchange().getData().refreshCachedAssetPairs();
-                          return xeiamExchangeClient;
-                        });
-                    return localExchangeClient;
-                  }, true));
-
   public Exchange getExchange();
 
-  public RedisHashCache<AssetPair, Long> getLastTradeIdsCache();
+  public PipelinedRedisHashCache<AssetPair, Long> getLastTradeIdsCache();
 
   default Long getLastTradeId(final AssetPair assetPair) {
     return getLastTradeIdsCache().get(assetPair).orElse(1L);
   }
 
   default com.xeiam.xchange.Exchange getXeiamExchangeClient() {
-    return ExchangeClient.xeiamExchangeClients.getUnchecked(this).get();
+    return ExchangeClientManager.MARKETSTEM.getClient(this);
   }
 
   default PollingAccountService getAccountService() {
@@ -111,11 +70,36 @@ public interface ExchangeClient extends MarketstemS3cured, Retryable {
 
   public RateLimiter getAuthenticatedApiLimiter();
 
+  /**
+   * The public api budget shared with every other node calling this exchange.
+   */
+  public DistributedRateLimiter getDistributedApiLimiter();
+
+  default void acquirePublicApi() {
+    getPublicApiLimiter().acquire();
+    getDistributedApiLimiter().acquire();
+  }
+
+  /**
+   * Feeds the outcome and latency of {@code call} to the adaptive rate control of its resource.
+   */
+  default <T> Callable<T> observe(final Resource resource, final Callable<T> call) {
+    return getExchange().getPollScheduler().getRateController(resource).observe(call);
+  }
+
+  /**
+   * {@link #observe} for an all markets call, timed apart from the single market calls.
+   */
+  default <T> Callable<T> observeBulk(final Resource resource, final Callable<T> call) {
+    return getExchange().getPollScheduler().getRateController(resource).observeBulk(call);
+  }
+
   default Runnable
       createAcquirable(final RateLimiter apiLimiter, final RateLimiter resourceLimiter) {
     return () -> {
       resourceLimiter.acquire();
       apiLimiter.acquire();
+      getDistributedApiLimiter().acquire();
     };
   }
 
@@ -169,7 +153,7 @@ public interface ExchangeClient extends MarketstemS3cured, Retryable {
 
   default Optional<Collection<AssetPair>> callForAssetPairs() {
     final Optional<Collection<CurrencyPair>> currencyPairs =
-        retryCall(getMarketDataService()::getExchangeSymbols, getPublicApiLimiter()::acquire,
+        retryCall(getMarketDataService()::getExchangeSymbols, this::acquirePublicApi,
             e -> handleException(e, "Failed to get asset pairs for " + this),
             ExchangeClient.MAX_CALL_FOR_ASSET_PAIRS_ATTEMPTS);
 
@@ -226,8 +210,15 @@ public interface ExchangeClient extends MarketstemS3cured, Retryable {
   public RateLimiter getTickerRateLimiter(final AssetPair assetPair);
 
   default Optional<Ticker> callForTicker(final AssetPair assetPair) {
-    return call(() -> getTicker(toCurrencyPair(assetPair)),
-        createAcquirable(getPublicApiLimiter(), getTickerRateLimiter(assetPair)),
+    return callForTicker(assetPair,
+        createAcquirable(getPublicApiLimiter(), getTickerRateLimiter(assetPair)));
+  }
+
+  /**
+   * @param acquirable run before the request, a no-op when the caller already holds the permits.
+   */
+  default Optional<Ticker> callForTicker(final AssetPair assetPair, final Runnable acquirable) {
+    return call(observe(Resource.TICKER, () -> getTicker(toCurrencyPair(assetPair))), acquirable,
         e -> handleException(e, "Failed to get " + assetPair + " Ticker for " + this));
   }
 
@@ -241,7 +232,7 @@ public interface ExchangeClient extends MarketstemS3cured, Retryable {
   public RateLimiter getTickersRateLimiter();
 
   default Optional<Map<AssetPair, Ticker>> callForTickers() {
-    return call(() -> getTickers(),
+    return call(observeBulk(Resource.TICKER, () -> getTickers()),
         createAcquirable(getPublicApiLimiter(), getTickersRateLimiter()),
         e -> handleException(e, "Failed to get tickers for " + getExchange()));
   }
@@ -253,16 +244,21 @@ public interface ExchangeClient extends MarketstemS3cured, Retryable {
   public RateLimiter getDepthRateLimiter(final AssetPair assetPair);
 
   default Optional<FullMarketDepth> callForMarketDepth(final AssetPair assetPair) {
-    return call(() -> FullMarketDepth.fromOrderBook(getExchange(), assetPair,
-        getMarketDataService().getOrderBook(toCurrencyPair(assetPair))),
-        createAcquirable(getPublicApiLimiter(), getDepthRateLimiter(assetPair)),
+    return callForMarketDepth(assetPair,
+        createAcquirable(getPublicApiLimiter(), getDepthRateLimiter(assetPair)));
+  }
+
+  default Optional<FullMarketDepth> callForMarketDepth(final AssetPair assetPair,
+      final Runnable acquirable) {
+    return call(observe(Resource.DEPTH, () -> FullMarketDepth.fromOrderBook(getExchange(),
+        assetPair, getMarketDataService().getOrderBook(toCurrencyPair(assetPair)))), acquirable,
         e -> handleException(e, "Failed to get " + assetPair + " market depth for " + this));
   }
 
   public RateLimiter getDepthsRateLimiter();
 
   default Optional<Map<AssetPair, FullMarketDepth>> callForMarketDepths() {
-    return call(() -> getMarketDepths(),
+    return call(observeBulk(Resource.DEPTH, () -> getMarketDepths()),
         createAcquirable(getPublicApiLimiter(), getDepthsRateLimiter()),
         e -> handleException(e, "Failed to get depths for " + this));
   }
@@ -274,15 +270,20 @@ public interface ExchangeClient extends MarketstemS3cured, Retryable {
   public RateLimiter getTradesRateLimiter(final AssetPair assetPair);
 
   default Optional<List<PublicTrade>> callForPublicTrades(final AssetPair assetPair) {
-    return call(() -> getPublicTrades(assetPair),
-        createAcquirable(getPublicApiLimiter(), getTradesRateLimiter(assetPair)),
+    return callForPublicTrades(assetPair,
+        createAcquirable(getPublicApiLimiter(), getTradesRateLimiter(assetPair)));
+  }
+
+  default Optional<List<PublicTrade>> callForPublicTrades(final AssetPair assetPair,
+      final Runnable acquirable) {
+    return call(observe(Resource.TRADES, () -> getPublicTrades(assetPair)), acquirable,
         e -> handleException(e, "Failed to get " + assetPair + " Trades for " + this));
   }
 
   public RateLimiter getTradesRateLimiter();
 
   default Optional<List<PublicTrade>> callForAllPublicTrades() {
-    return call(() -> getAllPublicTrades(),
+    return call(observeBulk(Resource.TRADES, () -> getAllPublicTrades()),
         createAcquirable(getPublicApiLimiter(), getTradesRateLimiter()),
         e -> handleException(e, "Failed to get all Trades for " + this));
   }
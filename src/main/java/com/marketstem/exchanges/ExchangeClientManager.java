@@ -0,0 +1,126 @@
+package com.marketstem.exchanges;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fabahaba.fava.logging.Loggable;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.marketstem.services.metrics.MarketstemMetrics;
+import com.xeiam.xchange.ExchangeFactory;
+import com.xeiam.xchange.ExchangeSpecification;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Owns the single xchange client of each exchange. Clients are shared by every thread, so they
+ * share their http connections, and are rebuilt in the background every
+ * {@link #REFRESH_INTERVAL} and swapped in atomically while callers keep using the previous one.
+ *
+ * <p>
+ * The http connections themselves are pooled by {@link java.net.HttpURLConnection}, sized at
+ * startup by {@link ExchangePoller#configureHttpMaxConnections()}.
+ * </p>
+ */
+enum ExchangeClientManager implements Loggable {
+
+  MARKETSTEM;
+
+  static final Duration REFRESH_INTERVAL = Duration.ofHours(1);
+
+  private final ConcurrentMap<Exchange, ManagedClient> clients = new ConcurrentHashMap<>();
+  private final ExecutorService refresher = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("exchange-client-refresher")
+          .build());
+
+  com.xeiam.xchange.Exchange getClient(final ExchangeClient exchangeClient) {
+    return clients.computeIfAbsent(exchangeClient.getExchange(),
+        exchange -> new ManagedClient(exchangeClient)).get();
+  }
+
+  private class ManagedClient {
+
+    private final ExchangeClient exchangeClient;
+    private final Meter creations;
+    private final Meter uses;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile com.xeiam.xchange.Exchange client = null;
+    private volatile Instant created = null;
+
+    private ManagedClient(final ExchangeClient exchangeClient) {
+      this.exchangeClient = exchangeClient;
+      final MetricRegistry registry = MarketstemMetrics.MARKETSTEM.getRegistry();
+      final String exchange = exchangeClient.getExchange().toString();
+      this.creations = registry.meter(MetricRegistry.name("xchange", exchange, "clientCreations"));
+      this.uses = registry.meter(MetricRegistry.name("xchange", exchange, "clientUses"));
+      registry.register(MetricRegistry.name("xchange", exchange, "clientAgeSeconds"),
+          (Gauge<Long>) () -> created == null ? 0 : Duration.between(created, Instant.now())
+              .getSeconds());
+    }
+
+    private com.xeiam.xchange.Exchange get() {
+      uses.mark();
+      com.xeiam.xchange.Exchange current = client;
+      if (current == null) {
+        synchronized (this) {
+          current = client;
+          if (current == null) {
+            current = swap(create());
+          }
+        }
+      } else if (Instant.now().isAfter(created.plus(REFRESH_INTERVAL))
+          && refreshing.compareAndSet(false, true)) {
+        refresher.execute(this::refresh);
+      }
+      return current;
+    }
+
+    private void refresh() {
+      try {
+        swap(create());
+      } catch (final RuntimeException e) {
+        catching(e);
+      } finally {
+        refreshing.set(false);
+      }
+    }
+
+    private com.xeiam.xchange.Exchange swap(final com.xeiam.xchange.Exchange newClient) {
+      created = Instant.now();
+      client = newClient;
+      exchangeClient.getExchange().getData().refreshCachedAssetPairs();
+      return newClient;
+    }
+
+    private com.xeiam.xchange.Exchange create() {
+      creations.mark();
+      final com.xeiam.xchange.Exchange xeiamExchangeClient =
+          ExchangeFactory.INSTANCE.createExchange(exchangeClient.getExchange().getExchangeClass()
+              .getName());
+      final ExchangeSpecification exchangeSpec = xeiamExchangeClient.getExchangeSpecification();
+      final String user = exchangeClient.getUser();
+      if (user != null) {
+        exchangeSpec.setUserName(user);
+      }
+      final String pass = exchangeClient.getPass();
+      if (pass != null) {
+        exchangeSpec.setPassword(pass);
+      }
+      final String key = exchangeClient.getKey();
+      if (key != null) {
+        exchangeSpec.setApiKey(key);
+      }
+      final String secret = exchangeClient.getSecret();
+      if (secret != null) {
+        exchangeSpec.setSecretKey(secret);
+      }
+      xeiamExchangeClient.applySpecification(exchangeSpec);
+      return xeiamExchangeClient;
+    }
+  }
+}
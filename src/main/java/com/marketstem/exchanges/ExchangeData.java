@@ -5,18 +5,28 @@ import com.fabahaba.fava.collect.MapUtils;
 import com.fabahaba.jedipus.cache.RedisHashCache;
 import com.google.common.base.Throwables;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import com.google.gson.Gson;
 import com.marketstem.exchanges.data.Asset;
+import com.marketstem.exchanges.data.Asset.AssetMarshaller;
 import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.exchanges.data.AssetPair.AssetPairMarshaller;
 import com.marketstem.exchanges.data.AssetType;
 import com.marketstem.exchanges.data.FullMarketDepth;
+import com.marketstem.exchanges.data.PublicLimitOrder;
+import com.marketstem.exchanges.data.PublicLimitOrder.PublicLimitOrderSerializer;
+import com.marketstem.exchanges.data.ScaledMarketDepth;
 import com.marketstem.exchanges.data.Ticker;
+import com.marketstem.exchanges.replay.ExchangeRecording;
+import com.marketstem.exchanges.simulation.SimulatedExchangeClient;
+import com.marketstem.serialization.Marshalling;
 import com.xeiam.xchange.currency.CurrencyPair;
 
 import java.lang.reflect.InvocationTargetException;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -27,6 +37,14 @@ import java.util.stream.Collectors;
 
 public class ExchangeData {
 
+  /**
+   * Serializes cached tickers and depths once, as they are cached, for the rest api.
+   */
+  public static final Gson RESPONSE_GSON = Marshalling.BASE_GSON_BUILDER
+      .registerTypeAdapter(PublicLimitOrder.class, new PublicLimitOrderSerializer())
+      .registerTypeAdapter(Asset.class, new AssetMarshaller())
+      .registerTypeAdapter(AssetPair.class, new AssetPairMarshaller()).create();
+
   private static final LoadingCache<Exchange, Optional<Collection<AssetPair>>> ASSET_PAIRS =
       CacheBuilder
           .newBuilder()
@@ -55,28 +73,35 @@ public class ExchangeData {
               }, Exchange::getAssetPairs));
 
   private final ExchangeClient exchangeClient;
+  private final ExchangePoller poller;
+  private final MarketPollScheduler pollScheduler;
   private Set<Asset> assets;
 
   private static final int TICKER_DURATION_SECONDS = 60;
-  private final LoadingCache<AssetPair, Optional<Ticker>> tickerCache;
+  private final SerializedMarketCache<Ticker> tickerCache;
   private static final int MARKET_DEPTH_DURATION_MINUTES = 5;
-  private final LoadingCache<AssetPair, Optional<FullMarketDepth>> depthCache;
+  private final SerializedMarketCache<FullMarketDepth> depthCache;
 
   private ExchangeData(final Exchange exchange,
       final Class<? extends ExchangeClient> exchangeClientClass) {
+    final ExchangeClient client;
     try {
-      this.exchangeClient =
-          exchangeClientClass.getConstructor(Exchange.class).newInstance(exchange);
+      client = exchangeClientClass.getConstructor(Exchange.class).newInstance(exchange);
     } catch (InstantiationException | IllegalAccessException | IllegalArgumentException
         | InvocationTargetException | NoSuchMethodException | SecurityException e) {
       throw Throwables.propagate(e);
     }
+    this.exchangeClient =
+        ExchangeRecording.wrapIfConfigured(SimulatedExchangeClient.wrapIfEnabled(client));
+    this.poller = new ExchangePoller(exchangeClient);
+    this.pollScheduler = new MarketPollScheduler(exchangeClient);
     this.tickerCache =
-        CacheBuilder.newBuilder().expireAfterWrite(TICKER_DURATION_SECONDS, TimeUnit.SECONDS)
-            .build(CacheLoader.from(exchangeClient::callForTicker));
+        new SerializedMarketCache<>(RESPONSE_GSON, Duration.ofSeconds(TICKER_DURATION_SECONDS),
+            Ticker::getAssetPair, exchangeClient::callForTicker);
     this.depthCache =
-        CacheBuilder.newBuilder().expireAfterWrite(MARKET_DEPTH_DURATION_MINUTES, TimeUnit.MINUTES)
-            .build(CacheLoader.from(exchangeClient::callForMarketDepth));
+        new SerializedMarketCache<>(RESPONSE_GSON,
+            Duration.ofMinutes(MARKET_DEPTH_DURATION_MINUTES), FullMarketDepth::getMarket,
+            exchangeClient::callForMarketDepth);
   }
 
   private static final Map<Exchange, ExchangeData> singletons = new HashMap<>();
@@ -91,6 +116,14 @@ public class ExchangeData {
     return exchangeClient;
   }
 
+  public ExchangePoller getPoller() {
+    return poller;
+  }
+
+  public MarketPollScheduler getPollScheduler() {
+    return pollScheduler;
+  }
+
   public Set<Asset> getAssets() {
     return assets;
   }
@@ -121,7 +154,7 @@ public class ExchangeData {
 
   public Optional<Ticker> cacheTicker(final Optional<Ticker> optionalTicker) {
 
-    optionalTicker.ifPresent(ticker -> tickerCache.put(ticker.getAssetPair(), optionalTicker));
+    optionalTicker.ifPresent(tickerCache::put);
 
     return optionalTicker;
   }
@@ -129,43 +162,71 @@ public class ExchangeData {
   public Optional<Map<AssetPair, Ticker>> cacheTickers(
       final Optional<Map<AssetPair, Ticker>> optionalTickers) {
 
-    optionalTickers.map(Map::values).ifPresent(
-        tickers -> tickers.forEach(ticker -> tickerCache.put(ticker.getAssetPair(),
-            Optional.of(ticker))));
+    optionalTickers.map(Map::values).ifPresent(tickers -> tickers.forEach(tickerCache::put));
 
     return optionalTickers;
   }
 
   public Optional<Ticker> getCachedTicker(final AssetPair assetPair) {
-    return tickerCache.getUnchecked(assetPair);
+    return tickerCache.get(assetPair);
+  }
+
+  /**
+   * @return a {@link #RESPONSE_GSON} json array of each market's ticker, loading missing markets.
+   */
+  public SerializedJsonArray getCachedTickersJson(final Collection<AssetPair> assetPairs) {
+    return tickerCache.getJson(assetPairs);
+  }
+
+  /**
+   * @return a json array of the tickers of every market of the exchange.
+   */
+  public SerializedJsonArray getAllCachedTickersJson() {
+    return tickerCache.getAllJson(getCachedAssetPairs().orElse(ImmutableList.of()));
   }
 
   public Optional<FullMarketDepth> cacheMarketDepth(
       final Optional<FullMarketDepth> optionalMarketDepth) {
 
-    optionalMarketDepth.ifPresent(marketDepth -> depthCache.put(marketDepth.getMarket(),
-        optionalMarketDepth));
+    optionalMarketDepth.ifPresent(depthCache::put);
 
     return optionalMarketDepth;
   }
 
+  /**
+   * Caches a book rebuilt from depth updates, only converted to a {@link FullMarketDepth} once read.
+   */
+  public void cacheMarketDepth(final ScaledMarketDepth book) {
+    depthCache.putLazily(book.getMarket(), book::toFullMarketDepth);
+  }
+
   public Optional<Map<AssetPair, FullMarketDepth>> cacheMarketDepths(
       final Optional<Map<AssetPair, FullMarketDepth>> optionalMarketDepths) {
 
-    optionalMarketDepths.map(Map::values).ifPresent(
-        depths -> depths.forEach(depth -> depthCache.put(depth.getMarket(), Optional.of(depth))));
+    optionalMarketDepths.map(Map::values).ifPresent(depths -> depths.forEach(depthCache::put));
 
     return optionalMarketDepths;
   }
 
   public Optional<FullMarketDepth> getCachedMarketDepth(final AssetPair assetPair) {
-    return depthCache.getUnchecked(assetPair);
+    return depthCache.get(assetPair);
   }
 
   public Optional<FullMarketDepth> getIfCachedMarketDepth(final AssetPair assetPair) {
+    return depthCache.getIfPresent(assetPair);
+  }
 
-    final Optional<FullMarketDepth> marketDepth = depthCache.getIfPresent(assetPair);
+  /**
+   * @return a {@link #RESPONSE_GSON} json array of each market's depth, loading missing markets.
+   */
+  public SerializedJsonArray getCachedMarketDepthsJson(final Collection<AssetPair> assetPairs) {
+    return depthCache.getJson(assetPairs);
+  }
 
-    return marketDepth == null ? Optional.empty() : marketDepth;
+  /**
+   * @return a json array of the depths of every market of the exchange.
+   */
+  public SerializedJsonArray getAllCachedMarketDepthsJson() {
+    return depthCache.getAllJson(getCachedAssetPairs().orElse(ImmutableList.of()));
   }
 }
@@ -0,0 +1,239 @@
+package com.marketstem.exchanges;
+
+import com.fabahaba.fava.logging.Loggable;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.exchanges.data.FullMarketDepth;
+import com.marketstem.exchanges.data.PublicTrade;
+import com.marketstem.exchanges.data.Ticker;
+import com.marketstem.exchanges.ratelimit.DistributedRateLimiter;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Fans per market requests of one exchange out to a bounded pool of that exchange's own workers.
+ * Rate limiter permits are taken with {@link RateLimiter#tryAcquire()} on a shared dispatcher
+ * before a request is handed to a worker, so workers only ever wait on the exchange and a slow
+ * exchange can not starve the others. Concurrency defaults to two requests per permit per second
+ * of the public api limiter and can be overridden with
+ * {@code exchange.poller.concurrency.<EXCHANGE>}.
+ */
+public class ExchangePoller implements Loggable {
+
+  private static final ScheduledExecutorService DISPATCHER = Executors
+      .newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+          .setNameFormat("exchange-poller-dispatcher").build());
+  private static final long MIN_RETRY_MILLIS = 10;
+  private static final long MAX_RETRY_MILLIS = 1000;
+  private static final int MAX_DEFAULT_CONCURRENCY = 8;
+  private static final String CONCURRENCY_PROPERTY_PREFIX = "exchange.poller.concurrency.";
+  private static final String MAX_CONNECTIONS_PROPERTY = "http.maxConnections";
+  private static final Runnable PERMITS_HELD = () -> {
+  };
+
+  private final ExchangeClient client;
+  private final int maxConcurrency;
+  private final ExecutorService workers;
+
+  // Only touched on the dispatcher thread.
+  private final Deque<PendingRequest<?>> pending = new ArrayDeque<>();
+  private int inFlight = 0;
+  private boolean retryScheduled = false;
+
+  ExchangePoller(final ExchangeClient client) {
+    this.client = client;
+    this.maxConcurrency =
+        Math.max(1, Integer.getInteger(CONCURRENCY_PROPERTY_PREFIX + client.getExchange(),
+            defaultConcurrency(client.getPublicApiLimiter())));
+    this.workers =
+        new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("exchange-poller-" + client.getExchange() + "-%d").build());
+    ((ThreadPoolExecutor) workers).allowCoreThreadTimeOut(true);
+  }
+
+  private static int defaultConcurrency(final RateLimiter publicApiLimiter) {
+    return (int) Math.min(MAX_DEFAULT_CONCURRENCY, Math.ceil(publicApiLimiter.getRate() * 2));
+  }
+
+  /**
+   * xchange talks http through {@link java.net.HttpURLConnection}, whose keep-alive pool keeps
+   * {@code http.maxConnections} idle connections per host. Unless that is set explicitly, raises it
+   * to the largest poller concurrency so every concurrent request can reuse a connection.
+   *
+   * <p>
+   * The property is global: it applies to every host this JVM talks http to, and is read once when
+   * the first connection is opened. Call this at startup, before any exchange is used.
+   * </p>
+   */
+  public static void configureHttpMaxConnections() {
+    if (System.getProperty(MAX_CONNECTIONS_PROPERTY) == null) {
+      System.setProperty(MAX_CONNECTIONS_PROPERTY, Integer.toString(getMaxConfiguredConcurrency()));
+    }
+  }
+
+  /**
+   * @return the most concurrent requests any one exchange can be polled with.
+   */
+  private static int getMaxConfiguredConcurrency() {
+    return System.getProperties().stringPropertyNames().stream()
+        .filter(name -> name.startsWith(CONCURRENCY_PROPERTY_PREFIX))
+        .mapToInt(name -> Integer.getInteger(name, MAX_DEFAULT_CONCURRENCY))
+        .reduce(MAX_DEFAULT_CONCURRENCY, Math::max);
+  }
+
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  public List<Ticker> pollTickers(final Collection<AssetPair> assetPairs,
+      final Consumer<Ticker> onTicker) {
+    return pollAll(assetPairs, client::getTickerRateLimiter,
+        (assetPair, acquirable) -> client.getExchange().getData()
+            .cacheTicker(client.callForTicker(assetPair, acquirable)),
+        (assetPair, ticker) -> onTicker.accept(ticker));
+  }
+
+  public List<FullMarketDepth> pollMarketDepths(final Collection<AssetPair> assetPairs,
+      final Consumer<FullMarketDepth> onDepth) {
+    return pollAll(assetPairs, client::getDepthRateLimiter,
+        (assetPair, acquirable) -> client.getExchange().getData()
+            .cacheMarketDepth(client.callForMarketDepth(assetPair, acquirable)),
+        (assetPair, depth) -> onDepth.accept(depth));
+  }
+
+  /**
+   * {@code onTrades} also receives empty responses, keyed by the market they were polled for.
+   */
+  public List<List<PublicTrade>> pollPublicTrades(final Collection<AssetPair> assetPairs,
+      final BiConsumer<AssetPair, List<PublicTrade>> onTrades) {
+    return pollAll(assetPairs, client::getTradesRateLimiter, client::callForPublicTrades,
+        onTrades);
+  }
+
+  /**
+   * Blocks the calling thread until every market has been polled. {@code onResult} is called on
+   * the worker threads as responses arrive.
+   *
+   * @return the responses received, in the order of {@code assetPairs}.
+   */
+  public <T> List<T> pollAll(final Collection<AssetPair> assetPairs,
+      final Function<AssetPair, RateLimiter> resourceLimiter,
+      final BiFunction<AssetPair, Runnable, Optional<T>> call,
+      final BiConsumer<AssetPair, T> onResult) {
+    final List<CompletableFuture<Optional<T>>> responses =
+        assetPairs.stream().map(assetPair -> poll(assetPair, resourceLimiter.apply(assetPair),
+            acquirable -> {
+              final Optional<T> response = call.apply(assetPair, acquirable);
+              response.ifPresent(result -> onResult.accept(assetPair, result));
+              return response;
+            })).collect(Collectors.toList());
+    return responses.stream().map(response -> {
+      try {
+        return response.join();
+      } catch (final RuntimeException e) {
+        catching(e);
+        return Optional.<T>empty();
+      }
+    }).filter(Optional::isPresent).map(Optional::get).collect(Collectors.toList());
+  }
+
+  /**
+   * Queues a single request behind the public api limiter and {@code resourceLimiter}. The call
+   * receives a no-op acquirable because its permits are already held.
+   */
+  public <T> CompletableFuture<Optional<T>> poll(final AssetPair assetPair,
+      final RateLimiter resourceLimiter, final Function<Runnable, Optional<T>> call) {
+    final PendingRequest<T> request = new PendingRequest<>(resourceLimiter, call);
+    DISPATCHER.execute(() -> {
+      pending.add(request);
+      dispatch();
+    });
+    return request.response;
+  }
+
+  private void dispatch() {
+    final RateLimiter publicApiLimiter = client.getPublicApiLimiter();
+    final DistributedRateLimiter distributedApiLimiter = client.getDistributedApiLimiter();
+    // Rotate past markets whose own limiter is exhausted, the public limiter gates everyone.
+    for (int attempts = pending.size(); attempts > 0 && inFlight < maxConcurrency; attempts--) {
+      final PendingRequest<?> request = pending.poll();
+      if (!request.resourcePermitHeld) {
+        request.resourcePermitHeld = request.resourceLimiter.tryAcquire();
+      }
+      if (!request.resourcePermitHeld) {
+        pending.add(request);
+        continue;
+      }
+      // The cluster wide budget first, it is the scarcer one while other nodes poll too.
+      if (!distributedApiLimiter.tryAcquire()) {
+        pending.addFirst(request);
+        break;
+      }
+      if (!publicApiLimiter.tryAcquire()) {
+        distributedApiLimiter.release();
+        pending.addFirst(request);
+        break;
+      }
+      inFlight++;
+      workers.execute(() -> {
+        request.run();
+        DISPATCHER.execute(() -> {
+          inFlight--;
+          dispatch();
+        });
+      });
+    }
+    if (!pending.isEmpty() && inFlight < maxConcurrency && !retryScheduled) {
+      retryScheduled = true;
+      DISPATCHER.schedule(() -> {
+        retryScheduled = false;
+        dispatch();
+      }, retryMillis(publicApiLimiter), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private static long retryMillis(final RateLimiter limiter) {
+    return Math.max(MIN_RETRY_MILLIS,
+        Math.min(MAX_RETRY_MILLIS, (long) (1000 / limiter.getRate())));
+  }
+
+  private static class PendingRequest<T> {
+
+    private final RateLimiter resourceLimiter;
+    private final Function<Runnable, Optional<T>> call;
+    private final CompletableFuture<Optional<T>> response = new CompletableFuture<>();
+    private boolean resourcePermitHeld = false;
+
+    private PendingRequest(final RateLimiter resourceLimiter,
+        final Function<Runnable, Optional<T>> call) {
+      this.resourceLimiter = resourceLimiter;
+      this.call = call;
+    }
+
+    private void run() {
+      try {
+        response.complete(call.apply(PERMITS_HELD));
+      } catch (final RuntimeException e) {
+        response.completeExceptionally(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,224 @@
+package com.marketstem.exchanges;
+
+import com.fabahaba.fava.logging.Loggable;
+import com.fabahaba.jedipus.cache.RedisHashCache;
+import com.google.common.util.concurrent.RateLimiter;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.exchanges.ratelimit.AdaptiveRateController;
+import com.marketstem.services.cache.RedisHashCaches;
+import com.marketstem.services.marketdata.aggregation.data.AggregateTickerSnapshot;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Splits an exchange's per market polling budget across its markets. Each market is weighted by the
+ * log of its quote volume on the exchange, taken from the {@link AggregateTickerSnapshot}, times an
+ * exponentially weighted rate of how often its responses changed. The budget of a resource is what
+ * the client's fixed per market rate would have spent over all markets, capped at the resource's
+ * share of the public api rate, in proportion to the configured rates of all resources, so busy
+ * markets refresh faster and idle ones back off without asking the exchange for more.
+ * Each resource's rates are further scaled by its {@link AdaptiveRateController}, which backs off
+ * as soon as the exchange throttles or slows down and probes upwards while it keeps up.
+ */
+public class MarketPollScheduler implements Loggable {
+
+  public enum Resource {
+    TICKER(ExchangeClient::getTickerRateLimiter, ExchangeClient::getTickersRateLimiter),
+    DEPTH(ExchangeClient::getDepthRateLimiter, ExchangeClient::getDepthsRateLimiter),
+    TRADES(ExchangeClient::getTradesRateLimiter, ExchangeClient::getTradesRateLimiter);
+
+    private final BiFunction<ExchangeClient, AssetPair, RateLimiter> marketLimiter;
+    private final Function<ExchangeClient, RateLimiter> bulkLimiter;
+
+    private Resource(final BiFunction<ExchangeClient, AssetPair, RateLimiter> marketLimiter,
+        final Function<ExchangeClient, RateLimiter> bulkLimiter) {
+      this.marketLimiter = marketLimiter;
+      this.bulkLimiter = bulkLimiter;
+    }
+  }
+
+  private static final Duration REALLOCATION_INTERVAL = Duration.ofMinutes(1);
+  private static final double CHANGE_ALPHA = .2;
+  private static final double MIN_ACTIVITY = .1;
+  private static final double MAX_BACKOFF = 10;
+
+  private final ExchangeClient client;
+  private final RedisHashCache<AssetPair, AggregateTickerSnapshot> aggregateTickers =
+      RedisHashCaches.AGGREGATE_TICKER.getMap();
+  private final Map<Resource, ConcurrentMap<AssetPair, MarketState>> marketStates =
+      new ConcurrentHashMap<>();
+  private final Map<Resource, Instant> lastAllocations = new ConcurrentHashMap<>();
+  private final Map<Resource, Double> baseRates = new EnumMap<>(Resource.class);
+  private final Map<Resource, Double> publicApiShares = new EnumMap<>(Resource.class);
+  private final Map<Resource, AdaptiveRateController> rateControllers =
+      new EnumMap<>(Resource.class);
+
+  MarketPollScheduler(final ExchangeClient client) {
+    this.client = client;
+    for (final Resource resource : Resource.values()) {
+      // Captured before the controllers start scaling the bulk limiters.
+      baseRates.put(resource, resource.bulkLimiter.apply(client).getRate());
+      rateControllers.put(resource, new AdaptiveRateController(client.getExchange() + "."
+          + resource, factor -> applyFactor(resource, factor)));
+    }
+    final double totalBaseRate =
+        baseRates.values().stream().mapToDouble(Double::doubleValue).sum();
+    baseRates.forEach((resource, baseRate) -> publicApiShares.put(resource,
+        totalBaseRate > 0 ? baseRate / totalBaseRate : 1d / baseRates.size()));
+  }
+
+  public AdaptiveRateController getRateController(final Resource resource) {
+    return rateControllers.get(resource);
+  }
+
+  /**
+   * @return the markets whose allocated interval has passed since they were last selected.
+   */
+  public List<AssetPair> selectDue(final Resource resource, final Collection<AssetPair> markets) {
+    final Instant now = Instant.now();
+    final Instant lastAllocation = lastAllocations.get(resource);
+    if (lastAllocation == null
+        || Duration.between(lastAllocation, now).compareTo(REALLOCATION_INTERVAL) > 0) {
+      lastAllocations.put(resource, now);
+      allocate(resource, markets);
+    }
+    final double factor = rateControllers.get(resource).getFactor();
+    return markets.stream().filter(market -> getState(resource, market).takeIfDue(now, factor))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * @param fingerprint any value that changes when the response changed, e.g. a depth checksum.
+   */
+  public void recordResponse(final Resource resource, final AssetPair market,
+      final long fingerprint) {
+    getState(resource, market).recordResponse(fingerprint);
+  }
+
+  public double getRate(final Resource resource, final AssetPair market) {
+    return scale(resource, getState(resource, market).rate,
+        rateControllers.get(resource).getFactor());
+  }
+
+  /**
+   * @return the part of the public api rate {@code resource} may spend, so all resources together
+   *         stay within it.
+   */
+  private double getPublicApiBudget(final Resource resource) {
+    return client.getPublicApiLimiter().getRate() * publicApiShares.get(resource);
+  }
+
+  private double scale(final Resource resource, final double rate, final double factor) {
+    return Math.min(getPublicApiBudget(resource), rate * factor);
+  }
+
+  private void applyFactor(final Resource resource, final double factor) {
+    resource.bulkLimiter.apply(client).setRate(baseRates.get(resource) * factor);
+    final Map<AssetPair, MarketState> states = marketStates.get(resource);
+    if (states != null) {
+      states.forEach((market, state) -> resource.marketLimiter.apply(client, market).setRate(
+          scale(resource, state.rate, factor)));
+    }
+  }
+
+  private MarketState getState(final Resource resource, final AssetPair market) {
+    return marketStates.computeIfAbsent(resource, presentResource -> new ConcurrentHashMap<>())
+        .computeIfAbsent(market, newMarket -> new MarketState(baseRates.get(resource)));
+  }
+
+  private void allocate(final Resource resource, final Collection<AssetPair> markets) {
+    if (markets.isEmpty())
+      return;
+    final double baseRate = baseRates.get(resource);
+    final double factor = rateControllers.get(resource).getFactor();
+    final double publicApiBudget = getPublicApiBudget(resource);
+    final double budget = Math.min(publicApiBudget, baseRate * markets.size());
+    final Map<AssetPair, Double> weights = getQuoteVolumes(markets);
+    weights.replaceAll((market, quoteVolume) -> (1 + Math.log1p(quoteVolume))
+        * (MIN_ACTIVITY + getState(resource, market).changeFrequency));
+    final double totalWeight = weights.values().stream().mapToDouble(Double::doubleValue).sum();
+
+    weights.forEach((market, weight) -> {
+      final double rate = Math.max(baseRate / MAX_BACKOFF,
+          Math.min(publicApiBudget, budget * weight / totalWeight));
+      getState(resource, market).rate = rate;
+      resource.marketLimiter.apply(client, market).setRate(scale(resource, rate, factor));
+    });
+    debug("Allocated " + budget + "/s of " + resource + " polling across " + markets.size()
+        + " markets for " + client.getExchange() + " at " + rateControllers.get(resource));
+  }
+
+  private Map<AssetPair, Double> getQuoteVolumes(final Collection<AssetPair> markets) {
+    final Set<AssetPair> snapshotMarkets = new HashSet<>(markets.size() * 2);
+    markets.forEach(market -> {
+      snapshotMarkets.add(market);
+      snapshotMarkets.add(market.reverse());
+    });
+    Map<AssetPair, Optional<AggregateTickerSnapshot>> snapshots;
+    try {
+      snapshots = aggregateTickers.getAll(snapshotMarkets);
+    } catch (final RuntimeException e) {
+      catching(e);
+      snapshots = Collections.emptyMap();
+    }
+
+    final Map<AssetPair, Double> quoteVolumes = new HashMap<>(markets.size());
+    for (final AssetPair market : markets) {
+      Optional<AggregateTickerSnapshot> snapshot = snapshots.get(market);
+      if (snapshot == null || !snapshot.isPresent()) {
+        snapshot = snapshots.get(market.reverse());
+      }
+      quoteVolumes.put(market, snapshot == null ? 0 : snapshot.map(this::getQuoteVolume)
+          .orElse(0d));
+    }
+    return quoteVolumes;
+  }
+
+  private double getQuoteVolume(final AggregateTickerSnapshot snapshot) {
+    final BigDecimal volume = snapshot.getExchangeVolumes().get(client.getExchange());
+    if (volume == null || !snapshot.getVWALast().isPresent())
+      return 0;
+    return Math.max(0, volume.multiply(snapshot.getVWALast().get()).doubleValue());
+  }
+
+  private static class MarketState {
+
+    private volatile double rate;
+    private volatile double changeFrequency = 1;
+    private long lastFingerprint = 0;
+    private Instant nextDue = Instant.MIN;
+
+    private MarketState(final double rate) {
+      this.rate = rate;
+    }
+
+    private synchronized boolean takeIfDue(final Instant now, final double factor) {
+      if (now.isBefore(nextDue))
+        return false;
+      nextDue = now.plusNanos((long) (1_000_000_000 / (rate * factor)));
+      return true;
+    }
+
+    private synchronized void recordResponse(final long fingerprint) {
+      final double changed = fingerprint != lastFingerprint ? 1 : 0;
+      changeFrequency += CHANGE_ALPHA * (changed - changeFrequency);
+      lastFingerprint = fingerprint;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.marketstem.exchanges;
+
+import com.marketstem.serialization.EncodedPayload;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A json array assembled from pre-serialized elements, along with a version that changes whenever
+ * its content does.
+ */
+public class SerializedJsonArray {
+
+  private final List<byte[]> elements;
+  private final EncodedPayload array;
+  private final long version;
+
+  private SerializedJsonArray(final List<byte[]> elements, final EncodedPayload array,
+      final long version) {
+    this.elements = elements;
+    this.array = array;
+    this.version = version;
+  }
+
+  static SerializedJsonArray ofElements(final List<byte[]> elements, final long version) {
+    return new SerializedJsonArray(elements, null, version);
+  }
+
+  static SerializedJsonArray ofArray(final byte[] array, final long version) {
+    return new SerializedJsonArray(null, new EncodedPayload(array), version);
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * @return the assembled array, if this was built from one, whose gzip encoding is compressed
+   *         once on first use.
+   */
+  public Optional<EncodedPayload> getPayload() {
+    return Optional.ofNullable(array);
+  }
+
+  public void writeTo(final OutputStream output) throws IOException {
+    if (array != null) {
+      output.write(array.getRaw());
+      return;
+    }
+    output.write('[');
+    for (int i = 0; i < elements.size(); i++) {
+      if (i > 0) {
+        output.write(',');
+      }
+      output.write(elements.get(i));
+    }
+    output.write(']');
+  }
+}
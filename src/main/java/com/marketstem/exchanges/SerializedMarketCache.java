@@ -0,0 +1,196 @@
+package com.marketstem.exchanges;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.marketstem.exchanges.data.AssetPair;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Per market cache that serializes each value to UTF-8 json once, when it is stored, so responses
+ * can be assembled from byte slices. Each slice is hashed as it is serialized and arrays are
+ * versioned by the hashes of their elements. Every change bumps a cache version, and the json array
+ * of all markets is rebuilt from the slices only when it was built at an older version.
+ *
+ * <p>
+ * Values that are costly to build and replaced more often than read, like books rebuilt from every
+ * depth delta, are stored with {@link #putLazily(AssetPair, Supplier)} and only built and serialized
+ * once read.
+ * </p>
+ */
+class SerializedMarketCache<T> {
+
+  private final Gson gson;
+  private final Function<T, AssetPair> marketFunction;
+  private final LoadingCache<AssetPair, Optional<Entry<T>>> cache;
+  private final AtomicLong version = new AtomicLong();
+  private volatile AllMarketsJson allMarketsJson = null;
+
+  SerializedMarketCache(final Gson gson, final Duration expireAfterWrite,
+      final Function<T, AssetPair> marketFunction,
+      final Function<AssetPair, Optional<T>> loader) {
+    this.gson = gson;
+    this.marketFunction = marketFunction;
+    this.cache =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(expireAfterWrite.toMillis(), TimeUnit.MILLISECONDS)
+            .removalListener(notification -> {
+              if (notification.wasEvicted()) {
+                version.incrementAndGet();
+              }
+            }).build(CacheLoader.from(market -> {
+              version.incrementAndGet();
+              return loader.apply(market).map(this::serialize);
+            }));
+  }
+
+  void put(final T value) {
+    cache.put(marketFunction.apply(value), Optional.of(serialize(value)));
+    version.incrementAndGet();
+  }
+
+  /**
+   * @param value called at most once, on the first read of this market.
+   */
+  void putLazily(final AssetPair market, final Supplier<T> value) {
+    cache.put(market, Optional.of(new Entry<>(gson, value)));
+    version.incrementAndGet();
+  }
+
+  Optional<T> get(final AssetPair market) {
+    return cache.getUnchecked(market).map(Entry::getValue);
+  }
+
+  Optional<T> getIfPresent(final AssetPair market) {
+    final Optional<Entry<T>> entry = cache.getIfPresent(market);
+    return entry == null ? Optional.empty() : entry.map(Entry::getValue);
+  }
+
+  /**
+   * @return a json array of each market with a value, loading missing markets.
+   */
+  SerializedJsonArray getJson(final Collection<AssetPair> markets) {
+    final List<byte[]> json = new ArrayList<>(markets.size());
+    long arrayVersion = 1;
+    for (final AssetPair market : markets) {
+      final Optional<Entry<T>> entry = cache.getUnchecked(market);
+      if (entry.isPresent()) {
+        json.add(entry.get().getJson());
+        arrayVersion = 31 * arrayVersion + entry.get().getHash();
+      }
+    }
+    return SerializedJsonArray.ofElements(json, arrayVersion);
+  }
+
+  /**
+   * @return a json array of every market in {@code allMarkets} with a value.
+   */
+  SerializedJsonArray getAllJson(final Collection<AssetPair> allMarkets) {
+    // Surfaces expired entries as a version change.
+    cache.cleanUp();
+    final AllMarketsJson current = allMarketsJson;
+    final long currentVersion = version.get();
+    // The exchange's market collection is only replaced when it is refreshed.
+    if (current != null && current.cacheVersion == currentVersion
+        && current.markets == allMarkets)
+      return current.json;
+
+    final SerializedJsonArray elements = getJson(allMarkets);
+    final ByteArrayOutputStream array = new ByteArrayOutputStream();
+    try {
+      elements.writeTo(array);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    final SerializedJsonArray json =
+        SerializedJsonArray.ofArray(array.toByteArray(), elements.getVersion());
+    allMarketsJson = new AllMarketsJson(currentVersion, allMarkets, json);
+    return json;
+  }
+
+  private Entry<T> serialize(final T value) {
+    final Entry<T> entry = new Entry<>(gson, () -> value);
+    entry.getJson();
+    return entry;
+  }
+
+  private static class Entry<T> {
+
+    private final Gson gson;
+    // Cleared once the value is built.
+    private Supplier<T> supplier;
+    private volatile T value;
+    private volatile byte[] json;
+    private long hash;
+
+    private Entry(final Gson gson, final Supplier<T> supplier) {
+      this.gson = gson;
+      this.supplier = supplier;
+    }
+
+    private T getValue() {
+      T current = value;
+      if (current == null) {
+        synchronized (this) {
+          current = value;
+          if (current == null) {
+            current = supplier.get();
+            supplier = null;
+            value = current;
+          }
+        }
+      }
+      return current;
+    }
+
+    private byte[] getJson() {
+      byte[] current = json;
+      if (current == null) {
+        final T currentValue = getValue();
+        synchronized (this) {
+          current = json;
+          if (current == null) {
+            current = gson.toJson(currentValue).getBytes(StandardCharsets.UTF_8);
+            hash = Hashing.murmur3_128().hashBytes(current).asLong();
+            json = current;
+          }
+        }
+      }
+      return current;
+    }
+
+    private long getHash() {
+      getJson();
+      return hash;
+    }
+  }
+
+  private static class AllMarketsJson {
+
+    private final long cacheVersion;
+    private final Collection<AssetPair> markets;
+    private final SerializedJsonArray json;
+
+    private AllMarketsJson(final long cacheVersion, final Collection<AssetPair> markets,
+        final SerializedJsonArray json) {
+      this.cacheVersion = cacheVersion;
+      this.markets = markets;
+      this.json = json;
+    }
+  }
+}
@@ -57,13 +57,17 @@ public class BittrexClient extends BaseExchangeClient {
   }
 
   @Override
-  public Optional<FullMarketDepth> callForMarketDepth(final AssetPair assetPair) {
-    return isActiveAssetMarket(assetPair) ? super.callForMarketDepth(assetPair) : Optional.empty();
+  public Optional<FullMarketDepth> callForMarketDepth(final AssetPair assetPair,
+      final Runnable acquirable) {
+    return isActiveAssetMarket(assetPair) ? super.callForMarketDepth(assetPair, acquirable)
+        : Optional.empty();
   }
 
   @Override
-  public Optional<List<PublicTrade>> callForPublicTrades(final AssetPair assetPair) {
-    return isActiveAssetMarket(assetPair) ? super.callForPublicTrades(assetPair) : Optional.empty();
+  public Optional<List<PublicTrade>> callForPublicTrades(final AssetPair assetPair,
+      final Runnable acquirable) {
+    return isActiveAssetMarket(assetPair) ? super.callForPublicTrades(assetPair, acquirable)
+        : Optional.empty();
   }
 
   private final LoadingCache<AssetPair, Boolean> validAssetMarkets = CacheBuilder.newBuilder()
@@ -42,7 +42,7 @@ public class CryptsyClient extends BaseExchangeClient {
       } catch (final Exception e) {
         throw Throwables.propagate(e);
       }
-    }, getPublicApiLimiter()::acquire, 3);
+    }, this::acquirePublicApi, 3);
   }
 
   @Override
@@ -16,7 +16,9 @@ import java.util.Currency;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Asset {
 
@@ -30,11 +32,11 @@ public class Asset {
     this.scale = scale;
   }
 
-  private static final Map<String, Asset> fromStringSingletons = new HashMap<>();
+  private static final Map<String, Asset> fromStringSingletons = new ConcurrentHashMap<>();
   private final static Map<AssetType, Set<Asset>> typeMap = new HashMap<>();
   static {
     for (final AssetType assetType : AssetType.values()) {
-      Asset.typeMap.put(assetType, Sets.newHashSet());
+      Asset.typeMap.put(assetType, Sets.newConcurrentHashSet());
     }
     Currency.getAvailableCurrencies().forEach(
         currency -> {
@@ -64,6 +66,20 @@ public class Asset {
         });
   }
 
+  /**
+   * Unlike {@link #fromString(String)}, never creates an asset, so untrusted input can not grow the
+   * known assets.
+   *
+   * @return the asset already known by {@code assetString} or its symbol's aliases.
+   */
+  public static Optional<Asset> fromKnownString(final String assetString) {
+    final String uppercaseAssetString = assetString.toUpperCase();
+    final Asset asset = Asset.fromStringSingletons.get(uppercaseAssetString);
+    if (asset != null)
+      return Optional.of(asset);
+    return AssetSymbol.fromString(uppercaseAssetString).map(AssetSymbol::getAsset);
+  }
+
   static Asset create(final String assetString, final AssetType assetType, final int scale) {
     return MapUtils.createIfNull(Asset.fromStringSingletons, assetString, () -> {
       final Asset asset = new Asset(assetString, assetType, scale);
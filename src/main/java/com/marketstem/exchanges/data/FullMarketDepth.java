@@ -9,13 +9,22 @@ import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import com.marketstem.exchanges.Exchange;
+import com.marketstem.serialization.JsonStreams;
 import com.xeiam.xchange.dto.Order.OrderType;
 import com.xeiam.xchange.dto.marketdata.OrderBook;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.SortedSet;
 
@@ -24,6 +33,8 @@ public class FullMarketDepth extends BaseMarketDepth implements Loggable {
   private final SortedSet<PublicLimitOrder> bids;
   private final SortedSet<PublicLimitOrder> asks;
   private final Instant timestamp;
+  // Computed on first use, zero until then.
+  private transient volatile long checksum;
 
   private FullMarketDepth(final Exchange exchange, final AssetPair assetPair,
       final SortedSet<PublicLimitOrder> bids, final SortedSet<PublicLimitOrder> asks) {
@@ -126,14 +137,60 @@ public class FullMarketDepth extends BaseMarketDepth implements Loggable {
     return true;
   }
 
-  public BigDecimal dedupe() {
-    final BigDecimal askPriceSum =
-        asks.stream().map(PublicLimitOrder::getLimitPrice)
-            .reduce((result, askPrice) -> result.add(askPrice)).orElse(BigDecimal.ZERO);
-    final BigDecimal bidPriceSum =
-        bids.stream().map(PublicLimitOrder::getLimitPrice)
-            .reduce((result, bidPrice) -> result.add(bidPrice)).orElse(BigDecimal.ZERO);
-    return askPriceSum.add(bidPriceSum);
+  /**
+   * 64-bit hash over every price and quantity, as fixed-point longs, in book order. Changes whenever
+   * any level is added, removed or resized. Computed on first use, since most depths, like those
+   * read back from json, are never compared.
+   */
+  public long getChecksum() {
+    long current = checksum;
+    if (current == 0) {
+      // Racing threads compute the same value. A book hashing to zero is recomputed every time.
+      current = checksum(market, bids, asks);
+      checksum = current;
+    }
+    return current;
+  }
+
+  private static final long CHECKSUM_SEED = 0x9E3779B97F4A7C15L;
+
+  private static long checksum(final AssetPair assetPair, final SortedSet<PublicLimitOrder> bids,
+      final SortedSet<PublicLimitOrder> asks) {
+    final int priceScale = ScaledMarketDepth.getPriceScale(assetPair);
+    final int quantityScale = ScaledMarketDepth.getQuantityScale(assetPair);
+    long hash = CHECKSUM_SEED;
+    for (final PublicLimitOrder bid : bids) {
+      hash = mix(hash, toScaledBits(bid.getLimitPrice(), priceScale));
+      hash = mix(hash, toScaledBits(bid.getTradableAmount(), quantityScale));
+    }
+    // Keeps a level moving from the last bid to the first ask from hashing the same.
+    hash = mix(hash, bids.size());
+    for (final PublicLimitOrder ask : asks) {
+      hash = mix(hash, toScaledBits(ask.getLimitPrice(), priceScale));
+      hash = mix(hash, toScaledBits(ask.getTradableAmount(), quantityScale));
+    }
+    return fmix64(hash ^ asks.size());
+  }
+
+  private static long toScaledBits(final BigDecimal value, final int scale) {
+    final BigInteger unscaled = value.setScale(scale, RoundingMode.HALF_EVEN).unscaledValue();
+    return unscaled.bitLength() < Long.SIZE ? unscaled.longValue() : unscaled.hashCode();
+  }
+
+  private static long mix(final long hash, final long value) {
+    return Long.rotateLeft(hash ^ fmix64(value), 31) * CHECKSUM_SEED;
+  }
+
+  /**
+   * MurmurHash3 64-bit finalizer.
+   */
+  private static long fmix64(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
   }
 
   @Override
@@ -156,6 +213,88 @@ public class FullMarketDepth extends BaseMarketDepth implements Loggable {
     }
   }
 
+  /**
+   * Streaming equivalent of {@link MarketDepthDeserializer} and the reflective serialization with
+   * {@link PublicLimitOrder.PublicLimitOrderSerializer}. Levels are {@code [quantity, price]} pairs.
+   */
+  public static class MarketDepthTypeAdapter extends TypeAdapter<FullMarketDepth> {
+
+    @Override
+    public void write(final JsonWriter out, final FullMarketDepth src) throws IOException {
+      out.beginObject();
+      out.name("exchange").value(src.getExchange().toString());
+      out.name("market").value(src.getMarket().toString());
+      writeLevels(out.name("bids"), src.getBids());
+      writeLevels(out.name("asks"), src.getAsks());
+      JsonStreams.writeInstant(out, "timestamp", src.getTimestamp());
+      out.endObject();
+    }
+
+    private static void writeLevels(final JsonWriter out, final SortedSet<PublicLimitOrder> levels)
+        throws IOException {
+      out.beginArray();
+      for (final PublicLimitOrder level : levels) {
+        out.beginArray();
+        out.value(level.getTradableAmount().stripTrailingZeros().toPlainString());
+        out.value(level.getLimitPrice().stripTrailingZeros().toPlainString());
+        out.endArray();
+      }
+      out.endArray();
+    }
+
+    @Override
+    public FullMarketDepth read(final JsonReader in) throws IOException {
+      Exchange exchange = null;
+      AssetPair market = null;
+      List<PublicLimitOrder> bids = null;
+      List<PublicLimitOrder> asks = null;
+
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "exchange":
+            exchange = Exchange.fromString(in.nextString());
+            break;
+          case "market":
+            market = AssetPair.fromString(in.nextString()).get();
+            break;
+          case "bids":
+            bids = readLevels(in);
+            break;
+          case "asks":
+            asks = readLevels(in);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+
+      final MarketDepthBuilder builder = FullMarketDepth.builder(exchange, market);
+      if (bids != null) {
+        bids.forEach(bid -> builder.addBid(bid.getLimitPrice(), bid.getTradableAmount()));
+      }
+      if (asks != null) {
+        asks.forEach(ask -> builder.addAsk(ask.getLimitPrice(), ask.getTradableAmount()));
+      }
+      return builder.build();
+    }
+
+    private static List<PublicLimitOrder> readLevels(final JsonReader in) throws IOException {
+      final List<PublicLimitOrder> levels = new ArrayList<>();
+      in.beginArray();
+      while (in.hasNext()) {
+        in.beginArray();
+        final BigDecimal quantity = new BigDecimal(in.nextString());
+        final BigDecimal price = new BigDecimal(in.nextString());
+        in.endArray();
+        levels.add(new PublicLimitOrder(quantity, price));
+      }
+      in.endArray();
+      return levels;
+    }
+  }
+
   public static MarketDepthBuilder builder(final Exchange exchange, final AssetPair assetPair) {
     return new MarketDepthBuilder(exchange, assetPair);
   }
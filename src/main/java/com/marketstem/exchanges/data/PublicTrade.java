@@ -8,8 +8,16 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonSerializationContext;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.marketstem.serialization.BinaryMarshaller;
+import com.marketstem.serialization.BinaryReader;
+import com.marketstem.serialization.BinaryWriter;
+import com.marketstem.serialization.JsonStreams;
 import com.xeiam.xchange.dto.marketdata.Trade;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -129,6 +137,77 @@ public class PublicTrade {
     }
   }
 
+  /**
+   * Streaming equivalent of {@link PublicTradeMarshaller}.
+   */
+  public static class PublicTradeTypeAdapter extends TypeAdapter<PublicTrade> {
+
+    @Override
+    public void write(final JsonWriter out, final PublicTrade src) throws IOException {
+      out.beginObject();
+      out.name("id").value(src.getId());
+      out.name("market").value(src.getMarket().toString());
+      JsonStreams.writeDecimal(out, "amount", src.getAmount());
+      JsonStreams.writeDecimal(out, "price", src.getPrice());
+      JsonStreams.writeInstant(out, "timestamp", src.getTimestamp());
+      out.endObject();
+    }
+
+    @Override
+    public PublicTrade read(final JsonReader in) throws IOException {
+      String id = null;
+      AssetPair market = null;
+      BigDecimal amount = null;
+      BigDecimal price = null;
+      Instant timestamp = null;
+
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "id":
+            id = JsonStreams.nextString(in);
+            break;
+          case "market":
+            market = AssetPair.fromString(in.nextString()).get();
+            break;
+          case "amount":
+            amount = JsonStreams.nextDecimal(in);
+            break;
+          case "price":
+            price = JsonStreams.nextDecimal(in);
+            break;
+          case "timestamp":
+            timestamp = JsonStreams.nextInstant(in);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+
+      return new PublicTrade(id, market, amount, price, timestamp);
+    }
+  }
+
+  public static class PublicTradeBinaryMarshaller implements BinaryMarshaller<PublicTrade> {
+
+    @Override
+    public void write(final BinaryWriter out, final PublicTrade src) {
+      out.writeString(src.getId());
+      out.writeInterned(src.getMarket().toString());
+      out.writeDecimal(src.getAmount());
+      out.writeDecimal(src.getPrice());
+      out.writeInstant(src.getTimestamp());
+    }
+
+    @Override
+    public PublicTrade read(final BinaryReader in) {
+      final String id = in.readString();
+      final AssetPair market = AssetPair.fromString(in.readInterned()).get();
+      return new PublicTrade(id, market, in.readDecimal(), in.readDecimal(), in.readInstant());
+    }
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this).add("id", id).add("market", market)
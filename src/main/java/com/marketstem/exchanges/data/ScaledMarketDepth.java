@@ -0,0 +1,480 @@
+package com.marketstem.exchanges.data;
+
+import com.fabahaba.fava.numbers.BigDecimalUtils;
+import com.google.common.collect.ImmutableSortedSet;
+import com.marketstem.exchanges.Exchange;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.SortedSet;
+
+/**
+ * Market depth backed by parallel fixed-point {@code long} arrays instead of {@link BigDecimal}
+ * orders. Bids are sorted by descending price and asks by ascending price, each price level appears
+ * at most once and zero quantity levels are dropped.
+ *
+ * Prices are scaled by the price asset scale and quantities by the trade asset scale, but never by
+ * less than {@link #MIN_SCALE}. Fiat scales are too coarse for exchange data, e.g. CNY has a scale
+ * of 1 and plenty of USD markets quote sub-cent prices.
+ */
+public class ScaledMarketDepth extends BaseMarketDepth {
+
+  public static final int MIN_SCALE = 8;
+
+  private final int priceScale;
+  private final int quantityScale;
+  private final long[] bidPrices;
+  private final long[] bidQuantities;
+  private final long[] askPrices;
+  private final long[] askQuantities;
+  private final Instant timestamp;
+
+  private ScaledMarketDepth(final Exchange exchange, final AssetPair market,
+      final int priceScale, final int quantityScale, final long[] bidPrices,
+      final long[] bidQuantities, final long[] askPrices, final long[] askQuantities) {
+    super(exchange, market);
+    this.priceScale = priceScale;
+    this.quantityScale = quantityScale;
+    this.bidPrices = bidPrices;
+    this.bidQuantities = bidQuantities;
+    this.askPrices = askPrices;
+    this.askQuantities = askQuantities;
+    this.timestamp = Instant.now();
+  }
+
+  public static int getPriceScale(final AssetPair market) {
+    return Math.max(MIN_SCALE, market.getPriceAsset().getScale());
+  }
+
+  public static int getQuantityScale(final AssetPair market) {
+    return Math.max(MIN_SCALE, market.getTradeAsset().getScale());
+  }
+
+  public int getPriceScale() {
+    return priceScale;
+  }
+
+  public int getQuantityScale() {
+    return quantityScale;
+  }
+
+  public int getNumBids() {
+    return bidPrices.length;
+  }
+
+  public int getNumAsks() {
+    return askPrices.length;
+  }
+
+  public long getBidPrice(final int level) {
+    return bidPrices[level];
+  }
+
+  public long getBidQuantity(final int level) {
+    return bidQuantities[level];
+  }
+
+  public long getAskPrice(final int level) {
+    return askPrices[level];
+  }
+
+  public long getAskQuantity(final int level) {
+    return askQuantities[level];
+  }
+
+  /**
+   * @return the level of {@code scaledPrice} or {@code -(insertionPoint) - 1} if absent.
+   */
+  public int indexOfBid(final long scaledPrice) {
+    int low = 0;
+    int high = bidPrices.length - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final long midPrice = bidPrices[mid];
+      if (midPrice > scaledPrice) {
+        low = mid + 1;
+      } else if (midPrice < scaledPrice) {
+        high = mid - 1;
+      } else
+        return mid;
+    }
+    return -(low + 1);
+  }
+
+  /**
+   * @return the level of {@code scaledPrice} or {@code -(insertionPoint) - 1} if absent.
+   */
+  public int indexOfAsk(final long scaledPrice) {
+    return Arrays.binarySearch(askPrices, scaledPrice);
+  }
+
+  public Optional<BigDecimal> getBidQuantity(final BigDecimal price) {
+    final int level = indexOfBid(toScaled(price, priceScale));
+    return level < 0 ? Optional.empty() : Optional.of(BigDecimal.valueOf(bidQuantities[level],
+        quantityScale));
+  }
+
+  public Optional<BigDecimal> getAskQuantity(final BigDecimal price) {
+    final int level = indexOfAsk(toScaled(price, priceScale));
+    return level < 0 ? Optional.empty() : Optional.of(BigDecimal.valueOf(askQuantities[level],
+        quantityScale));
+  }
+
+  public Optional<PublicLimitOrder> getBestBid() {
+    return bidPrices.length == 0 ? Optional.empty() : Optional.of(getBid(0));
+  }
+
+  public Optional<PublicLimitOrder> getBestAsk() {
+    return askPrices.length == 0 ? Optional.empty() : Optional.of(getAsk(0));
+  }
+
+  public PublicLimitOrder getBid(final int level) {
+    return new PublicLimitOrder(BigDecimal.valueOf(bidQuantities[level], quantityScale),
+        BigDecimal.valueOf(bidPrices[level], priceScale));
+  }
+
+  public PublicLimitOrder getAsk(final int level) {
+    return new PublicLimitOrder(BigDecimal.valueOf(askQuantities[level], quantityScale),
+        BigDecimal.valueOf(askPrices[level], priceScale));
+  }
+
+  public SortedSet<PublicLimitOrder> getBids() {
+    final ImmutableSortedSet.Builder<PublicLimitOrder> bids = ImmutableSortedSet.reverseOrder();
+    for (int level = 0; level < bidPrices.length; level++) {
+      bids.add(getBid(level));
+    }
+    return bids.build();
+  }
+
+  public SortedSet<PublicLimitOrder> getAsks() {
+    final ImmutableSortedSet.Builder<PublicLimitOrder> asks = ImmutableSortedSet.naturalOrder();
+    for (int level = 0; level < askPrices.length; level++) {
+      asks.add(getAsk(level));
+    }
+    return asks.build();
+  }
+
+  public Instant getTimestamp() {
+    return timestamp;
+  }
+
+  @Override
+  public Optional<BigDecimal> spendXTrade(final BigDecimal quantity, final Asset asset) {
+    return asset.getAssetString().equals(market.getPriceAsset().getAssetString())
+        ? consumeAsks(quantity) : consumeBids(quantity);
+  }
+
+  /**
+   * Same semantics as {@link FullMarketDepth}: no partial fills, empty if the book is too thin.
+   */
+  private Optional<BigDecimal> consumeBids(final BigDecimal amountToSpend) {
+    BigDecimal purchasedAmount = BigDecimal.ZERO;
+    long amountLeftToSpend = toScaled(amountToSpend, quantityScale);
+    for (int level = 0; level < bidPrices.length; level++) {
+      final BigDecimal price = BigDecimal.valueOf(bidPrices[level], priceScale);
+      if (amountLeftToSpend > bidQuantities[level]) {
+        amountLeftToSpend -= bidQuantities[level];
+        purchasedAmount =
+            purchasedAmount.add(BigDecimal.valueOf(bidQuantities[level], quantityScale).multiply(
+                price));
+      } else
+        return Optional.of(purchasedAmount.add(BigDecimal.valueOf(amountLeftToSpend,
+            quantityScale).multiply(price)));
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Same semantics as {@link FullMarketDepth}: no partial fills, empty if the book is too thin.
+   */
+  private Optional<BigDecimal> consumeAsks(final BigDecimal amountToSpend) {
+    BigDecimal purchasedAmount = BigDecimal.ZERO;
+    BigDecimal amountLeftToSpend = amountToSpend;
+    for (int level = 0; level < askPrices.length; level++) {
+      final BigDecimal price = BigDecimal.valueOf(askPrices[level], priceScale);
+      final BigDecimal quantity = BigDecimal.valueOf(askQuantities[level], quantityScale);
+      final BigDecimal amountWantedAtAskPrice =
+          BigDecimalUtils.divide(amountLeftToSpend, price, 8);
+      if (amountWantedAtAskPrice.compareTo(quantity) > 0) {
+        amountLeftToSpend = amountLeftToSpend.subtract(quantity.multiply(price));
+        purchasedAmount = purchasedAmount.add(quantity);
+      } else
+        return Optional.of(purchasedAmount.add(amountWantedAtAskPrice));
+    }
+    return Optional.empty();
+  }
+
+  public FullMarketDepth toFullMarketDepth() {
+    final FullMarketDepth.MarketDepthBuilder builder = FullMarketDepth.builder(exchange, market);
+    for (int level = 0; level < bidPrices.length; level++) {
+      builder.addBid(BigDecimal.valueOf(bidPrices[level], priceScale),
+          BigDecimal.valueOf(bidQuantities[level], quantityScale));
+    }
+    for (int level = 0; level < askPrices.length; level++) {
+      builder.addAsk(BigDecimal.valueOf(askPrices[level], priceScale),
+          BigDecimal.valueOf(askQuantities[level], quantityScale));
+    }
+    return builder.build();
+  }
+
+  public static ScaledMarketDepth fromFullMarketDepth(final FullMarketDepth marketDepth) {
+    final ScaledMarketDepthBuilder builder =
+        ScaledMarketDepth.builder(marketDepth.getExchange(), marketDepth.getMarket());
+    marketDepth.getBids().forEach(
+        bid -> builder.addBid(bid.getLimitPrice(), bid.getTradableAmount()));
+    marketDepth.getAsks().forEach(
+        ask -> builder.addAsk(ask.getLimitPrice(), ask.getTradableAmount()));
+    return builder.build();
+  }
+
+  public static long toScaled(final BigDecimal value, final int scale) {
+    return value.setScale(scale, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+  }
+
+  /**
+   * Formats a scaled long like {@code BigDecimal.stripTrailingZeros().toPlainString()} without
+   * creating the BigDecimal.
+   */
+  public static String toPlainString(final long scaledValue, final int scale) {
+    if (scaledValue == Long.MIN_VALUE)
+      return BigDecimal.valueOf(scaledValue, scale).stripTrailingZeros().toPlainString();
+    final String digits = Long.toString(Math.abs(scaledValue));
+    final StringBuilder plain = new StringBuilder(digits.length() + scale + 3);
+    if (scaledValue < 0) {
+      plain.append('-');
+    }
+    final int integerDigits = digits.length() - scale;
+    if (integerDigits > 0) {
+      plain.append(digits, 0, integerDigits);
+    } else {
+      plain.append('0');
+    }
+    int end = digits.length();
+    while (end > Math.max(integerDigits, 0) && digits.charAt(end - 1) == '0') {
+      end--;
+    }
+    if (end > Math.max(integerDigits, 0)) {
+      plain.append('.');
+      for (int i = integerDigits; i < 0; i++) {
+        plain.append('0');
+      }
+      plain.append(digits, Math.max(integerDigits, 0), end);
+    }
+    return plain.toString();
+  }
+
+  /**
+   * Parses a plain decimal string directly into a scaled long, falling back to {@link BigDecimal}
+   * for exponents, rounding and anything else unusual.
+   *
+   * @throws NumberFormatException if the value is not a decimal number, e.g. {@code "."}.
+   * @throws ArithmeticException if the scaled value does not fit in a long.
+   */
+  public static long parseScaled(final String value, final int scale) {
+    final int length = value.length();
+    int index = 0;
+    boolean negative = false;
+    if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+      negative = value.charAt(0) == '-';
+      index++;
+    }
+    if (index == length)
+      return toScaled(new BigDecimal(value), scale);
+
+    long unscaled = 0;
+    int digits = 0;
+    int fractionDigits = -1;
+    int significantDigits = 0;
+    for (; index < length; index++) {
+      final char c = value.charAt(index);
+      if (c == '.' && fractionDigits < 0) {
+        fractionDigits = 0;
+        continue;
+      }
+      if (c < '0' || c > '9' || fractionDigits == scale || significantDigits == 18)
+        return toScaled(new BigDecimal(value), scale);
+      unscaled = unscaled * 10 + (c - '0');
+      digits++;
+      if (unscaled != 0) {
+        significantDigits++;
+      }
+      if (fractionDigits >= 0) {
+        fractionDigits++;
+      }
+    }
+    if (digits == 0)
+      return toScaled(new BigDecimal(value), scale);
+    for (int digit = Math.max(fractionDigits, 0); digit < scale; digit++) {
+      unscaled = Math.multiplyExact(unscaled, 10L);
+    }
+    return negative ? -unscaled : unscaled;
+  }
+
+  @Override
+  public String toString() {
+    return toFullMarketDepth().toString();
+  }
+
+  public static ScaledMarketDepthBuilder builder(final Exchange exchange, final AssetPair market) {
+    return new ScaledMarketDepthBuilder(exchange, market);
+  }
+
+  public static class ScaledMarketDepthBuilder {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Exchange exchange;
+    private final AssetPair market;
+    private final int priceScale;
+    private final int quantityScale;
+
+    private long[] bidPrices = new long[INITIAL_CAPACITY];
+    private long[] bidQuantities = new long[INITIAL_CAPACITY];
+    private int numBids = 0;
+    private long[] askPrices = new long[INITIAL_CAPACITY];
+    private long[] askQuantities = new long[INITIAL_CAPACITY];
+    private int numAsks = 0;
+
+    private ScaledMarketDepthBuilder(final Exchange exchange, final AssetPair market) {
+      this.exchange = exchange;
+      this.market = market;
+      this.priceScale = ScaledMarketDepth.getPriceScale(market);
+      this.quantityScale = ScaledMarketDepth.getQuantityScale(market);
+    }
+
+    public int getPriceScale() {
+      return priceScale;
+    }
+
+    public int getQuantityScale() {
+      return quantityScale;
+    }
+
+    public ScaledMarketDepthBuilder addBid(final String price, final String quantity) {
+      return addScaledBid(parseScaled(price, priceScale), parseScaled(quantity, quantityScale));
+    }
+
+    public ScaledMarketDepthBuilder addAsk(final String price, final String quantity) {
+      return addScaledAsk(parseScaled(price, priceScale), parseScaled(quantity, quantityScale));
+    }
+
+    public ScaledMarketDepthBuilder addBid(final BigDecimal price, final BigDecimal quantity) {
+      return addScaledBid(toScaled(price, priceScale), toScaled(quantity, quantityScale));
+    }
+
+    public ScaledMarketDepthBuilder addAsk(final BigDecimal price, final BigDecimal quantity) {
+      return addScaledAsk(toScaled(price, priceScale), toScaled(quantity, quantityScale));
+    }
+
+    public ScaledMarketDepthBuilder addScaledBid(final long price, final long quantity) {
+      if (numBids == bidPrices.length) {
+        bidPrices = Arrays.copyOf(bidPrices, numBids << 1);
+        bidQuantities = Arrays.copyOf(bidQuantities, numBids << 1);
+      }
+      bidPrices[numBids] = price;
+      bidQuantities[numBids++] = quantity;
+      return this;
+    }
+
+    public ScaledMarketDepthBuilder addScaledAsk(final long price, final long quantity) {
+      if (numAsks == askPrices.length) {
+        askPrices = Arrays.copyOf(askPrices, numAsks << 1);
+        askQuantities = Arrays.copyOf(askQuantities, numAsks << 1);
+      }
+      askPrices[numAsks] = price;
+      askQuantities[numAsks++] = quantity;
+      return this;
+    }
+
+    public ScaledMarketDepth build() {
+      // Negate bid prices so a single ascending sort/merge handles both sides.
+      final long[] builtBidPrices = new long[numBids];
+      for (int i = 0; i < numBids; i++) {
+        builtBidPrices[i] = -bidPrices[i];
+      }
+      final long[] builtBidQuantities = Arrays.copyOf(bidQuantities, numBids);
+      final int mergedBids = sortAndMerge(builtBidPrices, builtBidQuantities, numBids);
+      for (int i = 0; i < mergedBids; i++) {
+        builtBidPrices[i] = -builtBidPrices[i];
+      }
+      final long[] builtAskPrices = Arrays.copyOf(askPrices, numAsks);
+      final long[] builtAskQuantities = Arrays.copyOf(askQuantities, numAsks);
+      final int mergedAsks = sortAndMerge(builtAskPrices, builtAskQuantities, numAsks);
+      return new ScaledMarketDepth(exchange, market, priceScale, quantityScale, trim(
+          builtBidPrices, mergedBids), trim(builtBidQuantities, mergedBids), trim(builtAskPrices,
+          mergedAsks), trim(builtAskQuantities, mergedAsks));
+    }
+
+    private static long[] trim(final long[] values, final int size) {
+      return values.length == size ? values : Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Sorts by ascending price, sums the quantities of duplicate prices and drops levels left
+     * without a positive quantity.
+     *
+     * @return the number of levels left at the front of the arrays.
+     */
+    private static int sortAndMerge(final long[] prices, final long[] quantities, final int size) {
+      if (!isSorted(prices, size)) {
+        heapSort(prices, quantities, size);
+      }
+      int merged = 0;
+      for (int i = 0; i < size; i++) {
+        if (merged > 0 && prices[merged - 1] == prices[i]) {
+          quantities[merged - 1] = Math.addExact(quantities[merged - 1], quantities[i]);
+          continue;
+        }
+        if (merged > 0 && quantities[merged - 1] <= 0) {
+          merged--;
+        }
+        prices[merged] = prices[i];
+        quantities[merged++] = quantities[i];
+      }
+      return merged > 0 && quantities[merged - 1] <= 0 ? merged - 1 : merged;
+    }
+
+    private static boolean isSorted(final long[] prices, final int size) {
+      for (int i = 1; i < size; i++) {
+        if (prices[i - 1] > prices[i])
+          return false;
+      }
+      return true;
+    }
+
+    private static void heapSort(final long[] prices, final long[] quantities, final int size) {
+      for (int i = size / 2 - 1; i >= 0; i--) {
+        siftDown(prices, quantities, i, size);
+      }
+      for (int end = size - 1; end > 0; end--) {
+        swap(prices, quantities, 0, end);
+        siftDown(prices, quantities, 0, end);
+      }
+    }
+
+    private static void siftDown(final long[] prices, final long[] quantities, int root,
+        final int size) {
+      for (int child = 2 * root + 1; child < size; root = child, child = 2 * root + 1) {
+        if (child + 1 < size && prices[child + 1] > prices[child]) {
+          child++;
+        }
+        if (prices[root] >= prices[child])
+          return;
+        swap(prices, quantities, root, child);
+      }
+    }
+
+    private static void swap(final long[] prices, final long[] quantities, final int i,
+        final int j) {
+      final long price = prices[i];
+      prices[i] = prices[j];
+      prices[j] = price;
+      final long quantity = quantities[i];
+      quantities[i] = quantities[j];
+      quantities[j] = quantity;
+    }
+  }
+}
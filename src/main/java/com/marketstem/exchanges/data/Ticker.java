@@ -9,10 +9,18 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonSerializationContext;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import com.marketstem.exchanges.Exchange;
+import com.marketstem.serialization.BinaryMarshaller;
+import com.marketstem.serialization.BinaryReader;
+import com.marketstem.serialization.BinaryWriter;
+import com.marketstem.serialization.JsonStreams;
 import com.marketstem.services.marketdata.aggregation.AssetConverter;
 import com.xeiam.xchange.currency.CurrencyPair;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -195,11 +203,108 @@ public class Ticker {
       final BigDecimal bid = GsonUtils.getBigDecimal(jsonObject.get("bid"));
       final BigDecimal ask = GsonUtils.getBigDecimal(jsonObject.get("ask"));
       final BigDecimal high = GsonUtils.getBigDecimal(jsonObject.get("high"));
-      final BigDecimal low = GsonUtils.getBigDecimal(jsonObject.get("volume"));
+      final BigDecimal low = GsonUtils.getBigDecimal(jsonObject.get("low"));
       final BigDecimal volume = GsonUtils.getBigDecimal(jsonObject.get("volume"));
       final Instant timestamp = GsonUtils.getIso8601Instant(jsonObject.get("timestamp"));
 
       return new Ticker(exchange, market, last, bid, ask, high, low, volume, timestamp);
     }
   }
+
+  /**
+   * Streaming equivalent of {@link TickerMarshaller}, reads and writes without building a json
+   * tree.
+   */
+  public static class TickerTypeAdapter extends TypeAdapter<Ticker> {
+
+    @Override
+    public void write(final JsonWriter out, final Ticker src) throws IOException {
+      out.beginObject();
+      out.name("exchange").value(src.getExchange().toString());
+      out.name("market").value(src.getAssetPair().toString());
+      JsonStreams.writeDecimal(out, "last", src.getLast());
+      JsonStreams.writeDecimal(out, "bid", src.getBid());
+      JsonStreams.writeDecimal(out, "ask", src.getAsk());
+      JsonStreams.writeDecimal(out, "high", src.getHigh());
+      JsonStreams.writeDecimal(out, "low", src.getLow());
+      JsonStreams.writeDecimal(out, "volume", src.getVolume());
+      JsonStreams.writeInstant(out, "timestamp", src.getTimestamp());
+      out.endObject();
+    }
+
+    @Override
+    public Ticker read(final JsonReader in) throws IOException {
+      Exchange exchange = null;
+      AssetPair market = null;
+      BigDecimal last = null;
+      BigDecimal bid = null;
+      BigDecimal ask = null;
+      BigDecimal high = null;
+      BigDecimal low = null;
+      BigDecimal volume = null;
+      Instant timestamp = null;
+
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "exchange":
+            exchange = Exchange.fromString(in.nextString());
+            break;
+          case "market":
+            market = AssetPair.fromString(in.nextString()).get();
+            break;
+          case "last":
+            last = JsonStreams.nextDecimal(in);
+            break;
+          case "bid":
+            bid = JsonStreams.nextDecimal(in);
+            break;
+          case "ask":
+            ask = JsonStreams.nextDecimal(in);
+            break;
+          case "high":
+            high = JsonStreams.nextDecimal(in);
+            break;
+          case "low":
+            low = JsonStreams.nextDecimal(in);
+            break;
+          case "volume":
+            volume = JsonStreams.nextDecimal(in);
+            break;
+          case "timestamp":
+            timestamp = JsonStreams.nextInstant(in);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+
+      return new Ticker(exchange, market, last, bid, ask, high, low, volume, timestamp);
+    }
+  }
+
+  public static class TickerBinaryMarshaller implements BinaryMarshaller<Ticker> {
+
+    @Override
+    public void write(final BinaryWriter out, final Ticker src) {
+      out.writeInterned(src.getExchange().toString());
+      out.writeInterned(src.getAssetPair().toString());
+      out.writeDecimal(src.getLast().orElse(null));
+      out.writeDecimal(src.getBid().orElse(null));
+      out.writeDecimal(src.getAsk().orElse(null));
+      out.writeDecimal(src.getHigh().orElse(null));
+      out.writeDecimal(src.getLow().orElse(null));
+      out.writeDecimal(src.getVolume().orElse(null));
+      out.writeInstant(src.getTimestamp());
+    }
+
+    @Override
+    public Ticker read(final BinaryReader in) {
+      final Exchange exchange = Exchange.fromString(in.readInterned());
+      final AssetPair market = AssetPair.fromString(in.readInterned()).get();
+      return new Ticker(exchange, market, in.readDecimal(), in.readDecimal(), in.readDecimal(),
+          in.readDecimal(), in.readDecimal(), in.readDecimal(), in.readInstant());
+    }
+  }
 }
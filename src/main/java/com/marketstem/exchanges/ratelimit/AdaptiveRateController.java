@@ -0,0 +1,242 @@
+package com.marketstem.exchanges.ratelimit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fabahaba.fava.logging.Loggable;
+import com.marketstem.services.metrics.MarketstemMetrics;
+import com.xeiam.xchange.exceptions.ExchangeException;
+import com.xeiam.xchange.exceptions.NotAvailableFromExchangeException;
+import com.xeiam.xchange.exceptions.NotYetImplementedForExchangeException;
+
+import si.mazi.rescu.HttpStatusIOException;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Additive increase, multiplicative decrease of a factor applied to the configured rates of one
+ * class of calls to one exchange. While calls succeed without latency spikes the factor rises by
+ * {@link #ADDITIVE_INCREASE} at most once per {@link #INCREASE_INTERVAL_MILLIS}. A signal that the
+ * exchange itself is overloaded halves it, at most once per {@link #DECREASE_COOLDOWN_MILLIS} since
+ * the calls in flight fail together: an http 429 or 5xx, an i/o failure, an
+ * {@link ExchangeException} caused by either or reporting throttling, or a response slower than
+ * {@link #LATENCY_SPIKE_RATIO} times the average. Other failures, like an unknown market, say
+ * nothing about the exchange's load and are ignored. Single market and bulk calls keep separate
+ * latency averages, since an all markets response is expected to take longer.
+ *
+ * <p>
+ * The state is exported under {@code ratecontrol.<name>}: gauges of the {@code factor} and the
+ * average {@code latencyMillis} and {@code bulkLatencyMillis}, and meters of {@code increases} and
+ * {@code decreases}.
+ * </p>
+ */
+public class AdaptiveRateController implements Loggable {
+
+  static final double MIN_FACTOR = .05;
+  static final double MAX_FACTOR = 4;
+  static final double ADDITIVE_INCREASE = .05;
+  static final double MULTIPLICATIVE_DECREASE = .5;
+  static final long INCREASE_INTERVAL_MILLIS = 1000;
+  static final long DECREASE_COOLDOWN_MILLIS = 5000;
+  static final double LATENCY_SPIKE_RATIO = 3;
+  private static final double LATENCY_ALPHA = .1;
+  private static final long MIN_LATENCY_SAMPLES = 10;
+  private static final int TOO_MANY_REQUESTS = 429;
+  private static final int SERVER_ERROR = 500;
+  private static final Pattern THROTTLED = Pattern.compile(
+      "\\b429\\b|too many requests|rate ?limit|throttl|service unavailable",
+      Pattern.CASE_INSENSITIVE);
+
+  private final String name;
+  private final DoubleConsumer onFactorChange;
+  private final LongSupplier nanoClock;
+  private final Meter increases;
+  private final Meter decreases;
+  private final LatencyAverage latency = new LatencyAverage();
+  private final LatencyAverage bulkLatency = new LatencyAverage();
+  private volatile double factor = 1;
+  // Guarded by this.
+  private long lastIncreaseNanos;
+  private long lastDecreaseNanos;
+
+  /**
+   * @param onFactorChange receives the new factor, outside of any lock.
+   */
+  public AdaptiveRateController(final String name, final DoubleConsumer onFactorChange) {
+    this(name, onFactorChange, System::nanoTime);
+  }
+
+  AdaptiveRateController(final String name, final DoubleConsumer onFactorChange,
+      final LongSupplier nanoClock) {
+    this.name = name;
+    this.onFactorChange = onFactorChange;
+    this.nanoClock = nanoClock;
+    this.lastIncreaseNanos = nanoClock.getAsLong();
+    this.lastDecreaseNanos =
+        lastIncreaseNanos - TimeUnit.MILLISECONDS.toNanos(DECREASE_COOLDOWN_MILLIS);
+    final MetricRegistry registry = MarketstemMetrics.MARKETSTEM.getRegistry();
+    final String prefix = MetricRegistry.name("ratecontrol", name);
+    this.increases = registry.meter(MetricRegistry.name(prefix, "increases"));
+    this.decreases = registry.meter(MetricRegistry.name(prefix, "decreases"));
+    registry.register(MetricRegistry.name(prefix, "factor"), (Gauge<Double>) () -> factor);
+    registry.register(MetricRegistry.name(prefix, "latencyMillis"),
+        (Gauge<Double>) () -> latency.millis);
+    registry.register(MetricRegistry.name(prefix, "bulkLatencyMillis"),
+        (Gauge<Double>) () -> bulkLatency.millis);
+  }
+
+  public double getFactor() {
+    return factor;
+  }
+
+  /**
+   * @return {@code call} for a single market, timed and with its failures recorded. Null results
+   *         are not recorded, they stand for calls the exchange does not support.
+   */
+  public <T> Callable<T> observe(final Callable<T> call) {
+    return observe(call, latency);
+  }
+
+  /**
+   * @return {@code call} for all markets at once, timed against its own latency average.
+   */
+  public <T> Callable<T> observeBulk(final Callable<T> call) {
+    return observe(call, bulkLatency);
+  }
+
+  private <T> Callable<T> observe(final Callable<T> call, final LatencyAverage average) {
+    return () -> {
+      final long start = nanoClock.getAsLong();
+      final T result;
+      try {
+        result = call.call();
+      } catch (final Exception e) {
+        recordFailure(e);
+        throw e;
+      }
+      if (result != null) {
+        recordSuccess(average, nanoClock.getAsLong() - start);
+      }
+      return result;
+    };
+  }
+
+  public void recordSuccess(final long latencyNanos) {
+    recordSuccess(latency, latencyNanos);
+  }
+
+  public void recordBulkSuccess(final long latencyNanos) {
+    recordSuccess(bulkLatency, latencyNanos);
+  }
+
+  private void recordSuccess(final LatencyAverage average, final long latencyNanos) {
+    final double millis = latencyNanos / 1e6;
+    final double newFactor;
+    synchronized (this) {
+      if (average.add(millis)) {
+        newFactor = decrease("a " + (long) millis + "ms response");
+      } else {
+        newFactor = increase();
+      }
+    }
+    if (!Double.isNaN(newFactor)) {
+      onFactorChange.accept(newFactor);
+    }
+  }
+
+  public void recordFailure(final Exception e) {
+    if (!isBackoffSignal(e)) {
+      return;
+    }
+    final double newFactor;
+    synchronized (this) {
+      newFactor = decrease(e.toString());
+    }
+    if (!Double.isNaN(newFactor)) {
+      onFactorChange.accept(newFactor);
+    }
+  }
+
+  static boolean isBackoffSignal(final Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof NotAvailableFromExchangeException
+          || cause instanceof NotYetImplementedForExchangeException) {
+        return false;
+      }
+      if (cause instanceof HttpStatusIOException) {
+        final int status = ((HttpStatusIOException) cause).getHttpStatusCode();
+        return status == TOO_MANY_REQUESTS || status >= SERVER_ERROR;
+      }
+      if (cause instanceof IOException) {
+        return true;
+      }
+      if (cause instanceof ExchangeException && cause.getMessage() != null
+          && THROTTLED.matcher(cause.getMessage()).find()) {
+        return true;
+      }
+      if (cause.getCause() == cause) {
+        break;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the new factor, or NaN if it did not change.
+   */
+  private double increase() {
+    final long now = nanoClock.getAsLong();
+    if (factor >= MAX_FACTOR
+        || now - lastIncreaseNanos < TimeUnit.MILLISECONDS.toNanos(INCREASE_INTERVAL_MILLIS)
+        || now - lastDecreaseNanos < TimeUnit.MILLISECONDS.toNanos(DECREASE_COOLDOWN_MILLIS)) {
+      return Double.NaN;
+    }
+    lastIncreaseNanos = now;
+    factor = Math.min(MAX_FACTOR, factor + ADDITIVE_INCREASE);
+    increases.mark();
+    return factor;
+  }
+
+  private double decrease(final String cause) {
+    final long now = nanoClock.getAsLong();
+    if (factor <= MIN_FACTOR
+        || now - lastDecreaseNanos < TimeUnit.MILLISECONDS.toNanos(DECREASE_COOLDOWN_MILLIS)) {
+      return Double.NaN;
+    }
+    lastDecreaseNanos = now;
+    factor = Math.max(MIN_FACTOR, factor * MULTIPLICATIVE_DECREASE);
+    decreases.mark();
+    debug("Cut " + name + " rate factor to " + factor + " after " + cause);
+    return factor;
+  }
+
+  @Override
+  public String toString() {
+    return name + " factor " + factor + ", latency " + latency.millis + "ms, bulk latency "
+        + bulkLatency.millis + "ms";
+  }
+
+  /**
+   * Exponentially weighted average of one class of calls. Guarded by the controller.
+   */
+  private static class LatencyAverage {
+
+    private volatile double millis = 0;
+    private long samples = 0;
+
+    /**
+     * @return whether {@code sampleMillis} is a spike against the average before it.
+     */
+    private boolean add(final double sampleMillis) {
+      final boolean spike = samples >= MIN_LATENCY_SAMPLES && sampleMillis > LATENCY_SPIKE_RATIO
+          * millis;
+      millis = samples++ == 0 ? sampleMillis : millis + LATENCY_ALPHA * (sampleMillis - millis);
+      return spike;
+    }
+  }
+}
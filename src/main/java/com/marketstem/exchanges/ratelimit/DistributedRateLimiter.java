@@ -0,0 +1,268 @@
+package com.marketstem.exchanges.ratelimit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fabahaba.fava.logging.Loggable;
+import com.fabahaba.fava.system.HostUtils;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.marketstem.database.redis.RedisExecutor;
+import com.marketstem.services.metrics.MarketstemMetrics;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * A token bucket in redis shared by every node calling the same exchange api, so the pollers of
+ * one exchange stay within its real limit even when their leaders are elected on different nodes.
+ * Permits are leased from redis in batches of about a tenth of a second's worth, but at least
+ * {@link #MIN_BATCH_SIZE}, and the next batch is leased in the background once half of the local
+ * batch is used, so permits in hand bridge the round trip and most never wait on it. Each
+ * limiter leases on its own thread, so a slow exchange's denials never delay another's leases.
+ * Leased permits expire after {@link #LEASE_MILLIS}, so an idle node can not hoard them.
+ *
+ * <p>
+ * While redis is unreachable, for {@link #FALLBACK_MILLIS}, permits are granted locally at this
+ * node's share of the rate: the rate divided by the nodes that leased within
+ * {@link #NODE_WINDOW_MILLIS} as of the last lease, or by {@code ratelimit.nodes} before any lease.
+ * </p>
+ *
+ * <p>
+ * Metrics are registered under {@code ratelimit.<name>}: meters of permits {@code used},
+ * {@code leased}, lease requests {@code denied} and {@code fallbacks}, and the gauge
+ * {@code utilization}, the share of the cluster wide budget this node used over the last minute.
+ * Summed across nodes it is the exchange's budget utilization.
+ * </p>
+ */
+public class DistributedRateLimiter implements Loggable {
+
+  public static final DistributedRateLimiter UNLIMITED = new DistributedRateLimiter(null,
+      Double.POSITIVE_INFINITY);
+
+  static final long LEASE_MILLIS = 1000;
+  static final long FALLBACK_MILLIS = 30000;
+  static final long NODE_WINDOW_MILLIS = 60000;
+  private static final int DEFAULT_NODES = Integer.getInteger("ratelimit.nodes", 1);
+  private static final double LEASE_SECONDS_PER_BATCH = 0.1;
+  static final int MIN_BATCH_SIZE = 2;
+  private static final long MAX_DENIED_BACKOFF_MILLIS = 1000;
+
+  // Refills the bucket for the time elapsed on the redis clock, then grants up to the batch size.
+  // Also returns how many nodes leased within the node window, for the fallback share.
+  private static final String LEASE_SCRIPT = "redis.replicate_commands()\n"
+      + "local rate = tonumber(ARGV[1])\n"
+      + "local capacity = tonumber(ARGV[2])\n"
+      + "local requested = tonumber(ARGV[3])\n"
+      + "local time = redis.call('TIME')\n"
+      + "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n"
+      + "local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')\n"
+      + "local tokens = tonumber(bucket[1]) or capacity\n"
+      + "local ts = tonumber(bucket[2]) or now\n"
+      + "tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate / 1000)\n"
+      + "local granted = math.min(requested, math.floor(tokens))\n"
+      + "redis.call('HMSET', KEYS[1], 'tokens', tostring(tokens - granted), 'ts', now)\n"
+      + "redis.call('PEXPIRE', KEYS[1], math.ceil(capacity * 1000 / rate) + 1000)\n"
+      + "local window = tonumber(ARGV[5])\n"
+      + "redis.call('ZADD', KEYS[2], now, ARGV[4])\n"
+      + "redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', now - window)\n"
+      + "redis.call('PEXPIRE', KEYS[2], window)\n"
+      + "return {granted, redis.call('ZCARD', KEYS[2])}";
+
+  private final String key;
+  private final String nodesKey;
+  private final IntFunction<long[]> leaseSource;
+  private final ScheduledExecutorService leaser;
+  private final RateLimiter fallbackLimiter;
+  private final double permitsPerSecond;
+  private final int batchSize;
+  private final int capacity;
+  private final Meter used;
+  private final Meter leasedMeter;
+  private final Meter denied;
+  private final Meter fallbacks;
+
+  // Guarded by this.
+  private int leased = 0;
+  private long leaseExpiresNanos = System.nanoTime();
+  private long nextLeaseNanos = leaseExpiresNanos;
+  private long fallbackUntilNanos = leaseExpiresNanos;
+  private long nodes = DEFAULT_NODES;
+  private boolean leasing = false;
+  private CompletableFuture<Void> pendingLease = CompletableFuture.completedFuture(null);
+
+  private DistributedRateLimiter(final String name, final double permitsPerSecond) {
+    this(name, permitsPerSecond, null);
+  }
+
+  /**
+   * @param leaseSource leases up to the requested permits, returning {granted, active nodes}, or
+   *        null to lease from redis.
+   */
+  DistributedRateLimiter(final String name, final double permitsPerSecond,
+      final IntFunction<long[]> leaseSource) {
+    this.key = name == null ? null : "ratelimit." + name;
+    this.nodesKey = name == null ? null : key + ".nodes";
+    this.leaseSource = leaseSource == null ? this::leaseFromRedis : leaseSource;
+    this.permitsPerSecond = permitsPerSecond;
+    this.batchSize =
+        (int) Math.max(MIN_BATCH_SIZE, Math.ceil(permitsPerSecond * LEASE_SECONDS_PER_BATCH));
+    this.capacity = (int) Math.max(batchSize, Math.ceil(permitsPerSecond));
+    if (name == null) {
+      this.leaser = null;
+      this.fallbackLimiter = null;
+      this.used = new Meter();
+      this.leasedMeter = new Meter();
+      this.denied = new Meter();
+      this.fallbacks = new Meter();
+      return;
+    }
+    this.leaser = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setDaemon(true).setNameFormat("distributed-rate-limiter-" + name).build());
+    this.fallbackLimiter = RateLimiter.create(permitsPerSecond / DEFAULT_NODES);
+    final MetricRegistry registry = MarketstemMetrics.MARKETSTEM.getRegistry();
+    this.used = registry.meter(MetricRegistry.name(key, "used"));
+    this.leasedMeter = registry.meter(MetricRegistry.name(key, "leased"));
+    this.denied = registry.meter(MetricRegistry.name(key, "denied"));
+    this.fallbacks = registry.meter(MetricRegistry.name(key, "fallbacks"));
+    registry.register(MetricRegistry.name(key, "utilization"),
+        (Gauge<Double>) () -> used.getOneMinuteRate() / permitsPerSecond);
+  }
+
+  /**
+   * @param name identifies the api whose budget is shared, e.g. {@code BITSTAMP.public}.
+   */
+  public static DistributedRateLimiter create(final String name, final double permitsPerSecond) {
+    return new DistributedRateLimiter(name, permitsPerSecond);
+  }
+
+  public double getRate() {
+    return permitsPerSecond;
+  }
+
+  /**
+   * Never waits on redis. Returns false while a lease is being fetched.
+   */
+  public synchronized boolean tryAcquire() {
+    if (key == null) {
+      return true;
+    }
+    final long now = System.nanoTime();
+    if (now - fallbackUntilNanos < 0) {
+      if (!fallbackLimiter.tryAcquire()) {
+        return false;
+      }
+      used.mark();
+      return true;
+    }
+    if (now - leaseExpiresNanos > 0) {
+      leased = 0;
+    }
+    if (leased <= batchSize / 2) {
+      requestLease(now);
+    }
+    if (leased == 0) {
+      return false;
+    }
+    leased--;
+    used.mark();
+    return true;
+  }
+
+  /**
+   * Waits for the next lease, or on the fallback share while redis is unreachable.
+   */
+  public void acquire() {
+    for (;;) {
+      final CompletableFuture<Void> lease;
+      synchronized (this) {
+        if (tryAcquire()) {
+          return;
+        }
+        lease = System.nanoTime() - fallbackUntilNanos < 0 ? null : pendingLease;
+      }
+      if (lease == null) {
+        fallbackLimiter.acquire();
+        used.mark();
+        return;
+      }
+      lease.join();
+    }
+  }
+
+  /**
+   * Returns a permit taken by {@link #tryAcquire()} but not used, e.g. because a local limiter
+   * refused the request after all.
+   */
+  public synchronized void release() {
+    if (key == null || System.nanoTime() - leaseExpiresNanos > 0) {
+      return;
+    }
+    leased++;
+  }
+
+  /**
+   * Leases now, or once a denied lease's backoff has passed. Guarded by this.
+   */
+  private void requestLease(final long now) {
+    if (leasing) {
+      return;
+    }
+    leasing = true;
+    pendingLease = new CompletableFuture<>();
+    leaser.schedule(this::lease, Math.max(0, nextLeaseNanos - now), TimeUnit.NANOSECONDS);
+  }
+
+  private long[] leaseFromRedis(final int requested) {
+    final List<?> lease = RedisExecutor.MARKETSTEM.applyJedis(jedis -> (List<?>) jedis.eval(
+        LEASE_SCRIPT, ImmutableList.of(key, nodesKey), ImmutableList.of(
+            Double.toString(permitsPerSecond), Integer.toString(capacity),
+            Integer.toString(requested), HostUtils.HOST_NAME, Long.toString(NODE_WINDOW_MILLIS))));
+    return new long[] {(Long) lease.get(0), (Long) lease.get(1)};
+  }
+
+  private void lease() {
+    long granted = 0;
+    long activeNodes = 0;
+    boolean failed = false;
+    try {
+      final long[] lease = leaseSource.apply(batchSize);
+      granted = lease[0];
+      activeNodes = lease[1];
+    } catch (final RuntimeException e) {
+      catching(e);
+      failed = true;
+    }
+    final CompletableFuture<Void> completedLease;
+    synchronized (this) {
+      leasing = false;
+      completedLease = pendingLease;
+      final long now = System.nanoTime();
+      if (activeNodes > 0 && activeNodes != nodes) {
+        nodes = activeNodes;
+        fallbackLimiter.setRate(permitsPerSecond / nodes);
+      }
+      if (failed) {
+        fallbacks.mark();
+        fallbackUntilNanos = now + TimeUnit.MILLISECONDS.toNanos(FALLBACK_MILLIS);
+        warn("Falling back to " + fallbackLimiter.getRate() + "/s, 1/" + nodes + " of " + key
+            + ", for " + FALLBACK_MILLIS + "ms");
+      } else if (granted == 0) {
+        denied.mark();
+        nextLeaseNanos =
+            now + TimeUnit.MILLISECONDS.toNanos(Math.min(MAX_DENIED_BACKOFF_MILLIS,
+                (long) (1000 * batchSize / permitsPerSecond)));
+      } else {
+        leasedMeter.mark(granted);
+        leased += granted;
+        leaseExpiresNanos = now + TimeUnit.MILLISECONDS.toNanos(LEASE_MILLIS);
+      }
+    }
+    completedLease.complete(null);
+  }
+}
@@ -0,0 +1,115 @@
+package com.marketstem.exchanges.replay;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.ExchangeClient;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.exchanges.data.AssetPair.AssetPairMarshaller;
+import com.marketstem.exchanges.data.FullMarketDepth;
+import com.marketstem.exchanges.data.PublicTrade;
+import com.marketstem.exchanges.data.Ticker;
+import com.marketstem.serialization.Marshalling;
+
+import java.io.File;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Responses of the market data calls of an {@link ExchangeClient}, recorded to
+ * {@code <dir>/<EXCHANGE>.jsonl.gz} as one gzipped json {@link Record} per line.
+ * <ul>
+ * <li>{@code -Dexchange.record.dir=<dir>} records every exchange's responses while still calling
+ * the exchanges.</li>
+ * <li>{@code -Dexchange.replay.dir=<dir>} serves recorded responses instead of calling the
+ * exchanges, at the recorded pace divided by {@code -Dexchange.replay.speed} (default 1, 0 or less
+ * for as fast as they are requested). Recordings loop when they run out.</li>
+ * </ul>
+ */
+public class ExchangeRecording {
+
+  public static final String RECORD_DIR_PROPERTY = "exchange.record.dir";
+  public static final String REPLAY_DIR_PROPERTY = "exchange.replay.dir";
+  public static final String REPLAY_SPEED_PROPERTY = "exchange.replay.speed";
+
+  static final Gson RECORDING_GSON = Marshalling.BASE_GSON_BUILDER.registerTypeAdapter(
+      AssetPair.class, new AssetPairMarshaller()).create();
+
+  /**
+   * @return {@code client} itself unless recording or replay is configured.
+   */
+  public static ExchangeClient wrapIfConfigured(final ExchangeClient client) {
+    final String replayDir = System.getProperty(REPLAY_DIR_PROPERTY);
+    if (replayDir != null) {
+      final double speed =
+          Double.parseDouble(System.getProperty(REPLAY_SPEED_PROPERTY, Double.toString(1)));
+      client.warn("Replaying " + client.getExchange() + " from " + replayDir + " at " + speed
+          + "x");
+      return new ReplayExchangeClient(client, getFile(replayDir, client.getExchange()), speed);
+    }
+    final String recordDir = System.getProperty(RECORD_DIR_PROPERTY);
+    if (recordDir != null) {
+      client.warn("Recording " + client.getExchange() + " to " + recordDir);
+      return new RecordingExchangeClient(client, getFile(recordDir, client.getExchange()));
+    }
+    return client;
+  }
+
+  static File getFile(final String dir, final Exchange exchange) {
+    return new File(dir, exchange + ".jsonl.gz");
+  }
+
+  @SuppressWarnings("serial")
+  enum Call {
+    ASSET_PAIRS(new TypeToken<List<AssetPair>>() {}.getType()),
+    TICKER(Ticker.class),
+    TICKERS(new TypeToken<List<Ticker>>() {}.getType()),
+    DEPTH(FullMarketDepth.class),
+    DEPTHS(new TypeToken<List<FullMarketDepth>>() {}.getType()),
+    TRADES(new TypeToken<List<PublicTrade>>() {}.getType()),
+    ALL_TRADES(new TypeToken<List<PublicTrade>>() {}.getType());
+
+    private final Type responseType;
+
+    private Call(final Type responseType) {
+      this.responseType = responseType;
+    }
+
+    Type getResponseType() {
+      return responseType;
+    }
+  }
+
+  static class Record {
+
+    private final long time;
+    private final Call call;
+    private final String market;
+    // Absent for failed calls.
+    private final JsonElement response;
+
+    Record(final long time, final Call call, final AssetPair market, final JsonElement response) {
+      this.time = time;
+      this.call = call;
+      this.market = market == null ? null : market.toString();
+      this.response = response;
+    }
+
+    long getTime() {
+      return time;
+    }
+
+    Call getCall() {
+      return call;
+    }
+
+    String getMarket() {
+      return market;
+    }
+
+    JsonElement getResponse() {
+      return response;
+    }
+  }
+}
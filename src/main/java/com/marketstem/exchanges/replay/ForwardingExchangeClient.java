@@ -0,0 +1,146 @@
+package com.marketstem.exchanges.replay;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.ExchangeClient;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.exchanges.data.FullMarketDepth;
+import com.marketstem.exchanges.data.PublicTrade;
+import com.marketstem.exchanges.data.Ticker;
+import com.marketstem.exchanges.ratelimit.DistributedRateLimiter;
+import com.marketstem.services.cache.PipelinedRedisHashCache;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An {@link ExchangeClient} that forwards every call the market data pipeline makes to another
+ * client, so subclasses only override the calls they intercept.
+ */
+public abstract class ForwardingExchangeClient implements ExchangeClient {
+
+  private final ExchangeClient delegate;
+
+  protected ForwardingExchangeClient(final ExchangeClient delegate) {
+    this.delegate = delegate;
+  }
+
+  protected ExchangeClient getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public Exchange getExchange() {
+    return delegate.getExchange();
+  }
+
+  @Override
+  public PipelinedRedisHashCache<AssetPair, Long> getLastTradeIdsCache() {
+    return delegate.getLastTradeIdsCache();
+  }
+
+  @Override
+  public com.xeiam.xchange.Exchange getXeiamExchangeClient() {
+    return delegate.getXeiamExchangeClient();
+  }
+
+  @Override
+  public RateLimiter getPublicApiLimiter() {
+    return delegate.getPublicApiLimiter();
+  }
+
+  @Override
+  public RateLimiter getAuthenticatedApiLimiter() {
+    return delegate.getAuthenticatedApiLimiter();
+  }
+
+  @Override
+  public DistributedRateLimiter getDistributedApiLimiter() {
+    return delegate.getDistributedApiLimiter();
+  }
+
+  @Override
+  public RateLimiter getTickerRateLimiter(final AssetPair assetPair) {
+    return delegate.getTickerRateLimiter(assetPair);
+  }
+
+  @Override
+  public RateLimiter getTickersRateLimiter() {
+    return delegate.getTickersRateLimiter();
+  }
+
+  @Override
+  public RateLimiter getDepthRateLimiter(final AssetPair assetPair) {
+    return delegate.getDepthRateLimiter(assetPair);
+  }
+
+  @Override
+  public RateLimiter getDepthsRateLimiter() {
+    return delegate.getDepthsRateLimiter();
+  }
+
+  @Override
+  public RateLimiter getTradesRateLimiter(final AssetPair assetPair) {
+    return delegate.getTradesRateLimiter(assetPair);
+  }
+
+  @Override
+  public RateLimiter getTradesRateLimiter() {
+    return delegate.getTradesRateLimiter();
+  }
+
+  @Override
+  public Optional<Map<Object, BigDecimal>> getWallet() {
+    return delegate.getWallet();
+  }
+
+  @Override
+  public Optional<Collection<AssetPair>> callForAssetPairs() {
+    return delegate.callForAssetPairs();
+  }
+
+  @Override
+  public Optional<Ticker> callForTicker(final AssetPair assetPair, final Runnable acquirable) {
+    return delegate.callForTicker(assetPair, acquirable);
+  }
+
+  @Override
+  public Optional<Map<AssetPair, Ticker>> callForTickers() {
+    return delegate.callForTickers();
+  }
+
+  @Override
+  public Optional<FullMarketDepth> callForMarketDepth(final AssetPair assetPair,
+      final Runnable acquirable) {
+    return delegate.callForMarketDepth(assetPair, acquirable);
+  }
+
+  @Override
+  public Optional<Map<AssetPair, FullMarketDepth>> callForMarketDepths() {
+    return delegate.callForMarketDepths();
+  }
+
+  @Override
+  public Optional<List<PublicTrade>> callForPublicTrades(final AssetPair assetPair,
+      final Runnable acquirable) {
+    return delegate.callForPublicTrades(assetPair, acquirable);
+  }
+
+  @Override
+  public Optional<List<PublicTrade>> callForAllPublicTrades() {
+    return delegate.callForAllPublicTrades();
+  }
+
+  @Override
+  public String name() {
+    return delegate.name();
+  }
+
+  @Override
+  public String toString() {
+    return delegate.toString();
+  }
+}
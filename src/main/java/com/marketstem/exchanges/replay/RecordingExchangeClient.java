@@ -0,0 +1,119 @@
+package com.marketstem.exchanges.replay;
+
+import com.google.common.base.Throwables;
+import com.marketstem.exchanges.ExchangeClient;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.exchanges.data.FullMarketDepth;
+import com.marketstem.exchanges.data.PublicTrade;
+import com.marketstem.exchanges.data.Ticker;
+import com.marketstem.exchanges.replay.ExchangeRecording.Call;
+import com.marketstem.exchanges.replay.ExchangeRecording.Record;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Calls the exchange through its client and appends every market data response to a recording.
+ * Each record is flushed through the gzip stream as it is written, so a recording cut short by a
+ * crash can still be replayed up to its last record.
+ */
+public class RecordingExchangeClient extends ForwardingExchangeClient {
+
+  private final Writer writer;
+
+  public RecordingExchangeClient(final ExchangeClient delegate, final File file) {
+    super(delegate);
+    try {
+      file.getAbsoluteFile().getParentFile().mkdirs();
+      this.writer =
+          new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(
+              file), true), StandardCharsets.UTF_8));
+    } catch (final IOException e) {
+      throw Throwables.propagate(e);
+    }
+    Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+  }
+
+  @Override
+  public Optional<Collection<AssetPair>> callForAssetPairs() {
+    return record(Call.ASSET_PAIRS, null, getDelegate().callForAssetPairs());
+  }
+
+  @Override
+  public Optional<Ticker> callForTicker(final AssetPair assetPair, final Runnable acquirable) {
+    return record(Call.TICKER, assetPair, getDelegate().callForTicker(assetPair, acquirable));
+  }
+
+  @Override
+  public Optional<Map<AssetPair, Ticker>> callForTickers() {
+    final Optional<Map<AssetPair, Ticker>> tickers = getDelegate().callForTickers();
+    record(Call.TICKERS, null, tickers.map(Map::values));
+    return tickers;
+  }
+
+  @Override
+  public Optional<FullMarketDepth> callForMarketDepth(final AssetPair assetPair,
+      final Runnable acquirable) {
+    return record(Call.DEPTH, assetPair, getDelegate().callForMarketDepth(assetPair, acquirable));
+  }
+
+  @Override
+  public Optional<Map<AssetPair, FullMarketDepth>> callForMarketDepths() {
+    final Optional<Map<AssetPair, FullMarketDepth>> depths = getDelegate().callForMarketDepths();
+    record(Call.DEPTHS, null, depths.map(Map::values));
+    return depths;
+  }
+
+  @Override
+  public Optional<List<PublicTrade>> callForPublicTrades(final AssetPair assetPair,
+      final Runnable acquirable) {
+    return record(Call.TRADES, assetPair,
+        getDelegate().callForPublicTrades(assetPair, acquirable));
+  }
+
+  @Override
+  public Optional<List<PublicTrade>> callForAllPublicTrades() {
+    return record(Call.ALL_TRADES, null, getDelegate().callForAllPublicTrades());
+  }
+
+  private <T> Optional<T> record(final Call call, final AssetPair market,
+      final Optional<T> response) {
+    final Record record =
+        new Record(System.currentTimeMillis(), call, market, response.map(
+            value -> ExchangeRecording.RECORDING_GSON.toJsonTree(
+                value instanceof Collection ? new ArrayList<>((Collection<?>) value) : value,
+                call.getResponseType())).orElse(null));
+    final String line = ExchangeRecording.RECORDING_GSON.toJson(record);
+    synchronized (writer) {
+      try {
+        writer.write(line);
+        writer.write('\n');
+        writer.flush();
+      } catch (final IOException e) {
+        catching(e);
+      }
+    }
+    return response;
+  }
+
+  private void close() {
+    synchronized (writer) {
+      try {
+        writer.close();
+      } catch (final IOException e) {
+        catching(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package com.marketstem.exchanges.replay;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.marketstem.exchanges.ExchangeClient;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.exchanges.data.FullMarketDepth;
+import com.marketstem.exchanges.data.PublicTrade;
+import com.marketstem.exchanges.data.Ticker;
+import com.marketstem.exchanges.ratelimit.DistributedRateLimiter;
+import com.marketstem.exchanges.replay.ExchangeRecording.Call;
+import com.marketstem.exchanges.replay.ExchangeRecording.Record;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Serves an exchange's recorded responses instead of calling it. Each call returns the next
+ * recorded response to the same call for the same market, once as much time has passed since the
+ * replay started as had passed since the recording started, divided by the replay speed. Rate
+ * limiters never block since the recording already carries the exchange's pace.
+ */
+public class ReplayExchangeClient extends ForwardingExchangeClient {
+
+  private static final RateLimiter UNLIMITED = RateLimiter.create(Double.MAX_VALUE);
+
+  private final Map<String, List<Record>> recordings = new HashMap<>();
+  private final Map<String, AtomicLong> cursors = new ConcurrentHashMap<>();
+  private final double speed;
+  private final long recordingStartMillis;
+  private final long recordingDurationMillis;
+  private final AtomicLong replayStartNanos = new AtomicLong();
+
+  public ReplayExchangeClient(final ExchangeClient delegate, final File file, final double speed) {
+    super(delegate);
+    this.speed = speed;
+    long firstTime = Long.MAX_VALUE;
+    long lastTime = Long.MIN_VALUE;
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)),
+            StandardCharsets.UTF_8))) {
+      for (String line; (line = readLine(reader)) != null;) {
+        final Record record = ExchangeRecording.RECORDING_GSON.fromJson(line, Record.class);
+        recordings.computeIfAbsent(getKey(record.getCall(), record.getMarket()),
+            key -> new ArrayList<>()).add(record);
+        firstTime = Math.min(firstTime, record.getTime());
+        lastTime = Math.max(lastTime, record.getTime());
+      }
+    } catch (final IOException e) {
+      throw Throwables.propagate(e);
+    }
+    this.recordingStartMillis = firstTime;
+    this.recordingDurationMillis = lastTime - firstTime + 1;
+  }
+
+  /**
+   * A recording whose writer did not shut down cleanly ends without a gzip trailer.
+   */
+  private String readLine(final BufferedReader reader) throws IOException {
+    try {
+      return reader.readLine();
+    } catch (final EOFException e) {
+      return null;
+    }
+  }
+
+  private static String getKey(final Call call, final Object market) {
+    return market == null ? call.name() : call + "_" + market;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> Optional<T> replay(final Call call, final AssetPair market) {
+    final String key = getKey(call, market);
+    final List<Record> records = recordings.get(key);
+    if (records == null) {
+      return Optional.empty();
+    }
+    final long index = cursors.computeIfAbsent(key, k -> new AtomicLong()).getAndIncrement();
+    final Record record = records.get((int) (index % records.size()));
+    awaitReplayTime(record.getTime() - recordingStartMillis + index / records.size()
+        * recordingDurationMillis);
+    return Optional.ofNullable(record.getResponse()).map(
+        response -> (T) ExchangeRecording.RECORDING_GSON.fromJson(response,
+            call.getResponseType()));
+  }
+
+  private void awaitReplayTime(final long recordingOffsetMillis) {
+    if (speed <= 0) {
+      return;
+    }
+    replayStartNanos.compareAndSet(0, System.nanoTime());
+    final long replayOffsetNanos =
+        (long) (TimeUnit.MILLISECONDS.toNanos(recordingOffsetMillis) / speed);
+    final long waitNanos = replayStartNanos.get() + replayOffsetNanos - System.nanoTime();
+    if (waitNanos > 0) {
+      Uninterruptibles.sleepUninterruptibly(waitNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  @Override
+  public Optional<Collection<AssetPair>> callForAssetPairs() {
+    final List<Record> records = recordings.get(getKey(Call.ASSET_PAIRS, null));
+    if (records == null) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(records.get(records.size() - 1).getResponse()).map(
+        response -> ExchangeRecording.RECORDING_GSON.fromJson(response,
+            Call.ASSET_PAIRS.getResponseType()));
+  }
+
+  @Override
+  public Optional<Ticker> callForTicker(final AssetPair assetPair, final Runnable acquirable) {
+    return replay(Call.TICKER, assetPair);
+  }
+
+  @Override
+  public Optional<Map<AssetPair, Ticker>> callForTickers() {
+    return this.<List<Ticker>>replay(Call.TICKERS, null).map(
+        tickers -> tickers.stream().collect(
+            Collectors.toMap(Ticker::getAssetPair, Function.identity(), (a, b) -> b)));
+  }
+
+  @Override
+  public Optional<FullMarketDepth> callForMarketDepth(final AssetPair assetPair,
+      final Runnable acquirable) {
+    return replay(Call.DEPTH, assetPair);
+  }
+
+  @Override
+  public Optional<Map<AssetPair, FullMarketDepth>> callForMarketDepths() {
+    return this.<List<FullMarketDepth>>replay(Call.DEPTHS, null).map(
+        depths -> depths.stream().collect(
+            Collectors.toMap(FullMarketDepth::getMarket, Function.identity(), (a, b) -> b)));
+  }
+
+  @Override
+  public Optional<List<PublicTrade>> callForPublicTrades(final AssetPair assetPair,
+      final Runnable acquirable) {
+    return replay(Call.TRADES, assetPair);
+  }
+
+  @Override
+  public Optional<List<PublicTrade>> callForAllPublicTrades() {
+    return replay(Call.ALL_TRADES, null);
+  }
+
+  @Override
+  public RateLimiter getPublicApiLimiter() {
+    return UNLIMITED;
+  }
+
+  @Override
+  public RateLimiter getAuthenticatedApiLimiter() {
+    return UNLIMITED;
+  }
+
+  @Override
+  public DistributedRateLimiter getDistributedApiLimiter() {
+    return DistributedRateLimiter.UNLIMITED;
+  }
+
+  @Override
+  public RateLimiter getTickerRateLimiter(final AssetPair assetPair) {
+    return UNLIMITED;
+  }
+
+  @Override
+  public RateLimiter getTickersRateLimiter() {
+    return UNLIMITED;
+  }
+
+  @Override
+  public RateLimiter getDepthRateLimiter(final AssetPair assetPair) {
+    return UNLIMITED;
+  }
+
+  @Override
+  public RateLimiter getDepthsRateLimiter() {
+    return UNLIMITED;
+  }
+
+  @Override
+  public RateLimiter getTradesRateLimiter(final AssetPair assetPair) {
+    return UNLIMITED;
+  }
+
+  @Override
+  public RateLimiter getTradesRateLimiter() {
+    return UNLIMITED;
+  }
+}
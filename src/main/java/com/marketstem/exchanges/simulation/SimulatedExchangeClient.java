@@ -0,0 +1,294 @@
+package com.marketstem.exchanges.simulation;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.marketstem.config.MarketstemS3cured;
+import com.marketstem.database.redis.RedisExecutor;
+import com.marketstem.exchanges.ExchangeClient;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.exchanges.data.FullMarketDepth;
+import com.marketstem.exchanges.data.FullMarketDepth.MarketDepthBuilder;
+import com.marketstem.exchanges.data.PublicTrade;
+import com.marketstem.exchanges.data.Ticker;
+import com.marketstem.exchanges.ratelimit.DistributedRateLimiter;
+import com.marketstem.exchanges.replay.ForwardingExchangeClient;
+import com.marketstem.messaging.KafkaClients;
+import com.marketstem.messaging.KafkaConsumers;
+import com.marketstem.services.zookeeper.Curators;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Generates random walk market data in place of calling an exchange, to drive the whole pipeline
+ * past production volumes. Every exchange lists the same {@code exchange.simulation.markets}
+ * markets, so aggregation has overlapping markets to combine, and serves:
+ * <ul>
+ * <li>tickers around each market's random walk price,</li>
+ * <li>depths of {@code exchange.simulation.depthLevels} levels a side,</li>
+ * <li>{@code exchange.simulation.tradesPerPoll} new trades per market and poll.</li>
+ * </ul>
+ * Requests are paced by a public api limiter of {@code exchange.simulation.requestsPerSecond}
+ * per exchange and each takes {@code exchange.simulation.latencyMillis}. Markets are polled one by
+ * one unless {@code exchange.simulation.batch} is set, in which case the all-markets calls are
+ * served too. Enabled by {@link #enable()} from the {@code MARKETSTEM_SIMULATED} service group, or
+ * by {@code -Dexchange.simulate=true}, either of which must happen before any exchange's data is
+ * first used.
+ *
+ * <p>
+ * Simulation shares the production leader paths, topics and hashes, so it is refused unless the
+ * ZooKeeper, Kafka and Redis endpoints are all overridden, see
+ * {@link MarketstemS3cured#getEndpointOverrideProperty()}, to ones other than the configured
+ * production endpoints. Made up prices can then never reach real consumers or take leadership from
+ * real pollers.
+ * </p>
+ */
+public class SimulatedExchangeClient extends ForwardingExchangeClient {
+
+  public static final String SIMULATE_PROPERTY = "exchange.simulate";
+  private static final String PROPERTY_PREFIX = "exchange.simulation.";
+
+  private static final int NUM_MARKETS = Integer.getInteger(PROPERTY_PREFIX + "markets", 100);
+  private static final int DEPTH_LEVELS = Integer.getInteger(PROPERTY_PREFIX + "depthLevels", 50);
+  private static final int TRADES_PER_POLL =
+      Integer.getInteger(PROPERTY_PREFIX + "tradesPerPoll", 10);
+  private static final int REQUESTS_PER_SECOND =
+      Integer.getInteger(PROPERTY_PREFIX + "requestsPerSecond", 1000);
+  private static final int LATENCY_MILLIS = Integer.getInteger(PROPERTY_PREFIX + "latencyMillis",
+      0);
+  private static final boolean BATCH = Boolean.getBoolean(PROPERTY_PREFIX + "batch");
+
+  private static final List<AssetPair> MARKETS = IntStream.range(0, NUM_MARKETS)
+      .mapToObj(i -> AssetPair.fromStrings("SIM" + i, i % 2 == 0 ? "BTC" : "USD"))
+      .collect(Collectors.toList());
+  private static final RateLimiter UNLIMITED = RateLimiter.create(Double.MAX_VALUE);
+  private static final int SCALE = 8;
+
+  private static volatile boolean enabled = false;
+
+  private final RateLimiter publicApiLimiter = RateLimiter.create(REQUESTS_PER_SECOND);
+  private final Map<AssetPair, MarketSimulation> markets = new ConcurrentHashMap<>();
+
+  public SimulatedExchangeClient(final ExchangeClient delegate) {
+    super(delegate);
+  }
+
+  /**
+   * @throws IllegalStateException unless isolated from production.
+   */
+  public static void enable() {
+    checkIsolatedFromProduction();
+    enabled = true;
+  }
+
+  /**
+   * @return {@code client} itself unless simulation is enabled.
+   * @throws IllegalStateException if {@code -Dexchange.simulate=true} is set but the node is not
+   *         isolated from production.
+   */
+  public static ExchangeClient wrapIfEnabled(final ExchangeClient client) {
+    if (!enabled) {
+      if (!Boolean.getBoolean(SIMULATE_PROPERTY)) {
+        return client;
+      }
+      checkIsolatedFromProduction();
+    }
+    client.warn("Simulating " + client.getExchange() + " with " + NUM_MARKETS + " markets at "
+        + REQUESTS_PER_SECOND + " requests per second");
+    return new SimulatedExchangeClient(client);
+  }
+
+  private static void checkIsolatedFromProduction() {
+    final List<String> sharedEndpoints =
+        Stream.of(Curators.MARKETSTEM, KafkaClients.MARKETSTEM, KafkaConsumers.MARKETSTEM,
+            RedisExecutor.MARKETSTEM).filter(config -> !config.isEndpointOverridden())
+            .map(MarketstemS3cured::getEndpointOverrideProperty).collect(Collectors.toList());
+    if (!sharedEndpoints.isEmpty())
+      throw new IllegalStateException("Refusing to simulate exchanges against production, set "
+          + sharedEndpoints + " to the simulated cluster's endpoints.");
+  }
+
+  private MarketSimulation getMarket(final AssetPair assetPair) {
+    return markets.computeIfAbsent(assetPair, MarketSimulation::new);
+  }
+
+  private void respond(final Runnable acquirable) {
+    acquirable.run();
+    if (LATENCY_MILLIS > 0) {
+      Uninterruptibles.sleepUninterruptibly(LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public Optional<Collection<AssetPair>> callForAssetPairs() {
+    return Optional.of(new ArrayList<>(MARKETS));
+  }
+
+  @Override
+  public Optional<Ticker> callForTicker(final AssetPair assetPair, final Runnable acquirable) {
+    respond(acquirable);
+    return Optional.of(getMarket(assetPair).nextTicker());
+  }
+
+  @Override
+  public Optional<Map<AssetPair, Ticker>> callForTickers() {
+    if (!BATCH) {
+      return Optional.empty();
+    }
+    respond(createAcquirable(getPublicApiLimiter(), getTickersRateLimiter()));
+    return Optional.of(MARKETS.stream().map(this::getMarket).map(MarketSimulation::nextTicker)
+        .collect(Collectors.toMap(Ticker::getAssetPair, Function.identity())));
+  }
+
+  @Override
+  public Optional<FullMarketDepth> callForMarketDepth(final AssetPair assetPair,
+      final Runnable acquirable) {
+    respond(acquirable);
+    return Optional.of(getMarket(assetPair).nextDepth());
+  }
+
+  @Override
+  public Optional<Map<AssetPair, FullMarketDepth>> callForMarketDepths() {
+    if (!BATCH) {
+      return Optional.empty();
+    }
+    respond(createAcquirable(getPublicApiLimiter(), getDepthsRateLimiter()));
+    return Optional.of(MARKETS.stream().map(this::getMarket).map(MarketSimulation::nextDepth)
+        .collect(Collectors.toMap(FullMarketDepth::getMarket, Function.identity())));
+  }
+
+  @Override
+  public Optional<List<PublicTrade>> callForPublicTrades(final AssetPair assetPair,
+      final Runnable acquirable) {
+    respond(acquirable);
+    return Optional.of(getMarket(assetPair).nextTrades());
+  }
+
+  @Override
+  public Optional<List<PublicTrade>> callForAllPublicTrades() {
+    if (!BATCH) {
+      return Optional.empty();
+    }
+    respond(createAcquirable(getPublicApiLimiter(), getTradesRateLimiter()));
+    return Optional.of(MARKETS.stream().map(this::getMarket)
+        .flatMap(market -> market.nextTrades().stream()).collect(Collectors.toList()));
+  }
+
+  @Override
+  public RateLimiter getPublicApiLimiter() {
+    return publicApiLimiter;
+  }
+
+  @Override
+  public DistributedRateLimiter getDistributedApiLimiter() {
+    return DistributedRateLimiter.UNLIMITED;
+  }
+
+  @Override
+  public RateLimiter getTickerRateLimiter(final AssetPair assetPair) {
+    return UNLIMITED;
+  }
+
+  @Override
+  public RateLimiter getTickersRateLimiter() {
+    return UNLIMITED;
+  }
+
+  @Override
+  public RateLimiter getDepthRateLimiter(final AssetPair assetPair) {
+    return UNLIMITED;
+  }
+
+  @Override
+  public RateLimiter getDepthsRateLimiter() {
+    return UNLIMITED;
+  }
+
+  @Override
+  public RateLimiter getTradesRateLimiter(final AssetPair assetPair) {
+    return UNLIMITED;
+  }
+
+  @Override
+  public RateLimiter getTradesRateLimiter() {
+    return UNLIMITED;
+  }
+
+  private static BigDecimal toDecimal(final double value) {
+    return BigDecimal.valueOf(value).setScale(SCALE, RoundingMode.HALF_EVEN);
+  }
+
+  private class MarketSimulation {
+
+    private static final double VOLATILITY = 0.001;
+    private static final double SPREAD = 0.002;
+
+    private final AssetPair market;
+    private double price;
+    private double high;
+    private double low;
+    private double volume;
+    private long lastTradeId;
+
+    private MarketSimulation(final AssetPair market) {
+      this.market = market;
+      // Exchanges start a little apart from each other around the same price per market.
+      this.price = (1 + Math.floorMod(market.toString().hashCode(), 1000))
+          * (1 + ThreadLocalRandom.current().nextDouble(-0.01, 0.01));
+      this.high = price;
+      this.low = price;
+      this.lastTradeId = Instant.now().toEpochMilli();
+    }
+
+    private synchronized double step() {
+      price *= Math.exp(VOLATILITY * ThreadLocalRandom.current().nextGaussian());
+      high = Math.max(high, price);
+      low = Math.min(low, price);
+      return price;
+    }
+
+    private synchronized Ticker nextTicker() {
+      final double last = step();
+      return new Ticker(getExchange(), market, toDecimal(last),
+          toDecimal(last * (1 - SPREAD / 2)), toDecimal(last * (1 + SPREAD / 2)), toDecimal(high),
+          toDecimal(low), toDecimal(volume));
+    }
+
+    private FullMarketDepth nextDepth() {
+      final double mid = step();
+      final ThreadLocalRandom random = ThreadLocalRandom.current();
+      final MarketDepthBuilder builder = FullMarketDepth.builder(getExchange(), market);
+      for (int level = 0; level < DEPTH_LEVELS; level++) {
+        final double offset = SPREAD / 2 + level * SPREAD / 10;
+        builder.addBid(toDecimal(mid * (1 - offset)), toDecimal(random.nextDouble(0.01, 10)));
+        builder.addAsk(toDecimal(mid * (1 + offset)), toDecimal(random.nextDouble(0.01, 10)));
+      }
+      return builder.build();
+    }
+
+    private synchronized List<PublicTrade> nextTrades() {
+      final ThreadLocalRandom random = ThreadLocalRandom.current();
+      final List<PublicTrade> trades = new ArrayList<>(TRADES_PER_POLL);
+      for (int i = 0; i < TRADES_PER_POLL; i++) {
+        final double amount = random.nextDouble(0.01, 10);
+        volume += amount;
+        trades.add(PublicTrade.create(Long.toString(++lastTradeId), market, toDecimal(amount),
+            toDecimal(step()), Instant.now()));
+      }
+      return trades;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package com.marketstem.messaging;
+
+import com.fabahaba.fava.logging.Loggable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import kafka.consumer.Consumer;
+import kafka.consumer.ConsumerConfig;
+import kafka.consumer.ConsumerIterator;
+import kafka.consumer.KafkaStream;
+import kafka.javaapi.consumer.ConsumerConnector;
+import kafka.message.MessageAndMetadata;
+import kafka.serializer.DefaultDecoder;
+import kafka.serializer.StringDecoder;
+
+/**
+ * Consumes topics written by a {@link com.marketstem.messaging.codec.TopicCodec} as raw bytes, so
+ * binary messages reach their codec unchanged. Each subscription gets its own connector in the
+ * consumer group {@code <groupId>-<name>}, so every subscriber sees every message, and drains one
+ * stream per topic on the executor.
+ */
+public class KafkaByteConsumer implements Loggable {
+
+  private final String zookeeperConnect;
+  private final String groupId;
+  private final ExecutorService executor;
+  private final Map<String, List<ConsumerConnector>> connectors = new ConcurrentHashMap<>();
+
+  KafkaByteConsumer(final String zookeeperConnect, final String groupId,
+      final ExecutorService executor) {
+    this.zookeeperConnect = zookeeperConnect;
+    this.groupId = groupId;
+    this.executor = executor;
+  }
+
+  public void subscribe(final String name, final Set<String> topics,
+      final BiConsumer<String, byte[]> consumer) {
+    final Properties props = new Properties();
+    props.put("zookeeper.connect", zookeeperConnect);
+    props.put("group.id", groupId + "-" + name);
+    final ConsumerConnector connector =
+        Consumer.createJavaConsumerConnector(new ConsumerConfig(props));
+    connectors.computeIfAbsent(name, presentName -> new CopyOnWriteArrayList<>()).add(connector);
+
+    final Map<String, Integer> streamsPerTopic =
+        topics.stream().collect(Collectors.toMap(Function.identity(), topic -> 1));
+    connector
+        .createMessageStreams(streamsPerTopic, new StringDecoder(null), new DefaultDecoder(null))
+        .values().forEach(streams -> streams.forEach(
+            stream -> executor.execute(() -> consume(stream, consumer))));
+  }
+
+  /**
+   * Returns once the stream's connector is shut down.
+   */
+  private void consume(final KafkaStream<String, byte[]> stream,
+      final BiConsumer<String, byte[]> consumer) {
+    final ConsumerIterator<String, byte[]> messages = stream.iterator();
+    try {
+      while (messages.hasNext()) {
+        final MessageAndMetadata<String, byte[]> message = messages.next();
+        consumer.accept(message.key(), message.message());
+      }
+    } catch (final RuntimeException e) {
+      catching(e);
+    }
+  }
+
+  public void unsubscribe(final String name) {
+    final List<ConsumerConnector> removed = connectors.remove(name);
+    if (removed != null) {
+      removed.forEach(ConsumerConnector::shutdown);
+    }
+  }
+
+  public void shutdown() {
+    connectors.keySet().forEach(this::unsubscribe);
+  }
+}
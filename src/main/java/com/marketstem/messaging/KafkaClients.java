@@ -4,30 +4,75 @@ import com.fabahaba.fava.system.HostUtils;
 import com.fabahaba.kafka.SimpleKafkaProducer;
 import com.google.common.collect.ImmutableMap;
 import com.marketstem.config.MarketstemS3cured;
+import com.marketstem.messaging.codec.TopicCodec;
 
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 
+import java.util.Map;
+import java.util.concurrent.Future;
+
 public enum KafkaClients implements MarketstemS3cured, SimpleKafkaProducer {
 
+  /**
+   * Lingers briefly so the per-market records of a poll cycle share producer batches, compressed
+   * together. Overridable with the {@code kafka.linger.ms}, {@code kafka.batch.size} and
+   * {@code kafka.compression.type} system properties. One request in flight per connection keeps a
+   * retried batch from landing after the next one, since depth consumers treat reordered records of
+   * a market as a sequence gap.
+   */
   MARKETSTEM(ImmutableMap.<String, Object>builder().put(ProducerConfig.ACKS_CONFIG, "all")
-      .put(ProducerConfig.RETRIES_CONFIG, 1));
+      .put(ProducerConfig.RETRIES_CONFIG, 1)
+      .put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 1)
+      .put(ProducerConfig.LINGER_MS_CONFIG, Integer.getInteger("kafka.linger.ms", 20))
+      .put(ProducerConfig.BATCH_SIZE_CONFIG, Integer.getInteger("kafka.batch.size", 256 * 1024))
+      .put(ProducerConfig.COMPRESSION_TYPE_CONFIG,
+          System.getProperty("kafka.compression.type", "snappy")));
 
   private final KafkaProducer<String, String> producer;
+  private final KafkaProducer<String, byte[]> codecProducer;
 
   private KafkaClients(final ImmutableMap.Builder<String, Object> producerPropsBuilder) {
+    final Map<String, Object> producerProps =
+        producerPropsBuilder.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, getEndpoint())
+            .put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class).build();
 
     producer =
-        new KafkaProducer<>(producerPropsBuilder
-            .put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, getEndpoint())
+        new KafkaProducer<>(ImmutableMap.<String, Object>builder().putAll(producerProps)
             .put(ProducerConfig.CLIENT_ID_CONFIG, HostUtils.HOST_NAME)
-            .put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class)
             .put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class).build());
+    codecProducer =
+        new KafkaProducer<>(ImmutableMap.<String, Object>builder().putAll(producerProps)
+            .put(ProducerConfig.CLIENT_ID_CONFIG, HostUtils.HOST_NAME + "-codec")
+            .put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class).build());
   }
 
   @Override
   public KafkaProducer<String, String> getProducer() {
     return producer;
   }
+
+  /**
+   * Codec topics are sent as raw bytes, so binary messages need no text armoring.
+   */
+  public <T> Future<RecordMetadata> sendAsync(final TopicCodec<T> codec, final T message) {
+    return codecProducer.send(new ProducerRecord<>(codec.getTopic(), codec.encode(message)));
+  }
+
+  /**
+   * Records with the same key land on the same partition, in send order.
+   */
+  public Future<RecordMetadata> sendAsync(final String topic, final String key,
+      final String message) {
+    return producer.send(new ProducerRecord<>(topic, key, message));
+  }
+
+  public <T> Future<RecordMetadata> sendAsync(final TopicCodec<T> codec, final String key,
+      final T message) {
+    return codecProducer.send(new ProducerRecord<>(codec.getTopic(), key, codec.encode(message)));
+  }
 }
@@ -25,14 +25,25 @@ public enum KafkaConsumers implements MarketstemS3cured {
   private KafkaConsumers(final ImmutableMap.Builder<String, Object> propsBuilder) {
     this.consumerFactory =
         new SimpleKafkaConsumerFactory(propsBuilder.put("zookeeper.connect", getEndpoint())
-            .put("group.id", name() + "-" + HostUtils.HOST_NAME)
+            .put("group.id", getGroupId())
             .put("key.serializer.class", StringDeserializer.class)
             .put("serializer.class", DefaultEncoder.class).build());
   }
 
+  private String getGroupId() {
+    return name() + "-" + HostUtils.HOST_NAME;
+  }
 
   public SimpleKafkaConsumer createConsumer(final ExecutorService consumerExecutorService) {
     return consumerFactory.createConsumer(consumerExecutorService);
   }
 
+  /**
+   * @return a consumer of raw message bytes, for topics written by a
+   *         {@link com.marketstem.messaging.codec.TopicCodec}.
+   */
+  public KafkaByteConsumer createByteConsumer(final ExecutorService consumerExecutorService) {
+    return new KafkaByteConsumer(getEndpoint(), getGroupId(), consumerExecutorService);
+  }
+
 }
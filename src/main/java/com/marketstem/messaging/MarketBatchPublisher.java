@@ -0,0 +1,82 @@
+package com.marketstem.messaging;
+
+import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.messaging.codec.TopicCodec;
+
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Coalesces the items an exchange poll cycle produces for a topic and publishes them as one record
+ * per market, keyed {@code exchange:market} so each market keeps its order on a single partition.
+ * Buffered items are flushed by {@link #flush()} at the end of the cycle, or earlier once more than
+ * {@code maxItems} are buffered or the oldest item is older than {@code maxDelay}.
+ */
+public class MarketBatchPublisher<T, M> {
+
+  private final TopicCodec<M> codec;
+  private final Exchange exchange;
+  private final Function<List<T>, M> toMessage;
+  private final int maxItems;
+  private final Duration maxDelay;
+
+  private Map<AssetPair, List<T>> buffered = new LinkedHashMap<>();
+  private int numBuffered = 0;
+  private Instant oldestBuffered = null;
+
+  public MarketBatchPublisher(final TopicCodec<M> codec, final Exchange exchange,
+      final Function<List<T>, M> toMessage, final int maxItems, final Duration maxDelay) {
+    this.codec = codec;
+    this.exchange = exchange;
+    this.toMessage = toMessage;
+    this.maxItems = maxItems;
+    this.maxDelay = maxDelay;
+  }
+
+  public static String getKey(final Exchange exchange, final AssetPair market) {
+    return exchange + ":" + market;
+  }
+
+  /**
+   * @return the records sent if adding {@code item} filled the batch, otherwise an empty list.
+   */
+  public synchronized List<Future<RecordMetadata>> add(final AssetPair market, final T item) {
+    buffered.computeIfAbsent(market, presentMarket -> new ArrayList<>()).add(item);
+    if (oldestBuffered == null) {
+      oldestBuffered = Instant.now();
+    }
+    if (++numBuffered < maxItems
+        && Duration.between(oldestBuffered, Instant.now()).compareTo(maxDelay) < 0)
+      return new ArrayList<>();
+    return flush();
+  }
+
+  public List<Future<RecordMetadata>> addAll(final AssetPair market, final List<T> items) {
+    final List<Future<RecordMetadata>> published = new ArrayList<>();
+    items.forEach(item -> published.addAll(add(market, item)));
+    return published;
+  }
+
+  /**
+   * Sends while holding the lock so records of the same market are never reordered by concurrent
+   * flushes. Sending only appends to the producer's buffer.
+   */
+  public synchronized List<Future<RecordMetadata>> flush() {
+    final List<Future<RecordMetadata>> published = new ArrayList<>(buffered.size());
+    buffered.forEach((market, items) -> published.add(KafkaClients.MARKETSTEM.sendAsync(codec,
+        getKey(exchange, market), toMessage.apply(items))));
+    buffered = new LinkedHashMap<>();
+    numBuffered = 0;
+    oldestBuffered = null;
+    return published;
+  }
+}
@@ -0,0 +1,18 @@
+package com.marketstem.messaging.codec;
+
+public enum MessageFormat {
+
+  JSON, BINARY;
+
+  /**
+   * Binary messages start with their schema version, a control character no json message starts
+   * with. Json messages always start with an object or an array.
+   */
+  public static MessageFormat detect(final byte[] payload) {
+    return payload.length > 0 && payload[0] != '{' && payload[0] != '[' ? BINARY : JSON;
+  }
+
+  public static MessageFormat fromString(final String format) {
+    return valueOf(format.trim().toUpperCase());
+  }
+}
@@ -0,0 +1,79 @@
+package com.marketstem.messaging.codec;
+
+import com.google.gson.Gson;
+import com.marketstem.serialization.BinaryMarshaller;
+import com.marketstem.serialization.BinaryReader;
+import com.marketstem.serialization.BinaryWriter;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes the messages of a kafka topic as json or as the compact binary format, selected with the
+ * {@code kafka.format.<topic>} system property and json by default. Messages are raw bytes on the
+ * wire, json as UTF-8. Decoding detects the format of each message, so consumers read both while
+ * producers are switched over.
+ */
+public class TopicCodec<T> {
+
+  public static final int SCHEMA_VERSION = 1;
+
+  private final String topic;
+  private final Gson gson;
+  private final Type type;
+  private final BinaryMarshaller<T> binaryMarshaller;
+  private final MessageFormat format;
+
+  public TopicCodec(final String topic, final Gson gson, final Type type,
+      final BinaryMarshaller<T> binaryMarshaller) {
+    this(topic, gson, type, binaryMarshaller, MessageFormat.fromString(System.getProperty(
+        "kafka.format." + topic, MessageFormat.JSON.name())));
+  }
+
+  public TopicCodec(final String topic, final Gson gson, final Type type,
+      final BinaryMarshaller<T> binaryMarshaller, final MessageFormat format) {
+    this.topic = topic;
+    this.gson = gson;
+    this.type = type;
+    this.binaryMarshaller = binaryMarshaller;
+    this.format = format;
+  }
+
+  public String getTopic() {
+    return topic;
+  }
+
+  public MessageFormat getFormat() {
+    return format;
+  }
+
+  public byte[] encode(final T message) {
+    return encode(message, format);
+  }
+
+  public byte[] encode(final T message, final MessageFormat messageFormat) {
+    if (messageFormat == MessageFormat.JSON)
+      return gson.toJson(message, type).getBytes(StandardCharsets.UTF_8);
+
+    final BinaryWriter out = new BinaryWriter();
+    out.writeByte(SCHEMA_VERSION);
+    binaryMarshaller.write(out, message);
+    return out.toByteArray();
+  }
+
+  public T decode(final byte[] payload) {
+    if (MessageFormat.detect(payload) == MessageFormat.JSON)
+      return gson.fromJson(new String(payload, StandardCharsets.UTF_8), type);
+
+    final BinaryReader in = new BinaryReader(payload);
+    final int version = in.readByte();
+    if (version != SCHEMA_VERSION)
+      throw new IllegalArgumentException("Unsupported " + topic + " schema version " + version);
+    return binaryMarshaller.read(in);
+  }
+
+  @Override
+  public String toString() {
+    return topic + "/" + format;
+  }
+}
@@ -0,0 +1,82 @@
+package com.marketstem.serialization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Binary counterpart of a json marshaller, written with {@link BinaryWriter} and read with
+ * {@link BinaryReader}.
+ */
+public interface BinaryMarshaller<T> {
+
+  void write(BinaryWriter out, T src);
+
+  T read(BinaryReader in);
+
+  static <T> BinaryMarshaller<List<T>> listOf(final BinaryMarshaller<T> elementMarshaller) {
+    return new BinaryMarshaller<List<T>>() {
+
+      @Override
+      public void write(final BinaryWriter out, final List<T> src) {
+        out.writeVarInt(src.size());
+        src.forEach(element -> elementMarshaller.write(out, element));
+      }
+
+      @Override
+      public List<T> read(final BinaryReader in) {
+        final int size = in.readLength(1);
+        final List<T> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          list.add(elementMarshaller.read(in));
+        }
+        return list;
+      }
+    };
+  }
+
+  static <K, V> BinaryMarshaller<Map<K, V>> mapOf(final BinaryMarshaller<K> keyMarshaller,
+      final BinaryMarshaller<V> valueMarshaller) {
+    return new BinaryMarshaller<Map<K, V>>() {
+
+      @Override
+      public void write(final BinaryWriter out, final Map<K, V> src) {
+        out.writeVarInt(src.size());
+        src.forEach((key, value) -> {
+          keyMarshaller.write(out, key);
+          valueMarshaller.write(out, value);
+        });
+      }
+
+      @Override
+      public Map<K, V> read(final BinaryReader in) {
+        final int size = in.readLength(2);
+        final Map<K, V> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+          map.put(keyMarshaller.read(in), valueMarshaller.read(in));
+        }
+        return map;
+      }
+    };
+  }
+
+  /**
+   * Writes values by their interned string form so ids never depend on declaration order.
+   */
+  static <T> BinaryMarshaller<T> interned(final Function<String, T> fromString) {
+    return new BinaryMarshaller<T>() {
+
+      @Override
+      public void write(final BinaryWriter out, final T src) {
+        out.writeInterned(src.toString());
+      }
+
+      @Override
+      public T read(final BinaryReader in) {
+        return fromString.apply(in.readInterned());
+      }
+    };
+  }
+}
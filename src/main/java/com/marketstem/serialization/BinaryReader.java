@@ -0,0 +1,117 @@
+package com.marketstem.serialization;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the encoding written by {@link BinaryWriter}.
+ */
+public class BinaryReader {
+
+  private final byte[] buffer;
+  private int position;
+  private final List<String> internedStrings = new ArrayList<>();
+
+  public BinaryReader(final byte[] buffer) {
+    this(buffer, 0);
+  }
+
+  public BinaryReader(final byte[] buffer, final int position) {
+    this.buffer = buffer;
+    this.position = position;
+  }
+
+  public int readByte() {
+    checkAvailable(1);
+    return buffer[position++] & 0xFF;
+  }
+
+  public byte[] readBytes() {
+    final int length = readLength(1);
+    final byte[] bytes = new byte[length];
+    System.arraycopy(buffer, position, bytes, 0, length);
+    position += length;
+    return bytes;
+  }
+
+  /**
+   * Reads the number of elements that follow, each taking at least {@code minElementBytes}, and
+   * rejects counts the rest of the message can not hold before anything is allocated for them.
+   */
+  public int readLength(final int minElementBytes) {
+    final int length = readVarInt();
+    if (length < 0 || (long) length * minElementBytes > buffer.length - position)
+      throw new IllegalArgumentException("Length " + length + " at " + position
+          + " exceeds the remaining " + (buffer.length - position) + " bytes");
+    return length;
+  }
+
+  public int readVarInt() {
+    final long value = readVarLong();
+    if (value >>> 32 != 0)
+      throw new IllegalArgumentException("Varint out of int range: " + value);
+    return (int) value;
+  }
+
+  public long readVarLong() {
+    long value = 0;
+    for (int shift = 0; shift < Long.SIZE; shift += 7) {
+      final int b = readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0)
+        return value;
+    }
+    throw new IllegalArgumentException("Malformed varint at " + position);
+  }
+
+  public long readZigZag() {
+    final long value = readVarLong();
+    return value >>> 1 ^ -(value & 1);
+  }
+
+  public String readString() {
+    return new String(readBytes(), StandardCharsets.UTF_8);
+  }
+
+  public String readInterned() {
+    final int id = readVarInt();
+    if (id < internedStrings.size())
+      return internedStrings.get(id);
+    if (id != internedStrings.size())
+      throw new IllegalArgumentException("Unknown interned string id " + id);
+    final String value = readString();
+    internedStrings.add(value);
+    return value;
+  }
+
+  public BigDecimal readDecimal() {
+    final long header = readVarLong();
+    if (header == 0)
+      return null;
+    final long zigZagScale = header - 1 >>> 1;
+    final int scale = (int) (zigZagScale >>> 1 ^ -(zigZagScale & 1));
+    return (header - 1 & 1) == 0 ? BigDecimal.valueOf(readZigZag(), scale) : new BigDecimal(
+        new BigInteger(readBytes()), scale);
+  }
+
+  public Instant readInstant() {
+    final int nanosPlusOne = readVarInt();
+    if (nanosPlusOne == 0)
+      return null;
+    return Instant.ofEpochSecond(readZigZag(), nanosPlusOne - 1);
+  }
+
+  public boolean hasRemaining() {
+    return position < buffer.length;
+  }
+
+  private void checkAvailable(final int bytes) {
+    if (bytes < 0 || position + bytes > buffer.length)
+      throw new IllegalArgumentException("Truncated binary message, needed " + bytes
+          + " bytes at " + position + " of " + buffer.length);
+  }
+}
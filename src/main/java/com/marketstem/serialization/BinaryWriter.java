@@ -0,0 +1,118 @@
+package com.marketstem.serialization;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary encoding read back by {@link BinaryReader}. Integers are LEB128 varints, signed
+ * values are zigzag encoded first, and repeated strings such as exchanges and markets are interned
+ * so each distinct value is written once per message.
+ */
+public class BinaryWriter {
+
+  private byte[] buffer;
+  private int size = 0;
+  private final Map<String, Integer> internedIds = new HashMap<>();
+
+  public BinaryWriter() {
+    this(256);
+  }
+
+  public BinaryWriter(final int initialCapacity) {
+    this.buffer = new byte[initialCapacity];
+  }
+
+  public BinaryWriter writeByte(final int value) {
+    ensureCapacity(1);
+    buffer[size++] = (byte) value;
+    return this;
+  }
+
+  public BinaryWriter writeBytes(final byte[] bytes) {
+    writeVarInt(bytes.length);
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, size, bytes.length);
+    size += bytes.length;
+    return this;
+  }
+
+  public BinaryWriter writeVarInt(final int value) {
+    return writeVarLong(value & 0xFFFFFFFFL);
+  }
+
+  public BinaryWriter writeVarLong(long value) {
+    ensureCapacity(10);
+    while ((value & ~0x7FL) != 0) {
+      buffer[size++] = (byte) (value & 0x7F | 0x80);
+      value >>>= 7;
+    }
+    buffer[size++] = (byte) value;
+    return this;
+  }
+
+  public BinaryWriter writeZigZag(final long value) {
+    return writeVarLong(value << 1 ^ value >> 63);
+  }
+
+  public BinaryWriter writeString(final String value) {
+    return writeBytes(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Writes the id of a string already written to this message, or the next id followed by the
+   * string itself.
+   */
+  public BinaryWriter writeInterned(final String value) {
+    final Integer id = internedIds.get(value);
+    if (id != null)
+      return writeVarInt(id);
+    final int nextId = internedIds.size();
+    internedIds.put(value, nextId);
+    writeVarInt(nextId);
+    return writeString(value);
+  }
+
+  /**
+   * Nullable. Trailing zeros are stripped, the same as the json marshallers, so most decimals fit in
+   * a varint scale and a zigzag varint unscaled value.
+   */
+  public BinaryWriter writeDecimal(final BigDecimal value) {
+    if (value == null)
+      return writeVarInt(0);
+    final BigDecimal stripped = value.stripTrailingZeros();
+    final BigInteger unscaled = stripped.unscaledValue();
+    final boolean big = unscaled.bitLength() >= Long.SIZE;
+    final long zigZagScale = (stripped.scale() << 1 ^ stripped.scale() >> 31) & 0xFFFFFFFFL;
+    writeVarLong((zigZagScale << 1 | (big ? 1 : 0)) + 1);
+    return big ? writeBytes(unscaled.toByteArray()) : writeZigZag(unscaled.longValue());
+  }
+
+  /**
+   * Nullable, keeps nanosecond precision.
+   */
+  public BinaryWriter writeInstant(final Instant value) {
+    if (value == null)
+      return writeVarInt(0);
+    writeVarInt(value.getNano() + 1);
+    return writeZigZag(value.getEpochSecond());
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buffer, size);
+  }
+
+  private void ensureCapacity(final int bytes) {
+    if (size + bytes > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, size + bytes));
+    }
+  }
+}
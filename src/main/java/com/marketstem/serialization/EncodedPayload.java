@@ -0,0 +1,59 @@
+package com.marketstem.serialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A cached response body kept as UTF-8 bytes along with its gzip encoding, so serving either costs
+ * a copy. Bodies too small to benefit are never compressed.
+ */
+public class EncodedPayload {
+
+  private static final int MIN_GZIP_BYTES = 1024;
+
+  private final byte[] raw;
+  // Compressed at most a few times if raced, every result is identical.
+  private volatile byte[] gzip = null;
+
+  public EncodedPayload(final byte[] raw) {
+    this.raw = raw;
+  }
+
+  /**
+   * Compresses now, for payloads built off the request path.
+   */
+  public static EncodedPayload precompressed(final String json) {
+    final EncodedPayload payload = new EncodedPayload(json.getBytes(StandardCharsets.UTF_8));
+    payload.getGzip();
+    return payload;
+  }
+
+  public byte[] getRaw() {
+    return raw;
+  }
+
+  public Optional<byte[]> getGzip() {
+    if (raw.length < MIN_GZIP_BYTES)
+      return Optional.empty();
+    byte[] compressed = gzip;
+    if (compressed == null) {
+      compressed = gzip(raw);
+      gzip = compressed;
+    }
+    return Optional.of(compressed);
+  }
+
+  private static byte[] gzip(final byte[] raw) {
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4);
+    try (final GZIPOutputStream gzipOutput = new GZIPOutputStream(compressed)) {
+      gzipOutput.write(raw);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return compressed.toByteArray();
+  }
+}
@@ -0,0 +1,58 @@
+package com.marketstem.serialization;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Shared reads and writes for the streaming {@link com.google.gson.TypeAdapter}s. Decimals are
+ * written as plain strings without trailing zeros, the same as the tree marshallers, and read from
+ * either strings or numbers.
+ */
+public final class JsonStreams {
+
+  private JsonStreams() {}
+
+  public static void writeDecimal(final JsonWriter out, final String name, final BigDecimal value)
+      throws IOException {
+    out.name(name).value(value.stripTrailingZeros().toPlainString());
+  }
+
+  public static void writeDecimal(final JsonWriter out, final String name,
+      final Optional<BigDecimal> value) throws IOException {
+    if (value.isPresent()) {
+      writeDecimal(out, name, value.get());
+    }
+  }
+
+  public static void writeInstant(final JsonWriter out, final String name, final Instant value)
+      throws IOException {
+    out.name(name).value(value.toString());
+  }
+
+  /**
+   * @return the next string or number as a string, null for a json null.
+   */
+  public static String nextString(final JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    return in.nextString();
+  }
+
+  public static BigDecimal nextDecimal(final JsonReader in) throws IOException {
+    final String value = nextString(in);
+    return value == null ? null : new BigDecimal(value);
+  }
+
+  public static Instant nextInstant(final JsonReader in) throws IOException {
+    final String value = nextString(in);
+    return value == null ? null : Instant.parse(value);
+  }
+}
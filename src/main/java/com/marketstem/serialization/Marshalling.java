@@ -8,6 +8,16 @@ import com.fabahaba.fava.serialization.gson.RangeMarshaller;
 import com.google.common.collect.Range;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.marketstem.exchanges.data.FullMarketDepth;
+import com.marketstem.exchanges.data.FullMarketDepth.MarketDepthTypeAdapter;
+import com.marketstem.exchanges.data.PublicTrade;
+import com.marketstem.exchanges.data.PublicTrade.PublicTradeTypeAdapter;
+import com.marketstem.exchanges.data.Ticker;
+import com.marketstem.exchanges.data.Ticker.TickerTypeAdapter;
+import com.marketstem.services.marketdata.aggregation.data.AggregateTickerSnapshot;
+import com.marketstem.services.marketdata.aggregation.data.AggregateTickerSnapshot.AggregateTickerSnapshotTypeAdapter;
+import com.marketstem.services.marketdata.depth.data.DepthUpdate;
+import com.marketstem.services.marketdata.depth.data.DepthUpdate.DepthUpdateTypeAdapter;
 
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -22,6 +32,12 @@ public class Marshalling {
       .registerTypeAdapter(Range.class, new RangeMarshaller())
       .registerTypeAdapter(Optional.class, new OptionalMarshaller())
       .registerTypeAdapter(Instant.class, new InstantIso8601JsonMarshaller())
+      .registerTypeAdapter(Ticker.class, new TickerTypeAdapter().nullSafe())
+      .registerTypeAdapter(FullMarketDepth.class, new MarketDepthTypeAdapter().nullSafe())
+      .registerTypeAdapter(DepthUpdate.class, new DepthUpdateTypeAdapter().nullSafe())
+      .registerTypeAdapter(PublicTrade.class, new PublicTradeTypeAdapter().nullSafe())
+      .registerTypeAdapter(AggregateTickerSnapshot.class,
+          new AggregateTickerSnapshotTypeAdapter().nullSafe())
       .addSerializationExclusionStrategy(new NoGsonStrategy());
 
   public static final Gson BASE_GSON = BASE_GSON_BUILDER.create();
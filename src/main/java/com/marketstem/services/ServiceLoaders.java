@@ -5,6 +5,8 @@ import com.fabahaba.fava.service.ServiceGroupLoader;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Service;
 import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.ExchangePoller;
+import com.marketstem.exchanges.simulation.SimulatedExchangeClient;
 import com.marketstem.services.cache.MarketDataCacheService;
 import com.marketstem.services.marketdata.ExchangeDepthService;
 import com.marketstem.services.marketdata.ExchangePublicTradeService;
@@ -22,6 +24,7 @@ public class ServiceLoaders {
 
     @Override
     public Set<Service> loadServices() {
+      ExchangePoller.configureHttpMaxConnections();
       final Set<Service> services = Sets.newHashSet();
       for (final Exchange exchange : Exchange.values()) {
         services.add(ExchangeTickerService.getService(exchange));
@@ -39,6 +42,28 @@ public class ServiceLoaders {
     }
   }
 
+  /**
+   * Polls every resource of every exchange from {@link SimulatedExchangeClient}s instead of the
+   * exchanges. Refuses to start unless its ZooKeeper, Kafka and Redis endpoints are overridden away
+   * from production, and the other groups' nodes of the simulated cluster are run the same way with
+   * {@code -Dexchange.simulate=true} so they list the same markets.
+   */
+  @ServiceGroup("MARKETSTEM_SIMULATED")
+  public static class MarketStemSimulatedServiceLoader implements ServiceGroupLoader {
+
+    @Override
+    public Set<Service> loadServices() {
+      SimulatedExchangeClient.enable();
+      final Set<Service> services = Sets.newHashSet();
+      for (final Exchange exchange : Exchange.values()) {
+        services.add(ExchangeTickerService.getService(exchange));
+        services.add(ExchangeDepthService.getService(exchange));
+        services.add(ExchangePublicTradeService.getService(exchange));
+      }
+      return services;
+    }
+  }
+
   @ServiceGroup("MARKETSTEM_HTTP")
   public static class MarketStemRestServiceLoader implements ServiceGroupLoader {
 
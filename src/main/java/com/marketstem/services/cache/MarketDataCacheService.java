@@ -2,15 +2,17 @@ package com.marketstem.services.cache;
 
 import com.fabahaba.fava.concurrent.ExecutorUtils;
 import com.fabahaba.fava.logging.Loggable;
-import com.fabahaba.kafka.SimpleKafkaConsumer;
 import com.google.common.collect.Sets;
 import com.google.common.reflect.TypeToken;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.marketstem.exchanges.data.FullMarketDepth;
 import com.marketstem.exchanges.data.Ticker;
+import com.marketstem.messaging.KafkaByteConsumer;
 import com.marketstem.messaging.KafkaConsumers;
 import com.marketstem.services.marketdata.ExchangeDepthService;
 import com.marketstem.services.marketdata.ExchangeTickerService;
+import com.marketstem.services.marketdata.depth.DepthBookApplier;
+import com.marketstem.services.marketdata.depth.data.DepthUpdate;
 
 import java.lang.reflect.Type;
 import java.util.List;
@@ -25,10 +27,12 @@ public class MarketDataCacheService extends AbstractIdleService implements Logga
   @SuppressWarnings("serial")
   public static final Type DEPTH_TYPE = new TypeToken<List<FullMarketDepth>>() {}.getType();
 
+  private static final DepthBookApplier DEPTH_BOOK_APPLIER = new DepthBookApplier();
+
   private static final ExecutorService consumerExecutorService = ExecutorUtils
       .newCachedThreadPool(MarketDataCacheService.class);
-  public static final SimpleKafkaConsumer KAFKA_CONSUMER = KafkaConsumers.MARKETSTEM
-      .createConsumer(consumerExecutorService);
+  public static final KafkaByteConsumer KAFKA_CONSUMER = KafkaConsumers.MARKETSTEM
+      .createByteConsumer(consumerExecutorService);
 
   @Override
   protected void startUp() throws Exception {
@@ -46,9 +50,9 @@ public class MarketDataCacheService extends AbstractIdleService implements Logga
     }
   }
 
-  private static void consumeTickers(final String key, final String message) {
+  private static void consumeTickers(final String key, final byte[] message) {
     try {
-      final List<Ticker> tickers = ExchangeTickerService.TICKER_GSON.fromJson(message, TICKER_TYPE);
+      final List<Ticker> tickers = ExchangeTickerService.TICKER_CODEC.decode(message);
       tickers.stream().filter(ticker -> Objects.nonNull(ticker.getExchange()))
           .forEach(ticker -> ticker.getExchange().getData().cacheTicker(Optional.of(ticker)));
     } catch (final Exception e) {
@@ -56,12 +60,24 @@ public class MarketDataCacheService extends AbstractIdleService implements Logga
     }
   }
 
-  private static void consumeDepths(final String key, final String message) {
+  /**
+   * Unsequenced updates are full depths in the format published before the depth book engine.
+   */
+  private static void consumeDepths(final String key, final byte[] message) {
     try {
-      final List<FullMarketDepth> depths =
-          ExchangeDepthService.MARKET_DEPTH_GSON.fromJson(message, DEPTH_TYPE);
-      depths.stream().filter(depth -> Objects.nonNull(depth.getExchange()))
-          .forEach(depth -> depth.getExchange().getData().cacheMarketDepth(Optional.of(depth)));
+      final List<DepthUpdate> depthUpdates = ExchangeDepthService.DEPTH_CODEC.decode(message);
+      for (final DepthUpdate depthUpdate : depthUpdates) {
+        if (depthUpdate.getExchange() == null) {
+          continue;
+        }
+        if (depthUpdate.isSequenced()) {
+          DEPTH_BOOK_APPLIER.apply(depthUpdate).ifPresent(
+              book -> book.getExchange().getData().cacheMarketDepth(book));
+        } else {
+          DEPTH_BOOK_APPLIER.invalidate(depthUpdate.getExchange(), depthUpdate.getMarket());
+          depthUpdate.getExchange().getData().cacheMarketDepth(depthUpdate.applyTo(null));
+        }
+      }
     } catch (final Exception e) {
       Loggable.logCatching(MarketDataCacheService.class, e);
     }
@@ -0,0 +1,179 @@
+package com.marketstem.services.cache;
+
+import com.fabahaba.fava.logging.Loggable;
+import com.fabahaba.jedipus.JedisExecutor;
+import com.fabahaba.jedipus.cache.RedisHashCache;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import redis.clients.jedis.JedisPubSub;
+
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link RedisHashCache} that keeps up to {@code maximumSize} of the fields it has seen in
+ * memory. Writers publish the written fields and values on {@code nearcache:<name>} and every
+ * subscribed instance applies them to its own copy, so reads are served locally and see writes from
+ * other nodes within a round trip. A value read from redis only fills a missing entry, since a
+ * newer one may have been published while the read was in flight. The copy is dropped whenever the
+ * subscription is re-established because messages may have been missed, and entries expire after
+ * {@code maxStaleness} in case one is lost anyway.
+ */
+public class NearRedisHashCache<F, V> extends RedisHashCache<F, V> implements Loggable {
+
+  private static final long RESUBSCRIBE_DELAY_MILLIS = 1000;
+
+  private final JedisExecutor redisExecutor;
+  private final Gson gson;
+  private final Type fieldType;
+  private final Type valueType;
+  private final String channel;
+  private final Cache<F, V> nearCache;
+
+  public NearRedisHashCache(final Gson gson, final JedisExecutor redisExecutor, final String name,
+      final Type fieldType, final Type valueType, final CacheBuilder<Object, Object> cacheBuilder,
+      final ExecutorService executor, final Duration maxStaleness, final long maximumSize) {
+    super(gson, redisExecutor, name, fieldType, valueType, cacheBuilder, executor);
+    this.redisExecutor = redisExecutor;
+    this.gson = gson;
+    this.fieldType = fieldType;
+    this.valueType = valueType;
+    this.channel = "nearcache:" + name;
+    this.nearCache =
+        CacheBuilder.newBuilder().maximumSize(maximumSize)
+            .expireAfterWrite(maxStaleness.toMillis(), TimeUnit.MILLISECONDS).build();
+
+    final Thread subscriber =
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat(channel + "-subscriber").build()
+            .newThread(this::subscribe);
+    subscriber.start();
+  }
+
+  @Override
+  public Optional<V> get(final F field) {
+    final V nearValue = nearCache.getIfPresent(field);
+    if (nearValue != null)
+      return Optional.of(nearValue);
+    final Optional<V> value = super.get(field);
+    value.ifPresent(presentValue -> nearCache.asMap().putIfAbsent(field, presentValue));
+    return value;
+  }
+
+  @Override
+  public Map<F, Optional<V>> getAll(final Set<F> fields) {
+    final Map<F, Optional<V>> values = new HashMap<>(fields.size());
+    final Set<F> missingFields = new HashSet<>();
+    fields.forEach(field -> {
+      final V nearValue = nearCache.getIfPresent(field);
+      if (nearValue == null) {
+        missingFields.add(field);
+      } else {
+        values.put(field, Optional.of(nearValue));
+      }
+    });
+    if (!missingFields.isEmpty()) {
+      super.getAll(missingFields).forEach((field, value) -> {
+        value.ifPresent(presentValue -> nearCache.asMap().putIfAbsent(field, presentValue));
+        values.put(field, value);
+      });
+    }
+    return values;
+  }
+
+  @Override
+  public void put(final F field, final V value) {
+    super.put(field, value);
+    final Map<F, V> written = new HashMap<>(1);
+    written.put(field, value);
+    publish(written);
+  }
+
+  @Override
+  public void putAll(final Map<F, V> fieldValues) {
+    super.putAll(fieldValues);
+    publish(fieldValues);
+  }
+
+  private void publish(final Map<F, V> fieldValues) {
+    nearCache.putAll(fieldValues);
+    final JsonArray message = new JsonArray();
+    fieldValues.forEach((field, value) -> {
+      final JsonArray fieldValue = new JsonArray();
+      fieldValue.add(gson.toJsonTree(field, fieldType));
+      fieldValue.add(gson.toJsonTree(value, valueType));
+      message.add(fieldValue);
+    });
+    try {
+      redisExecutor.acceptJedis(jedis -> jedis.publish(channel, message.toString()));
+    } catch (final RuntimeException e) {
+      catching(e);
+    }
+  }
+
+  private void apply(final String message) {
+    try {
+      for (final JsonElement fieldValue : new JsonParser().parse(message).getAsJsonArray()) {
+        final F field = gson.fromJson(fieldValue.getAsJsonArray().get(0), fieldType);
+        final V value = gson.fromJson(fieldValue.getAsJsonArray().get(1), valueType);
+        nearCache.put(field, value);
+      }
+    } catch (final RuntimeException e) {
+      catching(e);
+    }
+  }
+
+  private void subscribe() {
+    for (;;) {
+      try {
+        redisExecutor.acceptJedis(jedis -> jedis.subscribe(new JedisPubSub() {
+
+          @Override
+          public void onSubscribe(final String subscribedChannel, final int subscribedChannels) {
+            nearCache.invalidateAll();
+          }
+
+          @Override
+          public void onMessage(final String messageChannel, final String message) {
+            apply(message);
+          }
+
+          @Override
+          public void onUnsubscribe(final String unsubscribedChannel,
+              final int subscribedChannels) {}
+
+          @Override
+          public void onPMessage(final String pattern, final String messageChannel,
+              final String message) {}
+
+          @Override
+          public void onPSubscribe(final String pattern, final int subscribedChannels) {}
+
+          @Override
+          public void onPUnsubscribe(final String pattern, final int subscribedChannels) {}
+        }, channel));
+      } catch (final RuntimeException e) {
+        catching(e);
+      }
+      nearCache.invalidateAll();
+      try {
+        Thread.sleep(RESUBSCRIBE_DELAY_MILLIS);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package com.marketstem.services.cache;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fabahaba.jedipus.JedisExecutor;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
+import com.google.gson.Gson;
+import com.marketstem.services.metrics.MarketstemMetrics;
+
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A locally cached redis hash whose bulk operations are sent as one pipeline, so reading or writing
+ * every market of an exchange costs a single round trip however many markets it lists. Fields and
+ * values are stored as their json. Round trips are metered as {@code redis.<name>.roundTrips} and,
+ * for callers that mark their cycles with {@link #completeCycle()}, as a histogram of
+ * {@code redis.<name>.roundTripsPerCycle}.
+ */
+public class PipelinedRedisHashCache<F, V> {
+
+  private static final int MAX_FIELDS_PER_COMMAND = 1000;
+
+  private final Gson gson;
+  private final JedisExecutor redisExecutor;
+  private final String name;
+  private final Type fieldType;
+  private final Type valueType;
+  private final Cache<F, V> localCache;
+  private final Meter roundTrips;
+  private final Histogram roundTripsPerCycle;
+  private final AtomicLong roundTripsAtCycleStart = new AtomicLong();
+
+  public PipelinedRedisHashCache(final Gson gson, final JedisExecutor redisExecutor,
+      final String name, final Type fieldType, final Type valueType,
+      final CacheBuilder<Object, Object> cacheBuilder) {
+    this.gson = gson;
+    this.redisExecutor = redisExecutor;
+    this.name = name;
+    this.fieldType = fieldType;
+    this.valueType = valueType;
+    this.localCache = cacheBuilder.build();
+    this.roundTrips =
+        MarketstemMetrics.MARKETSTEM.getRegistry().meter(
+            MetricRegistry.name("redis", name, "roundTrips"));
+    this.roundTripsPerCycle =
+        MarketstemMetrics.MARKETSTEM.getRegistry().histogram(
+            MetricRegistry.name("redis", name, "roundTripsPerCycle"));
+  }
+
+  public Optional<V> get(final F field) {
+    final V localValue = localCache.getIfPresent(field);
+    if (localValue != null)
+      return Optional.of(localValue);
+    roundTrips.mark();
+    final String json =
+        redisExecutor.applyJedis(jedis -> jedis.hget(name, gson.toJson(field, fieldType)));
+    return Optional.ofNullable(cacheLocally(field, json));
+  }
+
+  /**
+   * Reads every field missing from the local cache with pipelined HMGETs.
+   */
+  public Map<F, Optional<V>> getAll(final Collection<F> fields) {
+    final Map<F, Optional<V>> values = new HashMap<>(fields.size());
+    final List<F> missingFields = new ArrayList<>();
+    fields.forEach(field -> {
+      final V localValue = localCache.getIfPresent(field);
+      if (localValue == null) {
+        missingFields.add(field);
+      } else {
+        values.put(field, Optional.of(localValue));
+      }
+    });
+    if (missingFields.isEmpty())
+      return values;
+
+    roundTrips.mark();
+    final List<List<F>> batches = toLists(missingFields);
+    final List<Response<List<String>>> responses = redisExecutor.applyJedis(jedis -> {
+      final Pipeline pipeline = jedis.pipelined();
+      final List<Response<List<String>>> batchResponses = new ArrayList<>(batches.size());
+      batches.forEach(batch -> batchResponses.add(pipeline.hmget(name, batch.stream()
+          .map(field -> gson.toJson(field, fieldType)).toArray(String[]::new))));
+      pipeline.sync();
+      return batchResponses;
+    });
+    for (int i = 0; i < batches.size(); i++) {
+      final List<F> batch = batches.get(i);
+      final List<String> jsonValues = responses.get(i).get();
+      for (int j = 0; j < batch.size(); j++) {
+        final F field = batch.get(j);
+        values.put(field, Optional.ofNullable(cacheLocally(field, jsonValues.get(j))));
+      }
+    }
+    return values;
+  }
+
+  public void put(final F field, final V value) {
+    roundTrips.mark();
+    redisExecutor.acceptJedis(jedis -> jedis.hset(name, gson.toJson(field, fieldType),
+        gson.toJson(value, valueType)));
+    localCache.put(field, value);
+  }
+
+  /**
+   * Writes every field with pipelined HMSETs.
+   */
+  public void putAll(final Map<F, V> fieldValues) {
+    if (fieldValues.isEmpty())
+      return;
+    roundTrips.mark();
+    redisExecutor.acceptJedis(jedis -> {
+      final Pipeline pipeline = jedis.pipelined();
+      toLists(fieldValues.keySet()).forEach(batch -> {
+        final Map<String, String> jsonFieldValues = new HashMap<>(batch.size());
+        batch.forEach(field -> jsonFieldValues.put(gson.toJson(field, fieldType),
+            gson.toJson(fieldValues.get(field), valueType)));
+        pipeline.hmset(name, jsonFieldValues);
+      });
+      pipeline.sync();
+    });
+    localCache.putAll(fieldValues);
+  }
+
+  public long getRoundTrips() {
+    return roundTrips.getCount();
+  }
+
+  /**
+   * Records the round trips made since the previous call.
+   */
+  public void completeCycle() {
+    final long roundTripsNow = roundTrips.getCount();
+    roundTripsPerCycle.update(roundTripsNow - roundTripsAtCycleStart.getAndSet(roundTripsNow));
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  private V cacheLocally(final F field, final String json) {
+    if (json == null)
+      return null;
+    final V value = gson.fromJson(json, valueType);
+    if (value != null) {
+      localCache.put(field, value);
+    }
+    return value;
+  }
+
+  private static <F> List<List<F>> toLists(final Collection<F> fields) {
+    final List<List<F>> batches = new ArrayList<>();
+    Iterables.partition(fields, MAX_FIELDS_PER_COMMAND).forEach(batches::add);
+    return batches;
+  }
+}
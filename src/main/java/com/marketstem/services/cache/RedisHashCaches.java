@@ -12,10 +12,12 @@ import com.marketstem.exchanges.data.AssetPair;
 import com.marketstem.exchanges.data.AssetPair.AssetPairMarshaller;
 import com.marketstem.serialization.CurrencyPairMarshaller;
 import com.marketstem.serialization.Marshalling;
+import com.marketstem.services.marketdata.aggregation.data.AggregateTickerCheckpoint;
 import com.marketstem.services.marketdata.aggregation.data.AggregateTickerSnapshot;
 import com.xeiam.xchange.currency.CurrencyPair;
 
 import java.lang.reflect.Type;
+import java.time.Duration;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -33,7 +35,12 @@ public enum RedisHashCaches {
   AGGREGATE_TICKER(AggregateTickerSnapshot.AGGREGATE_TICKER_GSON, RedisExecutor.MARKETSTEM,
       AssetPair.class, AggregateTickerSnapshot.class, CacheBuilder.newBuilder().maximumSize(1000)
           .expireAfterAccess(120, TimeUnit.SECONDS).refreshAfterWrite(30, TimeUnit.SECONDS),
-      ExecutorUtils.newCachedThreadPool(RedisHashCache.class.getSimpleName() + "-AGGREGATE_TICKER"));
+      ExecutorUtils.newCachedThreadPool(RedisHashCache.class.getSimpleName() + "-AGGREGATE_TICKER"),
+      Duration.ofMinutes(10), 10_000),
+
+  AGGREGATE_TICKER_CHECKPOINT(AggregateTickerCheckpoint.CHECKPOINT_GSON, RedisExecutor.MARKETSTEM,
+      AssetPair.class, AggregateTickerCheckpoint.class, CacheBuilder.newBuilder()
+          .expireAfterWrite(60, TimeUnit.SECONDS));
 
   private final RedisHashCache<?, ?> singleton;
 
@@ -51,6 +58,15 @@ public enum RedisHashCaches {
             executor);
   }
 
+  private RedisHashCaches(final Gson gson, final JedisExecutor redisPoolExecutor,
+      final Type fieldType, final Type valueType, final CacheBuilder<Object, Object> cacheBuilder,
+      final ExecutorService executor, final Duration nearCacheMaxStaleness,
+      final long nearCacheMaximumSize) {
+    singleton =
+        new NearRedisHashCache<>(gson, redisPoolExecutor, name(), fieldType, valueType,
+            cacheBuilder, executor, nearCacheMaxStaleness, nearCacheMaximumSize);
+  }
+
   @SuppressWarnings("unchecked")
   public <F, V> RedisHashCache<F, V> getMap() {
     return (RedisHashCache<F, V>) singleton;
@@ -4,29 +4,37 @@ import com.fabahaba.fava.collect.MapUtils;
 import com.fabahaba.fava.func.Retryable;
 import com.fabahaba.fava.service.curated.LeaderService;
 import com.fabahaba.fava.service.curated.LeaderServiceConfig;
-import com.fabahaba.jedipus.cache.RedisHashCache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
 import com.marketstem.database.redis.RedisExecutor;
 import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.MarketPollScheduler.Resource;
 import com.marketstem.exchanges.data.Asset;
 import com.marketstem.exchanges.data.Asset.AssetMarshaller;
 import com.marketstem.exchanges.data.AssetPair;
 import com.marketstem.exchanges.data.AssetPair.AssetPairMarshaller;
 import com.marketstem.exchanges.data.FullMarketDepth;
-import com.marketstem.exchanges.data.FullMarketDepth.MarketDepthDeserializer;
 import com.marketstem.exchanges.data.PublicLimitOrder;
 import com.marketstem.exchanges.data.PublicLimitOrder.PublicLimitOrderSerializer;
-import com.marketstem.messaging.KafkaClients;
+import com.marketstem.messaging.MarketBatchPublisher;
+import com.marketstem.messaging.codec.TopicCodec;
+import com.marketstem.serialization.BinaryMarshaller;
 import com.marketstem.serialization.Marshalling;
+import com.marketstem.services.cache.PipelinedRedisHashCache;
+import com.marketstem.services.marketdata.depth.DepthBookEngine;
+import com.marketstem.services.marketdata.depth.data.DepthUpdate;
+import com.marketstem.services.marketdata.depth.data.DepthUpdate.DepthUpdateBinaryMarshaller;
 import com.marketstem.services.zookeeper.Curators;
 
-import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +42,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 public class ExchangeDepthService extends LeaderService implements Retryable {
 
@@ -41,87 +50,120 @@ public class ExchangeDepthService extends LeaderService implements Retryable {
 
   public static final Gson MARKET_DEPTH_GSON = Marshalling.BASE_GSON_BUILDER
       .registerTypeAdapter(PublicLimitOrder.class, new PublicLimitOrderSerializer())
-      .registerTypeAdapter(FullMarketDepth.class, new MarketDepthDeserializer())
       .registerTypeAdapter(Asset.class, new AssetMarshaller())
       .registerTypeAdapter(AssetPair.class, new AssetPairMarshaller()).create();
+  @SuppressWarnings("serial")
+  public static final TopicCodec<List<DepthUpdate>> DEPTH_CODEC = new TopicCodec<>("depths",
+      MARKET_DEPTH_GSON, new TypeToken<List<DepthUpdate>>() {}.getType(),
+      BinaryMarshaller.listOf(new DepthUpdateBinaryMarshaller()));
 
   private final Exchange exchange;
-  private final RedisHashCache<AssetPair, BigDecimal> distributedLastDepthIds;
-  private final LoadingCache<AssetPair, BigDecimal> expiringDedupe = CacheBuilder.newBuilder()
+  private final PipelinedRedisHashCache<AssetPair, Long> distributedLastDepthChecksums;
+  private final LoadingCache<AssetPair, Long> expiringDedupe = CacheBuilder.newBuilder()
       .expireAfterWrite(FORCE_DEPTH_PUBLISH_DURATION_SECONDS, TimeUnit.SECONDS)
-      .build(CacheLoader.from(() -> BigDecimal.ZERO));
+      .build(CacheLoader.from(() -> 0L));
+  private final DepthBookEngine depthBookEngine;
+  private final MarketBatchPublisher<DepthUpdate, List<DepthUpdate>> depthPublisher;
+  private volatile boolean newTerm = true;
+  private volatile Instant lastLeadership = null;
 
   @Override
   public void takeLeadership() {
+    // Another instance may have published in between, restart every market from a snapshot in a
+    // new epoch on every new term, and after any pause long enough to have lost one unnoticed.
+    final Instant now = Instant.now();
+    if (newTerm || lastLeadership != null
+        && Duration.between(lastLeadership, now).compareTo(DepthBookEngine.SNAPSHOT_INTERVAL) > 0) {
+      newTerm = false;
+      depthBookEngine.reset();
+    }
+    lastLeadership = now;
+
     final Optional<Map<AssetPair, FullMarketDepth>> depths = exchange.getMarketDepths();
-    final Map<AssetPair, BigDecimal> localLastDepthIds = Maps.newConcurrentMap();
+    final Map<AssetPair, Long> localLastDepthChecksums = Maps.newConcurrentMap();
     final LongAdder numDepthsReceived = new LongAdder();
 
     if (depths.isPresent()) {
-      final List<FullMarketDepth> newDepths = Lists.newArrayList();
       final Map<AssetPair, FullMarketDepth> allDepths = depths.get();
       numDepthsReceived.add(allDepths.size());
+      final Map<AssetPair, Optional<Long>> lastKnownChecksums =
+          getLastKnownChecksums(allDepths.keySet());
 
       allDepths
           .values()
           .stream()
-          .filter(depth -> !expiringDedupe.getUnchecked(depth.getMarket()).equals(depth.dedupe()))
+          .filter(
+              depth -> depthBookEngine.isSnapshotDue(depth.getMarket())
+                  || expiringDedupe.getUnchecked(depth.getMarket()) != depth.getChecksum())
           .forEach(
               depth -> {
-                final BigDecimal currentDepthId = depth.dedupe();
-                expiringDedupe.put(depth.getMarket(), currentDepthId);
-
-                final BigDecimal lastKnownDepthId =
-                    distributedLastDepthIds.get(depth.getMarket()).orElse(BigDecimal.ZERO);
-
-                if (!lastKnownDepthId.equals(currentDepthId)) {
-                  newDepths.add(depth);
-                  localLastDepthIds.put(depth.getMarket(), currentDepthId);
+                final long currentChecksum = depth.getChecksum();
+                expiringDedupe.put(depth.getMarket(), currentChecksum);
+
+                final long lastKnownChecksum =
+                    lastKnownChecksums.getOrDefault(depth.getMarket(), Optional.empty())
+                        .orElse(0L);
+
+                if (depthBookEngine.isSnapshotDue(depth.getMarket())
+                    || lastKnownChecksum != currentChecksum) {
+                  depthBookEngine.update(depth).ifPresent(
+                      depthUpdate -> depthPublisher.add(depthUpdate.getMarket(), depthUpdate));
+                  localLastDepthChecksums.put(depth.getMarket(), currentChecksum);
                 }
               });
-
-      if (!newDepths.isEmpty()) {
-        KafkaClients.MARKETSTEM.sendAsync("depths", MARKET_DEPTH_GSON.toJson(newDepths));
-      }
     } else {
-      exchange
-          .getData()
-          .getCachedAssetPairs()
-          .ifPresent(
-              assetPairs -> {
-                assetPairs
-                    .parallelStream()
-                    .map(exchange::getMarketDepth)
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .peek(depth -> numDepthsReceived.increment())
-                    .filter(
-                        depth -> !expiringDedupe.getUnchecked(depth.getMarket()).equals(
-                            depth.dedupe()))
-                    .forEach(
-                        depth -> {
-                          final BigDecimal currentDepthId = depth.dedupe();
-                          expiringDedupe.put(depth.getMarket(), currentDepthId);
-                          final List<FullMarketDepth> depthArray = Lists.newArrayList(depth);
-
-                          final BigDecimal lastKnownDepthId =
-                              distributedLastDepthIds.get(depth.getMarket())
-                                  .orElse(BigDecimal.ZERO);
-
-                          if (!lastKnownDepthId.equals(currentDepthId)) {
-                            localLastDepthIds.put(depth.getMarket(), currentDepthId);
-                            KafkaClients.MARKETSTEM.sendAsync("depths",
-                                MARKET_DEPTH_GSON.toJson(depthArray));
-                          }
-                        });
-              });
+      exchange.getData().getCachedAssetPairs().ifPresent(assetPairs -> {
+        final List<AssetPair> duePairs =
+            exchange.getPollScheduler().selectDue(Resource.DEPTH, assetPairs);
+        final Map<AssetPair, Optional<Long>> lastKnownChecksums = getLastKnownChecksums(duePairs);
+
+        exchange.getPoller().pollMarketDepths(duePairs, depth -> {
+          numDepthsReceived.increment();
+          exchange.getPollScheduler().recordResponse(Resource.DEPTH, depth.getMarket(),
+              depth.getChecksum());
+          if (!depthBookEngine.isSnapshotDue(depth.getMarket())
+              && expiringDedupe.getUnchecked(depth.getMarket()) == depth.getChecksum())
+            return;
+
+          final long currentChecksum = depth.getChecksum();
+          expiringDedupe.put(depth.getMarket(), currentChecksum);
+
+          final long lastKnownChecksum =
+              lastKnownChecksums.getOrDefault(depth.getMarket(), Optional.empty())
+                  .orElse(0L);
+
+          if (depthBookEngine.isSnapshotDue(depth.getMarket())
+              || lastKnownChecksum != currentChecksum) {
+            localLastDepthChecksums.put(depth.getMarket(), currentChecksum);
+            depthBookEngine.update(depth).ifPresent(
+                depthUpdate -> depthPublisher.add(depthUpdate.getMarket(), depthUpdate));
+          }
+        });
+      });
     }
 
+    depthPublisher.flush();
+
     // if ( numDepthsReceived.sum() == 0 )
     // throw new CancelLeadershipException( "Failed to retreive any depths for " + exchange );
 
-    if (!localLastDepthIds.isEmpty()) {
-      retryRun(() -> distributedLastDepthIds.putAll(localLastDepthIds), 2);
+    if (!localLastDepthChecksums.isEmpty()) {
+      retryRun(() -> distributedLastDepthChecksums.putAll(localLastDepthChecksums), 2);
+    }
+    distributedLastDepthChecksums.completeCycle();
+  }
+
+  /**
+   * One pipelined read for every market instead of a round trip per depth received. Markets that
+   * could not be read are treated as changed.
+   */
+  private Map<AssetPair, Optional<Long>> getLastKnownChecksums(
+      final Collection<AssetPair> markets) {
+    try {
+      return distributedLastDepthChecksums.getAll(markets);
+    } catch (final RuntimeException e) {
+      catching(e);
+      return Collections.emptyMap();
     }
   }
 
@@ -136,10 +178,19 @@ public class ExchangeDepthService extends LeaderService implements Retryable {
     super(LeaderServiceConfig.withCurator(Curators.MARKETSTEM.getClient()).withServiceName(
         ExchangeDepthService.class.getSimpleName() + "_" + exchange));
     this.exchange = exchange;
-    this.distributedLastDepthIds =
-        new RedisHashCache<>(MARKET_DEPTH_GSON, RedisExecutor.MARKETSTEM, "lastDepthIds."
-            + exchange, AssetPair.class, BigDecimal.class, CacheBuilder.newBuilder()
-            .expireAfterAccess(60, TimeUnit.SECONDS));
+    this.depthBookEngine = new DepthBookEngine(exchange);
+    this.depthPublisher =
+        new MarketBatchPublisher<>(DEPTH_CODEC, exchange, Function.identity(), 200,
+            Duration.ofSeconds(1));
+    this.distributedLastDepthChecksums =
+        new PipelinedRedisHashCache<>(MARKET_DEPTH_GSON, RedisExecutor.MARKETSTEM,
+            "lastDepthChecksums." + exchange, AssetPair.class, Long.class,
+            CacheBuilder.newBuilder().expireAfterAccess(60, TimeUnit.SECONDS));
+  }
+
+  @Override
+  protected void onLeadershipRemoved() {
+    newTerm = true;
   }
 
   @Override
@@ -5,66 +5,80 @@ import com.fabahaba.fava.func.MoreFutures;
 import com.fabahaba.fava.func.Retryable;
 import com.fabahaba.fava.service.curated.LeaderService;
 import com.fabahaba.fava.service.curated.LeaderServiceConfig;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.JdkFutureAdapters;
 import com.google.gson.Gson;
 import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.MarketPollScheduler.Resource;
 import com.marketstem.exchanges.data.Asset;
 import com.marketstem.exchanges.data.Asset.AssetMarshaller;
 import com.marketstem.exchanges.data.AssetPair;
 import com.marketstem.exchanges.data.AssetPair.AssetPairMarshaller;
 import com.marketstem.exchanges.data.PublicTrade;
-import com.marketstem.exchanges.data.PublicTrade.PublicTradeMarshaller;
-import com.marketstem.messaging.KafkaClients;
+import com.marketstem.exchanges.data.PublicTrade.PublicTradeBinaryMarshaller;
+import com.marketstem.messaging.MarketBatchPublisher;
+import com.marketstem.messaging.codec.TopicCodec;
+import com.marketstem.serialization.BinaryMarshaller;
 import com.marketstem.serialization.Marshalling;
+import com.marketstem.services.cache.PipelinedRedisHashCache;
 import com.marketstem.services.zookeeper.Curators;
 
 import org.apache.kafka.clients.producer.RecordMetadata;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 public class ExchangePublicTradeService extends LeaderService implements Retryable {
 
   public static final Gson PUBLIC_TRADE_GSON = Marshalling.BASE_GSON_BUILDER
-      .registerTypeAdapter(PublicTrade.class, new PublicTradeMarshaller())
       .registerTypeAdapter(Asset.class, new AssetMarshaller())
       .registerTypeAdapter(AssetPair.class, new AssetPairMarshaller()).create();
+  @SuppressWarnings("serial")
+  public static final TopicCodec<Map<Exchange, List<PublicTrade>>> PUBLIC_TRADE_CODEC =
+      new TopicCodec<>("trades", PUBLIC_TRADE_GSON,
+          new TypeToken<Map<Exchange, List<PublicTrade>>>() {}.getType(), BinaryMarshaller.mapOf(
+              BinaryMarshaller.interned(Exchange::fromString),
+              BinaryMarshaller.listOf(new PublicTradeBinaryMarshaller())));
 
   private final Exchange exchange;
+  private final MarketBatchPublisher<PublicTrade, Map<Exchange, List<PublicTrade>>> tradePublisher;
 
   @Override
   public void takeLeadership() {
+    final PipelinedRedisHashCache<AssetPair, Long> lastTradeIds =
+        exchange.getClient().getLastTradeIdsCache();
     final Optional<List<PublicTrade>> optionalAllTrades = exchange.getPublicTrades();
     if (optionalAllTrades.isPresent()) {
       final List<PublicTrade> allTrades = optionalAllTrades.get();
       if (!allTrades.isEmpty()) {
-        final Map<Exchange, List<PublicTrade>> exchangePublicTrades = Maps.newHashMap();
-        exchangePublicTrades.put(exchange, allTrades);
-
         final Map<AssetPair, Long> localLastTradeIds = Maps.newHashMap();
+        final List<Future<RecordMetadata>> futurePublishedRecords = Lists.newArrayList();
         allTrades.forEach(trade -> {
           final Long tradeId =
               trade.getId().equals("0") ? trade.getTimestamp().toEpochMilli() : Long.valueOf(trade
                   .getId());
           MapUtils.putIfGreater(localLastTradeIds, trade.getMarket(), tradeId);
+          futurePublishedRecords.addAll(tradePublisher.add(trade.getMarket(), trade));
         });
-
-        final Future<RecordMetadata> futurePublishedRecord =
-            KafkaClients.MARKETSTEM.sendAsync("trades",
-                PUBLIC_TRADE_GSON.toJson(exchangePublicTrades));
+        futurePublishedRecords.addAll(tradePublisher.flush());
 
         MoreFutures.addCallback(
-            JdkFutureAdapters.listenInPoolThread(futurePublishedRecord),
-            publishedRecord -> {
-              if (publishedRecord != null) {
-                retryRun(() -> exchange.getClient().getLastTradeIdsCache()
-                    .putAll(localLastTradeIds), 2);
+            Futures.allAsList(futurePublishedRecords.stream()
+                .map(JdkFutureAdapters::listenInPoolThread).collect(Collectors.toList())),
+            publishedRecords -> {
+              if (publishedRecords.stream().allMatch(Objects::nonNull)) {
+                retryRun(() -> lastTradeIds.putAll(localLastTradeIds), 2);
               }
             });
       }
@@ -72,35 +86,37 @@ public class ExchangePublicTradeService extends LeaderService implements Retryab
       final LongAdder numResponses = new LongAdder();
       final ConcurrentMap<AssetPair, Long> localLastTradeIds = Maps.newConcurrentMap();
 
-      exchange
-          .getData()
-          .getCachedAssetPairs()
-          .ifPresent(
-              assetPairs -> assetPairs
-                  .parallelStream()
-                  .map(exchange::getPublicTrades)
-                  .filter(Optional::isPresent)
-                  .map(Optional::get)
-                  .peek(response -> numResponses.increment())
-                  .filter(trades -> !trades.isEmpty())
-                  .forEach(
-                      trades -> {
-                        trades.forEach(trade -> {
-                          final Long tradeId =
-                              trade.getId().equals("0") ? trade.getTimestamp().toEpochMilli()
-                                  : Long.valueOf(trade.getId());
-                          MapUtils.putIfGreater(localLastTradeIds, trade.getMarket(), tradeId);
-                        });
-
-                        final Map<Exchange, List<PublicTrade>> exchangePublicTrades =
-                            Maps.newHashMap();
-                        exchangePublicTrades.put(exchange, trades);
-                        KafkaClients.MARKETSTEM.sendAsync("trades",
-                            PUBLIC_TRADE_GSON.toJson(exchangePublicTrades));
-                      }));
-
-      retryRun(() -> exchange.getClient().getLastTradeIdsCache().putAll(localLastTradeIds), 2);
+      exchange.getData().getCachedAssetPairs().ifPresent(assetPairs -> {
+        final List<AssetPair> duePairs =
+            exchange.getPollScheduler().selectDue(Resource.TRADES, assetPairs);
+        // One pipelined read instead of a round trip per market from getLastTradeId.
+        retryRun(() -> lastTradeIds.getAll(duePairs), 2);
+
+        exchange.getPoller().pollPublicTrades(duePairs, (market, trades) -> {
+          numResponses.increment();
+          exchange.getPollScheduler().recordResponse(Resource.TRADES, market,
+              trades.stream().mapToLong(trade -> trade.getTimestamp().toEpochMilli()).max()
+                  .orElse(0));
+          trades.forEach(trade -> {
+            final Long tradeId =
+                trade.getId().equals("0") ? trade.getTimestamp().toEpochMilli() : Long
+                    .valueOf(trade.getId());
+            MapUtils.putIfGreater(localLastTradeIds, trade.getMarket(), tradeId);
+            tradePublisher.add(trade.getMarket(), trade);
+          });
+        });
+      });
+      tradePublisher.flush();
+
+      retryRun(() -> lastTradeIds.putAll(localLastTradeIds), 2);
     }
+    lastTradeIds.completeCycle();
+  }
+
+  private Map<Exchange, List<PublicTrade>> toExchangePublicTrades(final List<PublicTrade> trades) {
+    final Map<Exchange, List<PublicTrade>> exchangePublicTrades = Maps.newHashMap();
+    exchangePublicTrades.put(exchange, trades);
+    return exchangePublicTrades;
   }
 
   private static final Map<Exchange, ExchangePublicTradeService> singletons = new HashMap<>();
@@ -114,6 +130,9 @@ public class ExchangePublicTradeService extends LeaderService implements Retryab
     super(LeaderServiceConfig.withCurator(Curators.MARKETSTEM.getClient()).withServiceName(
         ExchangePublicTradeService.class.getSimpleName() + "_" + exchange));
     this.exchange = exchange;
+    this.tradePublisher =
+        new MarketBatchPublisher<>(PUBLIC_TRADE_CODEC, exchange, this::toExchangePublicTrades,
+            1000, Duration.ofSeconds(1));
   }
 
 }
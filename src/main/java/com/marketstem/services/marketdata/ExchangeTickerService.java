@@ -4,36 +4,48 @@ import com.fabahaba.fava.collect.MapUtils;
 import com.fabahaba.fava.service.curated.LeaderService;
 import com.fabahaba.fava.service.curated.LeaderServiceConfig;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
 import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.MarketPollScheduler.Resource;
 import com.marketstem.exchanges.data.AssetPair;
 import com.marketstem.exchanges.data.Ticker;
-import com.marketstem.exchanges.data.Ticker.TickerMarshaller;
-import com.marketstem.messaging.KafkaClients;
+import com.marketstem.exchanges.data.Ticker.TickerBinaryMarshaller;
+import com.marketstem.messaging.MarketBatchPublisher;
+import com.marketstem.messaging.codec.TopicCodec;
+import com.marketstem.serialization.BinaryMarshaller;
 import com.marketstem.serialization.Marshalling;
 import com.marketstem.services.zookeeper.Curators;
 
-import java.util.Collection;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class ExchangeTickerService extends LeaderService {
 
-  public static final Gson TICKER_GSON = Marshalling.BASE_GSON_BUILDER.registerTypeAdapter(
-      Ticker.class, new TickerMarshaller()).create();
+  public static final Gson TICKER_GSON = Marshalling.BASE_GSON_BUILDER.create();
+  @SuppressWarnings("serial")
+  public static final TopicCodec<List<Ticker>> TICKER_CODEC = new TopicCodec<>("tickers",
+      TICKER_GSON, new TypeToken<List<Ticker>>() {}.getType(),
+      BinaryMarshaller.listOf(new TickerBinaryMarshaller()));
 
   private final Exchange exchange;
+  private final MarketBatchPublisher<Ticker, List<Ticker>> tickerPublisher;
 
   protected ExchangeTickerService(final Exchange exchange) {
     super(LeaderServiceConfig.withCurator(Curators.MARKETSTEM.getClient()).withServiceName(
         ExchangeTickerService.class.getSimpleName() + "_" + exchange));
     this.exchange = exchange;
+    this.tickerPublisher =
+        new MarketBatchPublisher<>(TICKER_CODEC, exchange, Function.identity(), 1000,
+            Duration.ofSeconds(1));
   }
 
   @Override
@@ -50,23 +62,23 @@ public class ExchangeTickerService extends LeaderService {
               .filter(ticker -> ticker.getLast().isPresent() || ticker.getBid().isPresent())
               .collect(Collectors.toList());
 
-      if (!validTickers.isEmpty()) {
-        publishTickers(validTickers);
-      }
+      validTickers.forEach(ticker -> tickerPublisher.add(ticker.getAssetPair(), ticker));
     } else {
       exchange
           .getData()
           .getCachedAssetPairs()
-          .map(
-              assetPairs -> assetPairs.parallelStream().map(exchange::getTicker)
-                  .filter(Optional::isPresent).map(Optional::get)
-                  .filter(ticker -> ticker.getLast().isPresent() || ticker.getBid().isPresent())
-                  .peek(ticker -> publishTickers(Lists.newArrayList(ticker))).count());
+          .ifPresent(
+              assetPairs -> exchange.getPoller().pollTickers(
+                  exchange.getPollScheduler().selectDue(Resource.TICKER, assetPairs), ticker -> {
+                exchange.getPollScheduler().recordResponse(Resource.TICKER, ticker.getAssetPair(),
+                    Objects.hash(ticker.getLast(), ticker.getBid(), ticker.getAsk(),
+                        ticker.getVolume()));
+                if (ticker.getLast().isPresent() || ticker.getBid().isPresent()) {
+                  tickerPublisher.add(ticker.getAssetPair(), ticker);
+                }
+              }));
     }
-  }
-
-  private void publishTickers(final Collection<Ticker> tickers) {
-    KafkaClients.MARKETSTEM.sendAsync("tickers", TICKER_GSON.toJson(tickers));
+    tickerPublisher.flush();
   }
 
   private static final Map<Exchange, ExchangeTickerService> singletons = new HashMap<>();
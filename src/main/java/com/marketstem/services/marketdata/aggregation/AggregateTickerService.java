@@ -1,6 +1,5 @@
 package com.marketstem.services.marketdata.aggregation;
 
-import com.fabahaba.fava.collect.MapUtils;
 import com.fabahaba.fava.func.Retryable;
 import com.fabahaba.fava.numbers.BigDecimalUtils;
 import com.fabahaba.fava.service.curated.LeaderService;
@@ -8,38 +7,126 @@ import com.fabahaba.fava.service.curated.LeaderServiceConfig;
 import com.fabahaba.jedipus.cache.RedisHashCache;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.RateLimiter;
+import com.marketstem.database.redis.RedisExecutor;
 import com.marketstem.exchanges.data.AssetPair;
 import com.marketstem.exchanges.data.Ticker;
 import com.marketstem.messaging.KafkaClients;
+import com.marketstem.messaging.codec.TopicCodec;
 import com.marketstem.services.cache.MarketDataCacheService;
 import com.marketstem.services.cache.RedisHashCaches;
+import com.marketstem.services.marketdata.ExchangeTickerService;
+import com.marketstem.services.marketdata.aggregation.data.AggregateTickerCheckpoint;
 import com.marketstem.services.marketdata.aggregation.data.AggregateTickerSnapshot;
+import com.marketstem.services.marketdata.aggregation.data.AggregateTickerSnapshot.AggregateTickerSnapshotBinaryMarshaller;
 import com.marketstem.services.marketdata.aggregation.data.MutableAggregateTicker;
 import com.marketstem.services.zookeeper.Curators;
 
 import java.time.Duration;
-import java.util.HashMap;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 
 public class AggregateTickerService extends LeaderService implements Retryable {
 
+  public static final TopicCodec<AggregateTickerSnapshot> AGGREGATE_TICKER_CODEC =
+      new TopicCodec<>("aggregate_tickers", AggregateTickerSnapshot.AGGREGATE_TICKER_GSON,
+          AggregateTickerSnapshot.class, new AggregateTickerSnapshotBinaryMarshaller());
+
   private final Duration publishDuration = Duration.ofSeconds(30);
-  private final Map<AssetPair, RateLimiter> aggregateTickerPublishRateLimiters = new HashMap<>();
+  private final ConcurrentMap<AssetPair, RateLimiter> aggregateTickerPublishRateLimiters =
+      new ConcurrentHashMap<>();
   private final RedisHashCache<AssetPair, AggregateTickerSnapshot> distributedAggregateTickers =
       RedisHashCaches.AGGREGATE_TICKER.getMap();
   private final Set<AssetPair> keySetView = distributedAggregateTickers.getCacheFieldSetView();
+  private final Duration checkpointDuration = Duration.ofSeconds(30);
+  private final Duration checkpointMaxAge = Duration.ofMinutes(15);
+  private final RedisHashCache<AssetPair, AggregateTickerCheckpoint> checkpoints =
+      RedisHashCaches.AGGREGATE_TICKER_CHECKPOINT.getMap();
 
   @Override
   public void takeLeadership() throws InterruptedException {
     distributedAggregateTickers.loadAll();
+    // Without the restored tickers every checkpoint would look abandoned.
+    final boolean restored = restoreCheckpoints();
 
     MarketDataCacheService.KAFKA_CONSUMER.subscribe(AggregateTickerService.class.getSimpleName(),
         Sets.newHashSet("tickers"), this::aggregateTicker);
 
-    Thread.sleep(Long.MAX_VALUE);
+    Instant lastCheckpoint = Instant.MIN;
+    for (;;) {
+      Thread.sleep(checkpointDuration.toMillis());
+      final Instant checkpointStart = Instant.now();
+      checkpoint(lastCheckpoint);
+      if (restored) {
+        pruneCheckpoints();
+      }
+      lastCheckpoint = checkpointStart;
+    }
+  }
+
+  /**
+   * Checkpoints older than the 15 minute VWA window would only restore stale tickers.
+   *
+   * @return false if the checkpoints could not be read.
+   */
+  private boolean restoreCheckpoints() {
+    try {
+      checkpoints.loadAll();
+      final Instant oldest = Instant.now().minus(checkpointMaxAge);
+      checkpoints.getAll(checkpoints.getCacheFieldSetView()).values().stream()
+          .filter(Optional::isPresent).map(Optional::get)
+          .filter(checkpoint -> checkpoint.getTimestamp().isAfter(oldest))
+          .forEach(MutableAggregateTicker::restore);
+      return true;
+    } catch (final RuntimeException e) {
+      catching(e);
+      return false;
+    }
+  }
+
+  /**
+   * Deletes the checkpoints of markets without a ticker within the VWA window, which would
+   * otherwise be read back on every restore forever.
+   */
+  private void pruneCheckpoints() {
+    final Instant oldest = Instant.now().minus(checkpointMaxAge);
+    final Set<AssetPair> liveMarkets =
+        MutableAggregateTicker.getInstances().stream()
+            .filter(aggregateTicker -> aggregateTicker.getTimestamp().isAfter(oldest))
+            .map(MutableAggregateTicker::getMarket).collect(Collectors.toSet());
+    final String hashName = RedisHashCaches.AGGREGATE_TICKER_CHECKPOINT.name();
+    try {
+      RedisExecutor.MARKETSTEM.acceptJedis(jedis -> {
+        final String[] staleFields =
+            jedis.hkeys(hashName).stream()
+                .filter(field -> !liveMarkets.contains(AggregateTickerCheckpoint.CHECKPOINT_GSON
+                    .fromJson(field, AssetPair.class))).toArray(String[]::new);
+        if (staleFields.length > 0) {
+          debug("Pruning " + staleFields.length + " stale aggregate ticker checkpoints.");
+          jedis.hdel(hashName, staleFields);
+        }
+      });
+    } catch (final RuntimeException e) {
+      catching(e);
+    }
+  }
+
+  private void checkpoint(final Instant modifiedSince) {
+    final Map<AssetPair, AggregateTickerCheckpoint> modified =
+        MutableAggregateTicker.getInstances().stream()
+            .filter(aggregateTicker -> aggregateTicker.getTimestamp().isAfter(modifiedSince))
+            .map(MutableAggregateTicker::createCheckpoint)
+            .collect(
+                Collectors.toMap(AggregateTickerCheckpoint::getMarket, checkpoint -> checkpoint));
+    if (!modified.isEmpty()) {
+      retryRun(() -> checkpoints.putAll(modified), 3);
+    }
   }
 
   @Override
@@ -47,11 +134,9 @@ public class AggregateTickerService extends LeaderService implements Retryable {
     MarketDataCacheService.KAFKA_CONSUMER.unsubscribe(AggregateTickerService.class.getSimpleName());
   }
 
-  private void aggregateTicker(final String key, final String message) {
+  private void aggregateTicker(final String key, final byte[] message) {
     try {
-      final List<Ticker> tickers =
-          AggregateTickerSnapshot.AGGREGATE_TICKER_GSON.fromJson(message,
-              MarketDataCacheService.TICKER_TYPE);
+      final List<Ticker> tickers = ExchangeTickerService.TICKER_CODEC.decode(message);
       tickers.stream().filter(ticker -> Objects.nonNull(ticker.getExchange()))
           .forEach(this::aggregateTicker);
     } catch (final Exception e) {
@@ -73,13 +158,12 @@ public class AggregateTickerService extends LeaderService implements Retryable {
         MutableAggregateTicker.getInstance(reversableTicker);
 
     if (BigDecimalUtils.isPositive(aggregateTicker.getTotalVolume())
-        && MapUtils.createIfNull(aggregateTickerPublishRateLimiters, aggregateTicker.getMarket(),
-            () -> RateLimiter.create(1 / (double) publishDuration.getSeconds())).tryAcquire()) {
+        && aggregateTickerPublishRateLimiters.computeIfAbsent(aggregateTicker.getMarket(),
+            market -> RateLimiter.create(1 / (double) publishDuration.getSeconds())).tryAcquire()) {
 
       final AggregateTickerSnapshot aggregateTickerSnapshot = aggregateTicker.createSnapshot();
 
-      KafkaClients.MARKETSTEM.sendAsync("aggregate_tickers",
-          AggregateTickerSnapshot.AGGREGATE_TICKER_GSON.toJson(aggregateTickerSnapshot));
+      KafkaClients.MARKETSTEM.sendAsync(AGGREGATE_TICKER_CODEC, aggregateTickerSnapshot);
 
       retryRun(() -> distributedAggregateTickers.put(aggregateTickerSnapshot.getMarket(),
           aggregateTickerSnapshot), 3);
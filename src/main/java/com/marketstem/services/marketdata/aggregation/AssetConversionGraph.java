@@ -0,0 +1,107 @@
+package com.marketstem.services.marketdata.aggregation;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.marketstem.exchanges.data.Asset;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.services.marketdata.aggregation.data.AggregateTickerSnapshot;
+import com.marketstem.services.marketdata.aggregation.data.ConversionRate;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Snapshot of the aggregate tickers as a graph of assets joined by conversion rates. A missing
+ * direct rate is found by a breadth first search over at most {@link #MAX_HOPS} markets, visiting
+ * the highest volume markets first, so the shortest and then most liquid path wins. The search
+ * from a source asset reaches every other asset at once and is memoized for the life of the
+ * snapshot.
+ */
+public class AssetConversionGraph {
+
+  static final int MAX_HOPS = 3;
+
+  private final Map<AssetPair, ConversionRate> directRates;
+  private final Map<Asset, List<ConversionRate>> edges;
+  private final ConcurrentMap<Asset, Map<Asset, ConversionRate>> proxiedRates =
+      new ConcurrentHashMap<>();
+
+  public AssetConversionGraph(final Collection<AggregateTickerSnapshot> aggregateTickers) {
+    final Map<AssetPair, ConversionRate> directRates = new HashMap<>();
+    final Map<Asset, List<ConversionRate>> edges = new HashMap<>();
+    aggregateTickers.forEach(aggregateTicker -> aggregateTicker.getConversionRate().ifPresent(
+        conversionRate -> {
+          final AssetPair market = aggregateTicker.getMarket();
+          directRates.put(market, conversionRate);
+          directRates.putIfAbsent(market.reverse(), conversionRate);
+          edges.computeIfAbsent(market.getTradeAsset(), asset -> new ArrayList<>()).add(
+              conversionRate);
+          edges.computeIfAbsent(market.getPriceAsset(), asset -> new ArrayList<>()).add(
+              conversionRate);
+        }));
+    final ImmutableMap.Builder<Asset, List<ConversionRate>> sortedEdges = ImmutableMap.builder();
+    edges.forEach((asset, assetEdges) -> {
+      assetEdges.sort(ConversionRate.getByVolumeComparator(asset).reversed());
+      sortedEdges.put(asset, ImmutableList.copyOf(assetEdges));
+    });
+    this.directRates = ImmutableMap.copyOf(directRates);
+    this.edges = sortedEdges.build();
+  }
+
+  public Optional<ConversionRate> getConversionRate(final AssetPair assetPair) {
+    final Asset sourceAsset = assetPair.getTradeAsset();
+    final Asset desiredAsset = assetPair.getPriceAsset();
+    if (sourceAsset.equals(desiredAsset))
+      return Optional.of(new ConversionRate(sourceAsset, desiredAsset, BigDecimal.ONE,
+          BigDecimal.ONE.negate()));
+
+    final ConversionRate directRate = directRates.get(assetPair);
+    if (directRate != null)
+      return Optional.of(directRate);
+    // Only assets with markets are worth a search, memoizing one for any other would let made up
+    // assets grow the snapshot.
+    if (!edges.containsKey(sourceAsset) || !edges.containsKey(desiredAsset))
+      return Optional.empty();
+
+    return Optional.ofNullable(proxiedRates.computeIfAbsent(sourceAsset, this::search).get(
+        desiredAsset));
+  }
+
+  public int getNumAssets() {
+    return edges.size();
+  }
+
+  /**
+   * @return the first rate found from {@code sourceAsset} to every asset within reach.
+   */
+  private Map<Asset, ConversionRate> search(final Asset sourceAsset) {
+    final Map<Asset, ConversionRate> reached = new HashMap<>();
+    final Deque<Asset> frontier = new ArrayDeque<>();
+    frontier.add(sourceAsset);
+    for (int hop = 0; hop < MAX_HOPS && !frontier.isEmpty(); hop++) {
+      for (int i = frontier.size(); i > 0; i--) {
+        final Asset proxyAsset = frontier.poll();
+        final ConversionRate toProxyRate = reached.get(proxyAsset);
+        for (final ConversionRate edge : edges.getOrDefault(proxyAsset, ImmutableList.of())) {
+          final Asset nextAsset = edge.getAssetPair().getOtherAsset(proxyAsset);
+          if (nextAsset.equals(sourceAsset) || reached.containsKey(nextAsset)) {
+            continue;
+          }
+          reached.put(nextAsset, toProxyRate == null ? edge : new ConversionRate(toProxyRate,
+              edge, sourceAsset, nextAsset, proxyAsset));
+          frontier.add(nextAsset);
+        }
+      }
+    }
+    return reached;
+  }
+}
@@ -1,6 +1,9 @@
 package com.marketstem.services.marketdata.aggregation;
 
+import com.fabahaba.fava.cache.AsyncCacheLoader;
 import com.fabahaba.jedipus.cache.RedisHashCache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Sets;
 import com.marketstem.exchanges.data.Asset;
 import com.marketstem.exchanges.data.AssetPair;
@@ -10,96 +13,88 @@ import com.marketstem.services.marketdata.aggregation.data.ConversionRate;
 
 import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+/**
+ * Converts through an {@link AssetConversionGraph} rebuilt in the background as the aggregate
+ * tickers are republished. Lookups read the current graph while the next one is built.
+ */
 public class AssetConverter {
 
+  private static final String GRAPH_KEY = "graph";
+
   private final RedisHashCache<AssetPair, AggregateTickerSnapshot> aggregateTickers;
   private final Set<AssetPair> keySetView;
+  private final LoadingCache<String, AssetConversionGraph> conversionGraph = CacheBuilder
+      .newBuilder().refreshAfterWrite(30, TimeUnit.SECONDS)
+      .build(AsyncCacheLoader.create(graphKey -> buildConversionGraph(), true));
 
   private AssetConverter() {
-    this.aggregateTickers = RedisHashCaches.AGGREGATE_TICKER.getMap();
+    this(RedisHashCaches.AGGREGATE_TICKER.getMap());
+  }
+
+  AssetConverter(final RedisHashCache<AssetPair, AggregateTickerSnapshot> aggregateTickers) {
+    this.aggregateTickers = aggregateTickers;
     aggregateTickers.loadAll();
     keySetView = aggregateTickers.getCacheFieldSetView();
   }
 
-  public Optional<ConversionRate> getConversionRate(final AssetPair assetPair) {
-    return getConversionRate(assetPair, 0);
+  private AssetConversionGraph buildConversionGraph() {
+    aggregateTickers.loadAll();
+    return new AssetConversionGraph(aggregateTickers.getAll(Sets.newHashSet(keySetView)).values()
+        .stream().filter(Optional::isPresent).map(Optional::get).collect(Collectors.toList()));
   }
 
-  private static final int MAX_PROXIES = 2;
-
-  private Optional<ConversionRate> getConversionRate(final AssetPair assetPair,
-      final int proxyAttempt) {
-    if (assetPair.getPriceAsset().equals(assetPair.getTradeAsset()))
-      return Optional.of(new ConversionRate(assetPair.getTradeAsset(), assetPair.getPriceAsset(),
-          BigDecimal.ONE, BigDecimal.ONE.negate()));
-
-    final Optional<AggregateTickerSnapshot> optionalAggregateTicker =
-        aggregateTickers.getAll(Sets.newHashSet(assetPair, assetPair.reverse())).values().stream()
-            .filter(Optional::isPresent).map(Optional::get).findFirst();
-
-    if (optionalAggregateTicker.isPresent())
-      return optionalAggregateTicker.flatMap(AggregateTickerSnapshot::getConversionRate);
-    else if (proxyAttempt < AssetConverter.MAX_PROXIES) {
-
-      final Asset sourceAsset = assetPair.getTradeAsset();
-      final Asset desiredAsset = assetPair.getPriceAsset();
-
-      for (final AssetPair toProxyAssetPair : getPairsContainingOrderedByVolume(desiredAsset)) {
-        final Asset proxyAsset = AssetPair.getOtherAsset(toProxyAssetPair, desiredAsset);
-        if (proxyAsset.equals(sourceAsset)) {
-          continue;
-        }
-
-        final Optional<ConversionRate> toProxyConversionRate =
-            getConversionRate(toProxyAssetPair, proxyAttempt + 1);
-        final Optional<ConversionRate> optionalProxiedConversionRateOuter =
-            toProxyConversionRate.flatMap(presentToProxyConversionRate -> {
-              final AssetPair fromProxyAssetPair = AssetPair.fromAssets(sourceAsset, proxyAsset);
-              final Optional<ConversionRate> fromProxyConversionRate =
-                  getConversionRate(fromProxyAssetPair, proxyAttempt + 1);
-              final Optional<ConversionRate> optionalProxiedConversionRate =
-                  fromProxyConversionRate.map(presentFromProxyConversionRate -> new ConversionRate(
-                      presentFromProxyConversionRate, presentToProxyConversionRate, sourceAsset,
-                      desiredAsset, proxyAsset));
-
-              return optionalProxiedConversionRate;
-            });
-
-        if (optionalProxiedConversionRateOuter.isPresent())
-          return optionalProxiedConversionRateOuter;
-      }
-    }
-    return Optional.empty();
+  public AssetConversionGraph getConversionGraph() {
+    return conversionGraph.getUnchecked(GRAPH_KEY);
   }
 
-  private final Collection<AssetPair>
-      getPairsContainingOrderedByVolume(final Asset containingAsset) {
-
-    final Set<AssetPair> pairsContainingAsset =
-        keySetView.stream().filter(assetKey -> assetKey.contains(containingAsset))
-            .collect(Collectors.toSet());
-
-    return aggregateTickers.getAll(pairsContainingAsset).values().stream()
-        .filter(Optional::isPresent).map(Optional::get)
-        .filter(aggTicker -> aggTicker.getMarket().contains(containingAsset))
-        .map(AggregateTickerSnapshot::getConversionRate).filter(Optional::isPresent)
-        .map(Optional::get)
-        .sorted(ConversionRate.getByVolumeComparator(containingAsset).reversed())
-        .map(ConversionRate::getAssetPair).collect(Collectors.toList());
+  public Optional<ConversionRate> getConversionRate(final AssetPair assetPair) {
+    return getConversionGraph().getConversionRate(assetPair);
   }
 
   public Optional<BigDecimal> convert(final BigDecimal amount, final AssetPair assetPair) {
-    return getConversionRate(assetPair, 0).map(
+    return getConversionRate(assetPair).map(
         presentConversionRate -> presentConversionRate.convert(amount, assetPair.getTradeAsset()));
   }
 
-  private static final AssetConverter singleton = new AssetConverter();
+  /**
+   * Converts every amount of every source asset into each of {@code toAssets}. All rates are resolved
+   * against one conversion graph snapshot, with one search per source asset.
+   *
+   * @return converted amounts by source then target asset, in the order of the source amounts.
+   */
+  public Map<Asset, Map<Asset, List<Optional<BigDecimal>>>> convertAll(
+      final Map<Asset, List<BigDecimal>> amounts, final Collection<Asset> toAssets) {
+    final AssetConversionGraph graph = getConversionGraph();
+    final Map<Asset, Map<Asset, List<Optional<BigDecimal>>>> convertedAmounts =
+        new LinkedHashMap<>(amounts.size());
+    amounts.forEach((fromAsset, fromAmounts) -> {
+      final Map<Asset, List<Optional<BigDecimal>>> fromConvertedAmounts =
+          new LinkedHashMap<>(toAssets.size());
+      for (final Asset toAsset : toAssets) {
+        final Optional<ConversionRate> conversionRate =
+            graph.getConversionRate(AssetPair.fromAssets(fromAsset, toAsset));
+        fromConvertedAmounts.put(toAsset, fromAmounts.stream()
+            .map(amount -> conversionRate.map(rate -> rate.convert(amount, fromAsset)))
+            .collect(Collectors.toList()));
+      }
+      convertedAmounts.put(fromAsset, fromConvertedAmounts);
+    });
+    return convertedAmounts;
+  }
+
+  private static class SingletonHolder {
+    private static final AssetConverter singleton = new AssetConverter();
+  }
 
   public static AssetConverter getInstance() {
-    return AssetConverter.singleton;
+    return SingletonHolder.singleton;
   }
 }
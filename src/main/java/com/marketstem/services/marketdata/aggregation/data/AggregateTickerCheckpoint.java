@@ -0,0 +1,65 @@
+package com.marketstem.services.marketdata.aggregation.data;
+
+import com.google.gson.Gson;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.exchanges.data.AssetPair.AssetPairMarshaller;
+import com.marketstem.exchanges.data.Ticker;
+import com.marketstem.serialization.Marshalling;
+import com.marketstem.services.marketdata.aggregation.data.WindowedMean.Sample;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The state of a {@link MutableAggregateTicker} a new aggregation leader needs to publish correct
+ * volume weighted averages without first waiting for every exchange and the 15 minute window.
+ */
+public class AggregateTickerCheckpoint {
+
+  public static final Gson CHECKPOINT_GSON = Marshalling.BASE_GSON_BUILDER.registerTypeAdapter(
+      AssetPair.class, new AssetPairMarshaller()).create();
+
+  private final AssetPair market;
+  private final List<Ticker> tickers;
+  private final BigDecimal low;
+  private final BigDecimal high;
+  private final List<Sample> vwaLastSamples;
+  private final Instant timestamp;
+
+  public AggregateTickerCheckpoint(final AssetPair market, final List<Ticker> tickers,
+      final Optional<BigDecimal> low, final Optional<BigDecimal> high,
+      final List<Sample> vwaLastSamples, final Instant timestamp) {
+    this.market = market;
+    this.tickers = tickers;
+    this.low = low.orElse(null);
+    this.high = high.orElse(null);
+    this.vwaLastSamples = vwaLastSamples;
+    this.timestamp = timestamp;
+  }
+
+  public AssetPair getMarket() {
+    return market;
+  }
+
+  public List<Ticker> getTickers() {
+    return tickers;
+  }
+
+  public Optional<BigDecimal> getLow() {
+    return Optional.ofNullable(low);
+  }
+
+  public Optional<BigDecimal> getHigh() {
+    return Optional.ofNullable(high);
+  }
+
+  public List<Sample> getVWALastSamples() {
+    return vwaLastSamples;
+  }
+
+  public Instant getTimestamp() {
+    return timestamp;
+  }
+}
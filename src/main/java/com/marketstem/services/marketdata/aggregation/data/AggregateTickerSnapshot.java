@@ -10,26 +10,31 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonSerializationContext;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import com.marketstem.exchanges.Exchange;
 import com.marketstem.exchanges.data.AssetPair;
 import com.marketstem.exchanges.data.AssetPair.AssetPairMarshaller;
-import com.marketstem.exchanges.data.Ticker;
-import com.marketstem.exchanges.data.Ticker.TickerMarshaller;
+import com.marketstem.serialization.BinaryMarshaller;
+import com.marketstem.serialization.BinaryReader;
+import com.marketstem.serialization.BinaryWriter;
+import com.marketstem.serialization.JsonStreams;
 import com.marketstem.serialization.Marshalling;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
 public class AggregateTickerSnapshot implements AggregateTicker {
 
   public static final Gson AGGREGATE_TICKER_GSON = Marshalling.BASE_GSON_BUILDER
-      .registerTypeAdapter(Ticker.class, new TickerMarshaller())
-      .registerTypeAdapter(AssetPair.class, new AssetPairMarshaller())
-      .registerTypeAdapter(AggregateTickerSnapshot.class, new AggregateTickerSnapshotMarshaller())
-      .create();
+      .registerTypeAdapter(AssetPair.class, new AssetPairMarshaller()).create();
 
   private final AssetPair market;
   private final Optional<BigDecimal> vwaAsk;
@@ -223,6 +228,202 @@ public class AggregateTickerSnapshot implements AggregateTicker {
     }
   }
 
+  /**
+   * Streaming equivalent of {@link AggregateTickerSnapshotMarshaller}.
+   */
+  public static class AggregateTickerSnapshotTypeAdapter extends
+      TypeAdapter<AggregateTickerSnapshot> {
+
+    @Override
+    public void write(final JsonWriter out, final AggregateTickerSnapshot src) throws IOException {
+      out.beginObject();
+      out.name("market").value(src.getMarket().toString());
+      JsonStreams.writeDecimal(out, "vwaAsk", src.getVWAAsk());
+      JsonStreams.writeDecimal(out, "vwaBid", src.getVWABid());
+      JsonStreams.writeDecimal(out, "vwaLast", src.getVWALast());
+      JsonStreams.writeDecimal(out, "vwaLast15", src.get15MinVWALast());
+      JsonStreams.writeDecimal(out, "low", src.getLow());
+      JsonStreams.writeDecimal(out, "high", src.getHigh());
+      JsonStreams.writeDecimal(out, "totalVolume", src.getTotalVolume());
+
+      out.name("exchangeVolumes").beginObject();
+      for (final Map.Entry<Exchange, BigDecimal> exchangeVolume : src.getExchangeVolumes()
+          .entrySet()) {
+        JsonStreams.writeDecimal(out, exchangeVolume.getKey().toString(), exchangeVolume.getValue());
+      }
+      out.endObject();
+
+      JsonStreams.writeDecimal(out, "totalTradeAssetVolume", src.getCrossMarketVolume());
+      JsonStreams.writeDecimal(out, "totalTradeAssetVolumeForPriceAssetType",
+          src.getMarketPriceAssetTypeCrossMarketVolume());
+
+      out.name("allMarketVolumes").beginObject();
+      for (final Map.Entry<AssetPair, BigDecimal> marketVolume : src
+          .getAllMarketVolumesForTradeAsset().entrySet()) {
+        JsonStreams.writeDecimal(out, marketVolume.getKey().toString(), marketVolume.getValue());
+      }
+      out.endObject();
+
+      JsonStreams.writeInstant(out, "timestamp", src.getTimestamp());
+      out.endObject();
+    }
+
+    @Override
+    public AggregateTickerSnapshot read(final JsonReader in) throws IOException {
+      AssetPair market = null;
+      BigDecimal vwaAsk = null;
+      BigDecimal vwaBid = null;
+      BigDecimal vwaLast = null;
+      BigDecimal vwaLast15 = null;
+      BigDecimal low = null;
+      BigDecimal high = null;
+      BigDecimal totalVolume = null;
+      BigDecimal totalTradeAssetVolume = null;
+      BigDecimal totalTradeAssetVolumeForPriceAssetType = null;
+      Map<Exchange, BigDecimal> exchangeVolumes = null;
+      Map<AssetPair, BigDecimal> allMarketVolumes = null;
+      Instant timestamp = null;
+
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "market":
+            market = AssetPair.fromString(in.nextString()).get();
+            break;
+          case "vwaAsk":
+            vwaAsk = JsonStreams.nextDecimal(in);
+            break;
+          case "vwaBid":
+            vwaBid = JsonStreams.nextDecimal(in);
+            break;
+          case "vwaLast":
+            vwaLast = JsonStreams.nextDecimal(in);
+            break;
+          case "vwaLast15":
+            vwaLast15 = JsonStreams.nextDecimal(in);
+            break;
+          case "low":
+            low = JsonStreams.nextDecimal(in);
+            break;
+          case "high":
+            high = JsonStreams.nextDecimal(in);
+            break;
+          case "totalVolume":
+            totalVolume = JsonStreams.nextDecimal(in);
+            break;
+          case "totalTradeAssetVolume":
+            totalTradeAssetVolume = JsonStreams.nextDecimal(in);
+            break;
+          case "totalTradeAssetVolumeForPriceAssetType":
+            totalTradeAssetVolumeForPriceAssetType = JsonStreams.nextDecimal(in);
+            break;
+          case "exchangeVolumes":
+            exchangeVolumes = new EnumMap<>(Exchange.class);
+            in.beginObject();
+            while (in.hasNext()) {
+              final Exchange exchange = Exchange.fromString(in.nextName());
+              final BigDecimal volume = JsonStreams.nextDecimal(in);
+              if (exchange != null) {
+                exchangeVolumes.put(exchange, volume);
+              }
+            }
+            in.endObject();
+            break;
+          case "allMarketVolumes":
+            allMarketVolumes = new HashMap<>();
+            in.beginObject();
+            while (in.hasNext()) {
+              final AssetPair assetPair = AssetPair.fromString(in.nextName()).get();
+              allMarketVolumes.put(assetPair, JsonStreams.nextDecimal(in));
+            }
+            in.endObject();
+            break;
+          case "timestamp":
+            timestamp = JsonStreams.nextInstant(in);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+
+      return new AggregateTickerSnapshot(market, Optional.ofNullable(vwaAsk),
+          Optional.ofNullable(vwaBid), Optional.ofNullable(vwaLast),
+          Optional.ofNullable(vwaLast15), Optional.ofNullable(low), Optional.ofNullable(high),
+          totalVolume, exchangeVolumes, totalTradeAssetVolume,
+          totalTradeAssetVolumeForPriceAssetType, allMarketVolumes, timestamp);
+    }
+  }
+
+  public static class AggregateTickerSnapshotBinaryMarshaller implements
+      BinaryMarshaller<AggregateTickerSnapshot> {
+
+    @Override
+    public void write(final BinaryWriter out, final AggregateTickerSnapshot src) {
+      out.writeInterned(src.getMarket().toString());
+      out.writeDecimal(src.getVWAAsk().orElse(null));
+      out.writeDecimal(src.getVWABid().orElse(null));
+      out.writeDecimal(src.getVWALast().orElse(null));
+      out.writeDecimal(src.get15MinVWALast().orElse(null));
+      out.writeDecimal(src.getLow().orElse(null));
+      out.writeDecimal(src.getHigh().orElse(null));
+      out.writeDecimal(src.getTotalVolume());
+
+      out.writeVarInt(src.getExchangeVolumes().size());
+      src.getExchangeVolumes().forEach((exchange, volume) -> {
+        out.writeInterned(exchange.toString());
+        out.writeDecimal(volume);
+      });
+
+      out.writeDecimal(src.getCrossMarketVolume());
+      out.writeDecimal(src.getMarketPriceAssetTypeCrossMarketVolume());
+
+      out.writeVarInt(src.getAllMarketVolumesForTradeAsset().size());
+      src.getAllMarketVolumesForTradeAsset().forEach((assetPair, volume) -> {
+        out.writeInterned(assetPair.toString());
+        out.writeDecimal(volume);
+      });
+
+      out.writeInstant(src.getTimestamp());
+    }
+
+    @Override
+    public AggregateTickerSnapshot read(final BinaryReader in) {
+      final AssetPair market = AssetPair.fromString(in.readInterned()).get();
+      final BigDecimal vwaAsk = in.readDecimal();
+      final BigDecimal vwaBid = in.readDecimal();
+      final BigDecimal vwaLast = in.readDecimal();
+      final BigDecimal vwaLast15 = in.readDecimal();
+      final BigDecimal low = in.readDecimal();
+      final BigDecimal high = in.readDecimal();
+      final BigDecimal totalVolume = in.readDecimal();
+
+      final Map<Exchange, BigDecimal> exchangeVolumes = new EnumMap<>(Exchange.class);
+      for (int numExchanges = in.readVarInt(); numExchanges > 0; numExchanges--) {
+        final Exchange exchange = Exchange.fromString(in.readInterned());
+        final BigDecimal volume = in.readDecimal();
+        if (exchange != null) {
+          exchangeVolumes.put(exchange, volume);
+        }
+      }
+
+      final BigDecimal totalTradeAssetVolume = in.readDecimal();
+      final BigDecimal totalTradeAssetVolumeForPriceAssetType = in.readDecimal();
+
+      final Map<AssetPair, BigDecimal> allMarketVolumes = new HashMap<>();
+      for (int numMarkets = in.readVarInt(); numMarkets > 0; numMarkets--) {
+        final AssetPair assetPair = AssetPair.fromString(in.readInterned()).get();
+        allMarketVolumes.put(assetPair, in.readDecimal());
+      }
+
+      return new AggregateTickerSnapshot(market, Optional.ofNullable(vwaAsk),
+          Optional.ofNullable(vwaBid), Optional.ofNullable(vwaLast),
+          Optional.ofNullable(vwaLast15), Optional.ofNullable(low), Optional.ofNullable(high),
+          totalVolume, exchangeVolumes, totalTradeAssetVolume,
+          totalTradeAssetVolumeForPriceAssetType, allMarketVolumes, in.readInstant());
+    }
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this).add("market", market).add("vwaAsk", vwaAsk)
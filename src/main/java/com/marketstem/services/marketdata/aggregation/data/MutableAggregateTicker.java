@@ -1,7 +1,5 @@
 package com.marketstem.services.marketdata.aggregation.data;
 
-import com.fabahaba.fava.collect.MapUtils;
-import com.fabahaba.fava.collect.TemporallyWindowedStats;
 import com.fabahaba.fava.concurrent.mutable.AbstractMutable;
 import com.fabahaba.fava.logging.Loggable;
 import com.fabahaba.fava.numbers.BigDecimalUtils;
@@ -15,48 +13,93 @@ import com.marketstem.exchanges.data.Ticker;
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 public class MutableAggregateTicker extends AbstractMutable implements AggregateTicker, Loggable {
 
   private final AssetPair market;
   private final Map<Exchange, Ticker> tickers = new HashMap<>();
-  private BigDecimal totalVolume = BigDecimal.ZERO;
-  private Optional<BigDecimal> low = Optional.empty();
-  private Optional<BigDecimal> high = Optional.empty();
-  private Instant timestamp = Instant.now();
-  private final TemporallyWindowedStats lastExchangeTradePriceStats = new TemporallyWindowedStats(
-      Duration.ofMinutes(15));
+  private final Map<Exchange, BigDecimal> exchangeVolumes = new EnumMap<>(Exchange.class);
+  private final VolumeWeightedSum askSum = new VolumeWeightedSum(Ticker::getAsk);
+  private final VolumeWeightedSum bidSum = new VolumeWeightedSum(Ticker::getBid);
+  private final VolumeWeightedSum lastSum = new VolumeWeightedSum(Ticker::getLast);
+  private volatile BigDecimal totalVolume = BigDecimal.ZERO;
+  private volatile Optional<BigDecimal> low = Optional.empty();
+  private volatile Optional<BigDecimal> high = Optional.empty();
+  private volatile Instant timestamp = Instant.now();
+  private final WindowedMean lastExchangeTradePriceStats =
+      new WindowedMean(Duration.ofMinutes(15));
 
   private MutableAggregateTicker(final AssetPair assetPair) {
     this.market = assetPair;
   }
 
-  private static final Map<AssetPair, MutableAggregateTicker> singletons = new HashMap<>();
+  /**
+   * Keyed by {@link AssetPair#getDirectionlessIdentifier()}, a market is aggregated in the
+   * direction of the first ticker seen for it.
+   */
+  private static final ConcurrentMap<String, MutableAggregateTicker> singletons =
+      new ConcurrentHashMap<>();
 
-  public static synchronized MutableAggregateTicker getInstance(final Ticker ticker) {
+  public static MutableAggregateTicker getInstance(final Ticker ticker) {
     final AssetPair assetPair = ticker.getAssetPair();
+    final MutableAggregateTicker mutableAggregateTicker =
+        singletons.computeIfAbsent(assetPair.getDirectionlessIdentifier(),
+            identifier -> new MutableAggregateTicker(assetPair));
+    return mutableAggregateTicker.addTicker(mutableAggregateTicker.getMarket().equals(assetPair)
+        ? ticker : ticker.inverseTicker());
+  }
 
-    if (!MutableAggregateTicker.singletons.containsKey(assetPair)
-        && MutableAggregateTicker.singletons.containsKey(assetPair.reverse()))
-      return MutableAggregateTicker.singletons.get(assetPair.reverse()).addTicker(
-          ticker.inverseTicker());
+  public static Collection<MutableAggregateTicker> getInstances() {
+    return singletons.values();
+  }
 
-    final MutableAggregateTicker mutableAggregateTicker =
-        new MutableAggregateTicker(assetPair).addTicker(ticker);
-    return mutableAggregateTicker;
+  /**
+   * Restores a market that has not received a ticker yet in this process. Checkpoints of a market
+   * already being aggregated are ignored.
+   */
+  public static void restore(final AggregateTickerCheckpoint checkpoint) {
+    final AssetPair assetPair = checkpoint.getMarket();
+    singletons.computeIfAbsent(assetPair.getDirectionlessIdentifier(),
+        identifier -> new MutableAggregateTicker(assetPair).restoreCheckpoint(checkpoint));
+  }
+
+  private MutableAggregateTicker restoreCheckpoint(final AggregateTickerCheckpoint checkpoint) {
+    executeWriteOp(() -> {
+      checkpoint.getTickers().forEach(ticker -> {
+        final Ticker previousTicker = tickers.put(ticker.getExchange(), ticker);
+        updateVolumes(previousTicker, ticker);
+      });
+      updateCrossMarketVolumes();
+      low = checkpoint.getLow();
+      high = checkpoint.getHigh();
+      checkpoint.getVWALastSamples().forEach(
+          sample -> lastExchangeTradePriceStats.addVal(sample.getTimestamp(), sample.getValue()));
+      timestamp = checkpoint.getTimestamp();
+    });
+    return this;
+  }
+
+  public AggregateTickerCheckpoint createCheckpoint() {
+    return executeReadOp(() -> new AggregateTickerCheckpoint(getMarket(), new ArrayList<>(tickers
+        .values()), getLow(), getHigh(), lastExchangeTradePriceStats.getSamples(), getTimestamp()));
   }
 
   public MutableAggregateTicker addTicker(final Ticker ticker) {
     executeWriteOp(() -> {
       timestamp = Instant.now();
-      updateTotalVolume(ticker);
+      final Ticker previousTicker = tickers.put(ticker.getExchange(), ticker);
+      updateVolumes(previousTicker, ticker);
       updateCrossMarketVolumes();
       updatedLowHigh(ticker);
-      tickers.put(ticker.getExchange(), ticker);
     });
     return this;
   }
@@ -66,14 +109,25 @@ public class MutableAggregateTicker extends AbstractMutable implements Aggregate
     return market;
   }
 
-  private void updateTotalVolume(final Ticker ticker) {
-    final Ticker previousTicker = tickers.get(ticker.getExchange());
-    if (previousTicker != null && previousTicker.getVolume().isPresent()
-        && ticker.getVolume().isPresent()) {
-      totalVolume =
-          totalVolume.subtract(previousTicker.getVolume().get()).add(ticker.getVolume().get());
+  /**
+   * Replaces the previous ticker's contribution from the same exchange.
+   */
+  private void updateVolumes(final Ticker previousTicker, final Ticker ticker) {
+    if (previousTicker != null) {
+      totalVolume = totalVolume.subtract(previousTicker.getVolume().orElse(BigDecimal.ZERO));
+      askSum.subtract(previousTicker);
+      bidSum.subtract(previousTicker);
+      lastSum.subtract(previousTicker);
+    }
+    totalVolume = totalVolume.add(ticker.getVolume().orElse(BigDecimal.ZERO));
+    askSum.add(ticker);
+    bidSum.add(ticker);
+    lastSum.add(ticker);
+
+    if (ticker.getVolume().isPresent()) {
+      exchangeVolumes.put(ticker.getExchange(), ticker.getVolume().get().stripTrailingZeros());
     } else {
-      totalVolume = totalVolume.add(ticker.getVolume().orElse(BigDecimal.ZERO));
+      exchangeVolumes.remove(ticker.getExchange());
     }
   }
 
@@ -92,48 +146,18 @@ public class MutableAggregateTicker extends AbstractMutable implements Aggregate
 
   @Override
   public Optional<BigDecimal> getVWAAsk() {
-    return executeReadOp(() -> {
-      final BigDecimal askSum =
-          tickers.values().stream()
-              .filter(ticker -> ticker.getAsk().isPresent() && ticker.getVolume().isPresent())
-              .map(ticker -> ticker.getAsk().get().multiply(ticker.getVolume().get()))
-              .reduce((result, ask) -> result.add(ask)).orElse(BigDecimal.ZERO);
-      final BigDecimal totalVolume = getTotalVolume();
-      final Optional<BigDecimal> vwaAsk =
-          BigDecimalUtils.isPositive(totalVolume) ? Optional.of(BigDecimalUtils.divide(askSum,
-              totalVolume, 8)) : Optional.empty();
-      return vwaAsk;
-    });
+    return executeReadOp(askSum::getAverage);
   }
 
   @Override
   public Optional<BigDecimal> getVWABid() {
-    return executeReadOp(() -> {
-      final BigDecimal bidSum =
-          tickers.values().stream()
-              .filter(ticker -> ticker.getBid().isPresent() && ticker.getVolume().isPresent())
-              .map(ticker -> ticker.getBid().get().multiply(ticker.getVolume().get()))
-              .reduce((result, bid) -> result.add(bid)).orElse(BigDecimal.ZERO);
-      final BigDecimal totalVolume = getTotalVolume();
-      final Optional<BigDecimal> vwaBid =
-          BigDecimalUtils.isPositive(totalVolume) ? Optional.of(BigDecimalUtils.divide(bidSum,
-              totalVolume, 8)) : Optional.empty();
-      return vwaBid;
-    });
+    return executeReadOp(bidSum::getAverage);
   }
 
   @Override
   public Optional<BigDecimal> getVWALast() {
     return executeReadOp(() -> {
-      final BigDecimal lastSum =
-          tickers.values().stream()
-              .filter(ticker -> ticker.getLast().isPresent() && ticker.getVolume().isPresent())
-              .map(ticker -> ticker.getLast().get().multiply(ticker.getVolume().get()))
-              .reduce((result, last) -> result.add(last)).orElse(BigDecimal.ZERO);
-      final BigDecimal totalVolume = getTotalVolume();
-      final Optional<BigDecimal> vwaLast =
-          BigDecimalUtils.isPositive(totalVolume) ? Optional.of(BigDecimalUtils.divide(lastSum,
-              totalVolume, 8)) : Optional.empty();
+      final Optional<BigDecimal> vwaLast = lastSum.getAverage();
       vwaLast.ifPresent(presentvwaLast -> lastExchangeTradePriceStats.addVal(presentvwaLast
           .doubleValue()));
       return vwaLast;
@@ -168,58 +192,50 @@ public class MutableAggregateTicker extends AbstractMutable implements Aggregate
 
   @Override
   public Map<Exchange, BigDecimal> getExchangeVolumes() {
-    return executeReadOp(() -> {
-      final Map<Exchange, BigDecimal> exchangeVolumePercentages =
-          BigDecimalUtils.isPositive(totalVolume) ? tickers
-              .values()
-              .stream()
-              .filter(ticker -> ticker.getVolume().isPresent())
-              .collect(
-                  Collectors.toMap(Ticker::getExchange, ticker -> ticker.getVolume().get()
-                      .stripTrailingZeros())) : Maps.newHashMap();
-
-      return exchangeVolumePercentages;
-    });
+    return executeReadOp(() -> BigDecimalUtils.isPositive(totalVolume) ? new EnumMap<>(
+        exchangeVolumes) : Maps.newHashMap());
   }
 
-  private static final Map<Asset, Map<AssetPair, BigDecimal>> crossFiatMarketTradeVolumes =
-      new HashMap<>();
-  private static final Map<Asset, Map<AssetPair, BigDecimal>> crossDigitalMarketTradeVolumes =
-      new HashMap<>();
-  private static final Map<Asset, Map<AssetPair, BigDecimal>> crossMarketTradeVolumes =
-      new HashMap<>();
+  private static final ConcurrentMap<Asset, ConcurrentMap<AssetPair, BigDecimal>> crossFiatMarketTradeVolumes =
+      new ConcurrentHashMap<>();
+  private static final ConcurrentMap<Asset, ConcurrentMap<AssetPair, BigDecimal>> crossDigitalMarketTradeVolumes =
+      new ConcurrentHashMap<>();
+  private static final ConcurrentMap<Asset, ConcurrentMap<AssetPair, BigDecimal>> crossMarketTradeVolumes =
+      new ConcurrentHashMap<>();
+
+  private static ConcurrentMap<AssetPair, BigDecimal> getMarketVolumes(
+      final ConcurrentMap<Asset, ConcurrentMap<AssetPair, BigDecimal>> crossMarketVolumes,
+      final Asset tradeAsset) {
+    return crossMarketVolumes.computeIfAbsent(tradeAsset,
+        newTradeAsset -> new ConcurrentHashMap<>());
+  }
+
+  private ConcurrentMap<Asset, ConcurrentMap<AssetPair, BigDecimal>> getPriceAssetTypeVolumes() {
+    return getMarket().getPriceAsset().getType().equals(AssetType.Fiat)
+        ? crossFiatMarketTradeVolumes : crossDigitalMarketTradeVolumes;
+  }
 
   public void updateCrossMarketVolumes() {
     final Asset tradeAsset = getMarket().getTradeAsset();
-    MapUtils.createIfNull(crossMarketTradeVolumes, tradeAsset, Maps::newHashMap).put(getMarket(),
-        getTotalVolume());
-    MapUtils.createIfNull(
-        getMarket().getPriceAsset().getType().equals(AssetType.Fiat) ? crossFiatMarketTradeVolumes
-            : crossDigitalMarketTradeVolumes, tradeAsset, Maps::newHashMap).put(getMarket(),
-        getTotalVolume());
+    getMarketVolumes(crossMarketTradeVolumes, tradeAsset).put(getMarket(), getTotalVolume());
+    getMarketVolumes(getPriceAssetTypeVolumes(), tradeAsset).put(getMarket(), getTotalVolume());
   }
 
   @Override
   public BigDecimal getCrossMarketVolume() {
-    return MapUtils
-        .createIfNull(crossMarketTradeVolumes, getMarket().getTradeAsset(), Maps::newConcurrentMap)
-        .values().stream().reduce((sum, volume) -> sum.add(volume)).orElse(BigDecimal.ZERO);
+    return getMarketVolumes(crossMarketTradeVolumes, getMarket().getTradeAsset()).values()
+        .stream().reduce((sum, volume) -> sum.add(volume)).orElse(BigDecimal.ZERO);
   }
 
   @Override
   public BigDecimal getMarketPriceAssetTypeCrossMarketVolume() {
-    return MapUtils
-        .createIfNull(
-            getMarket().getPriceAsset().getType().equals(AssetType.Fiat)
-                ? crossFiatMarketTradeVolumes : crossDigitalMarketTradeVolumes,
-            getMarket().getTradeAsset(), Maps::newHashMap).values().stream()
-        .reduce((sum, volume) -> sum.add(volume)).orElse(BigDecimal.ZERO);
+    return getMarketVolumes(getPriceAssetTypeVolumes(), getMarket().getTradeAsset()).values()
+        .stream().reduce((sum, volume) -> sum.add(volume)).orElse(BigDecimal.ZERO);
   }
 
   @Override
   public Map<AssetPair, BigDecimal> getAllMarketVolumesForTradeAsset() {
-    return MapUtils.createIfNull(crossMarketTradeVolumes, getMarket().getTradeAsset(),
-        Maps::newHashMap);
+    return getMarketVolumes(crossMarketTradeVolumes, getMarket().getTradeAsset());
   }
 
   @Override
@@ -227,6 +243,40 @@ public class MutableAggregateTicker extends AbstractMutable implements Aggregate
     return timestamp;
   }
 
+  /**
+   * Running sum of price times volume, and of the volume, over tickers with both present.
+   */
+  private static class VolumeWeightedSum {
+
+    private final Function<Ticker, Optional<BigDecimal>> price;
+    private BigDecimal weightedSum = BigDecimal.ZERO;
+    private BigDecimal volume = BigDecimal.ZERO;
+
+    private VolumeWeightedSum(final Function<Ticker, Optional<BigDecimal>> price) {
+      this.price = price;
+    }
+
+    private void add(final Ticker ticker) {
+      if (price.apply(ticker).isPresent() && ticker.getVolume().isPresent()) {
+        weightedSum = weightedSum.add(price.apply(ticker).get().multiply(ticker.getVolume().get()));
+        volume = volume.add(ticker.getVolume().get());
+      }
+    }
+
+    private void subtract(final Ticker ticker) {
+      if (price.apply(ticker).isPresent() && ticker.getVolume().isPresent()) {
+        weightedSum =
+            weightedSum.subtract(price.apply(ticker).get().multiply(ticker.getVolume().get()));
+        volume = volume.subtract(ticker.getVolume().get());
+      }
+    }
+
+    private Optional<BigDecimal> getAverage() {
+      return BigDecimalUtils.isPositive(volume) ? Optional.of(BigDecimalUtils.divide(weightedSum,
+          volume, 8)) : Optional.empty();
+    }
+  }
+
   public AggregateTickerSnapshot createSnapshot() {
     return new AggregateTickerSnapshot(getMarket(), getVWAAsk(), getVWABid(), getVWALast(),
         get15MinVWALast(), getLow(), getHigh(), getTotalVolume(), getExchangeVolumes(),
@@ -0,0 +1,84 @@
+package com.marketstem.services.marketdata.aggregation.data;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Mean of the values added within a trailing time window. Unlike a summary statistic, the samples
+ * themselves are kept so the window can be checkpointed and restored. The running sum is
+ * compensated (Kahan summation), so adding and evicting samples indefinitely does not accumulate
+ * rounding error.
+ */
+public class WindowedMean {
+
+  private final Duration window;
+  private final Deque<Sample> samples = new ArrayDeque<>();
+  private double sum = 0;
+  private double compensation = 0;
+
+  public WindowedMean(final Duration window) {
+    this.window = window;
+  }
+
+  public void addVal(final double value) {
+    addVal(Instant.now(), value);
+  }
+
+  public synchronized void addVal(final Instant timestamp, final double value) {
+    samples.add(new Sample(timestamp, value));
+    accumulate(value);
+    evict();
+  }
+
+  public synchronized Optional<Double> getMean() {
+    evict();
+    return samples.isEmpty() ? Optional.empty() : Optional.of(sum / samples.size());
+  }
+
+  public synchronized List<Sample> getSamples() {
+    evict();
+    return new ArrayList<>(samples);
+  }
+
+  private void evict() {
+    final Instant cutoff = Instant.now().minus(window);
+    while (!samples.isEmpty() && samples.peek().getTimestamp().isBefore(cutoff)) {
+      accumulate(-samples.poll().getValue());
+    }
+    if (samples.isEmpty()) {
+      sum = 0;
+      compensation = 0;
+    }
+  }
+
+  private void accumulate(final double value) {
+    final double compensatedValue = value - compensation;
+    final double newSum = sum + compensatedValue;
+    compensation = newSum - sum - compensatedValue;
+    sum = newSum;
+  }
+
+  public static class Sample {
+
+    private final Instant timestamp;
+    private final double value;
+
+    public Sample(final Instant timestamp, final double value) {
+      this.timestamp = timestamp;
+      this.value = value;
+    }
+
+    public Instant getTimestamp() {
+      return timestamp;
+    }
+
+    public double getValue() {
+      return value;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package com.marketstem.services.marketdata.depth;
+
+import com.fabahaba.fava.logging.Loggable;
+import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.exchanges.data.ScaledMarketDepth;
+import com.marketstem.services.marketdata.depth.data.DepthUpdate;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Consumer side of the "depths" topic. Rebuilds books from the snapshots and deltas published by
+ * {@link DepthBookEngine}. A delta is only applied on top of the directly preceding sequence of the
+ * same epoch. Snapshots and deltas of an older epoch, from a leader that lost its term, are
+ * ignored. After a gap or a delta of a newer epoch, whose snapshot was missed, the market is
+ * dropped until its next snapshot.
+ */
+public class DepthBookApplier implements Loggable {
+
+  private final Map<Exchange, ConcurrentMap<AssetPair, AppliedBook>> appliedBooks =
+      new ConcurrentHashMap<>();
+
+  /**
+   * @return the rebuilt book if {@code update} was applied.
+   */
+  public Optional<ScaledMarketDepth> apply(final DepthUpdate update) {
+    final ScaledMarketDepth[] applied = new ScaledMarketDepth[1];
+    getBooks(update.getExchange()).compute(update.getMarket(), (market, current) -> {
+      if (current != null && update.getEpoch() < current.epoch)
+        return current;
+      if (update.isSnapshot()) {
+        applied[0] = update.applyTo(null);
+        return new AppliedBook(applied[0], update.getEpoch(), update.getSequence());
+      }
+      if (current == null)
+        return null;
+      if (update.getEpoch() != current.epoch) {
+        debug("Dropping " + update.getExchange() + " " + market + " depth after epoch change "
+            + current.epoch + " -> " + update.getEpoch());
+        return null;
+      }
+      if (update.getSequence() <= current.sequence)
+        return current;
+      if (update.getSequence() != current.sequence + 1) {
+        debug("Dropping " + update.getExchange() + " " + market + " depth after sequence gap "
+            + current.sequence + " -> " + update.getSequence());
+        return null;
+      }
+      applied[0] = update.applyTo(current.book);
+      return new AppliedBook(applied[0], current.epoch, update.getSequence());
+    });
+
+    return Optional.ofNullable(applied[0]);
+  }
+
+  /**
+   * Forgets the market so only a snapshot can restart it.
+   */
+  public void invalidate(final Exchange exchange, final AssetPair market) {
+    getBooks(exchange).remove(market);
+  }
+
+  private ConcurrentMap<AssetPair, AppliedBook> getBooks(final Exchange exchange) {
+    return appliedBooks.computeIfAbsent(exchange, presentExchange -> new ConcurrentHashMap<>());
+  }
+
+  private static class AppliedBook {
+
+    private final ScaledMarketDepth book;
+    private final long epoch;
+    private final long sequence;
+
+    private AppliedBook(final ScaledMarketDepth book, final long epoch, final long sequence) {
+      this.book = book;
+      this.epoch = epoch;
+      this.sequence = sequence;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package com.marketstem.services.marketdata.depth;
+
+import com.fabahaba.fava.logging.Loggable;
+import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.exchanges.data.FullMarketDepth;
+import com.marketstem.exchanges.data.ScaledMarketDepth;
+import com.marketstem.services.marketdata.depth.data.DepthUpdate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Producer side of the "depths" topic. Remembers the last book published for each market of an
+ * exchange and turns every new book into a sequenced delta of the changed levels, or into a full
+ * snapshot when the market is new, the last snapshot is older than {@link #SNAPSHOT_INTERVAL} or the
+ * delta would not be much smaller than the book itself. Every update carries the engine's epoch,
+ * renewed by {@link #reset()} at the start of each leadership term, so consumers never apply a
+ * delta from one leader on top of a book from another.
+ */
+public class DepthBookEngine implements Loggable {
+
+  public static final Duration SNAPSHOT_INTERVAL = Duration.ofSeconds(60);
+  private static final double MAX_DELTA_TO_BOOK_RATIO = 0.5;
+
+  private final Exchange exchange;
+  private final ConcurrentMap<AssetPair, PublishedBook> publishedBooks =
+      new ConcurrentHashMap<>();
+  private volatile long epoch = nextEpoch(DepthUpdate.NO_EPOCH);
+
+  public DepthBookEngine(final Exchange exchange) {
+    this.exchange = exchange;
+  }
+
+  public boolean isSnapshotDue(final AssetPair market) {
+    final PublishedBook publishedBook = publishedBooks.get(market);
+    return publishedBook == null || publishedBook.isSnapshotDue(Instant.now());
+  }
+
+  /**
+   * @return the update to publish, empty if nothing changed since the last published book.
+   */
+  public Optional<DepthUpdate> update(final FullMarketDepth depth) {
+    final ScaledMarketDepth book = ScaledMarketDepth.fromFullMarketDepth(depth);
+    final Instant now = Instant.now();
+    final long currentEpoch = epoch;
+    final DepthUpdate[] update = new DepthUpdate[1];
+
+    publishedBooks.compute(book.getMarket(), (market, previous) -> {
+      final long sequence = previous == null ? 1 : previous.sequence + 1;
+      if (previous == null || previous.isSnapshotDue(now)) {
+        update[0] = DepthUpdate.snapshot(book, currentEpoch, sequence);
+        return new PublishedBook(book, sequence, now);
+      }
+
+      final DepthUpdate delta = DepthUpdate.delta(previous.book, book, currentEpoch, sequence);
+      if (delta.isEmpty())
+        return previous;
+
+      if (delta.getNumLevels() > (book.getNumBids() + book.getNumAsks()) * MAX_DELTA_TO_BOOK_RATIO) {
+        update[0] = DepthUpdate.snapshot(book, currentEpoch, sequence);
+        return new PublishedBook(book, sequence, now);
+      }
+
+      update[0] = delta;
+      return new PublishedBook(book, sequence, previous.lastSnapshot);
+    });
+
+    return Optional.ofNullable(update[0]);
+  }
+
+  public long getEpoch() {
+    return epoch;
+  }
+
+  /**
+   * Starts a new epoch and forgets every published book so the next update for each market is a
+   * snapshot.
+   */
+  public void reset() {
+    epoch = nextEpoch(epoch);
+    debug("Resetting published depth books for " + exchange + " at epoch " + epoch);
+    publishedBooks.clear();
+  }
+
+  /**
+   * Epochs are the epoch millis the term started at, so a newer leader's updates win.
+   */
+  private static long nextEpoch(final long previousEpoch) {
+    return Math.max(previousEpoch + 1, System.currentTimeMillis());
+  }
+
+  private static class PublishedBook {
+
+    private final ScaledMarketDepth book;
+    private final long sequence;
+    private final Instant lastSnapshot;
+
+    private PublishedBook(final ScaledMarketDepth book, final long sequence,
+        final Instant lastSnapshot) {
+      this.book = book;
+      this.sequence = sequence;
+      this.lastSnapshot = lastSnapshot;
+    }
+
+    private boolean isSnapshotDue(final Instant now) {
+      return Duration.between(lastSnapshot, now).compareTo(SNAPSHOT_INTERVAL) >= 0;
+    }
+  }
+}
@@ -0,0 +1,564 @@
+package com.marketstem.services.marketdata.depth.data;
+
+import com.fabahaba.fava.serialization.gson.GsonUtils;
+import com.fabahaba.fava.serialization.gson.JsonMarshaller;
+import com.google.common.base.MoreObjects;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.exchanges.data.ScaledMarketDepth;
+import com.marketstem.exchanges.data.ScaledMarketDepth.ScaledMarketDepthBuilder;
+import com.marketstem.serialization.BinaryMarshaller;
+import com.marketstem.serialization.BinaryReader;
+import com.marketstem.serialization.BinaryWriter;
+import com.marketstem.serialization.JsonStreams;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A full book snapshot or a set of changed price levels for a single exchange market. Levels are
+ * ordered like the book, bids descending and asks ascending, and a delta level with a zero quantity
+ * removes that price. Sequences restart with every epoch, the time the publishing leader's term
+ * started, so a delta only applies on top of a book from the same epoch.
+ */
+public class DepthUpdate {
+
+  public enum UpdateType {
+    SNAPSHOT, DELTA;
+
+    @Override
+    public String toString() {
+      return name().toLowerCase();
+    }
+
+    public static UpdateType fromString(final String type) {
+      return valueOf(type.toUpperCase());
+    }
+  }
+
+  /**
+   * Sequence of a full depth published before the depth book engine, read as a snapshot.
+   */
+  public static final long UNSEQUENCED = 0;
+  /**
+   * Epoch of an update published before epochs, older than any leader's epoch.
+   */
+  public static final long NO_EPOCH = 0;
+
+  private final Exchange exchange;
+  private final AssetPair market;
+  private final UpdateType type;
+  private final long epoch;
+  private final long sequence;
+  private final int priceScale;
+  private final int quantityScale;
+  private final long[] bidPrices;
+  private final long[] bidQuantities;
+  private final long[] askPrices;
+  private final long[] askQuantities;
+  private final Instant timestamp;
+
+  private DepthUpdate(final Exchange exchange, final AssetPair market, final UpdateType type,
+      final long epoch, final long sequence, final int priceScale, final int quantityScale,
+      final long[] bidPrices, final long[] bidQuantities, final long[] askPrices,
+      final long[] askQuantities, final Instant timestamp) {
+    this.exchange = exchange;
+    this.market = market;
+    this.type = type;
+    this.epoch = epoch;
+    this.sequence = sequence;
+    this.priceScale = priceScale;
+    this.quantityScale = quantityScale;
+    this.bidPrices = bidPrices;
+    this.bidQuantities = bidQuantities;
+    this.askPrices = askPrices;
+    this.askQuantities = askQuantities;
+    this.timestamp = timestamp;
+  }
+
+  public static DepthUpdate snapshot(final ScaledMarketDepth book, final long epoch,
+      final long sequence) {
+    final long[] bidPrices = new long[book.getNumBids()];
+    final long[] bidQuantities = new long[bidPrices.length];
+    for (int level = 0; level < bidPrices.length; level++) {
+      bidPrices[level] = book.getBidPrice(level);
+      bidQuantities[level] = book.getBidQuantity(level);
+    }
+    final long[] askPrices = new long[book.getNumAsks()];
+    final long[] askQuantities = new long[askPrices.length];
+    for (int level = 0; level < askPrices.length; level++) {
+      askPrices[level] = book.getAskPrice(level);
+      askQuantities[level] = book.getAskQuantity(level);
+    }
+    return new DepthUpdate(book.getExchange(), book.getMarket(), UpdateType.SNAPSHOT, epoch,
+        sequence, book.getPriceScale(), book.getQuantityScale(), bidPrices, bidQuantities,
+        askPrices, askQuantities, book.getTimestamp());
+  }
+
+  /**
+   * Walks both books once per side and keeps only the levels whose quantity changed, including
+   * removed levels with a zero quantity.
+   */
+  public static DepthUpdate delta(final ScaledMarketDepth previous,
+      final ScaledMarketDepth current, final long epoch, final long sequence) {
+    final LevelChanges bidChanges = new LevelChanges();
+    int previousLevel = 0;
+    int currentLevel = 0;
+    while (previousLevel < previous.getNumBids() || currentLevel < current.getNumBids()) {
+      if (currentLevel == current.getNumBids()
+          || previousLevel < previous.getNumBids()
+          && previous.getBidPrice(previousLevel) > current.getBidPrice(currentLevel)) {
+        bidChanges.add(previous.getBidPrice(previousLevel++), 0);
+      } else if (previousLevel == previous.getNumBids()
+          || current.getBidPrice(currentLevel) > previous.getBidPrice(previousLevel)) {
+        bidChanges.add(current.getBidPrice(currentLevel), current.getBidQuantity(currentLevel++));
+      } else {
+        if (previous.getBidQuantity(previousLevel) != current.getBidQuantity(currentLevel)) {
+          bidChanges.add(current.getBidPrice(currentLevel), current.getBidQuantity(currentLevel));
+        }
+        previousLevel++;
+        currentLevel++;
+      }
+    }
+
+    final LevelChanges askChanges = new LevelChanges();
+    previousLevel = 0;
+    currentLevel = 0;
+    while (previousLevel < previous.getNumAsks() || currentLevel < current.getNumAsks()) {
+      if (currentLevel == current.getNumAsks()
+          || previousLevel < previous.getNumAsks()
+          && previous.getAskPrice(previousLevel) < current.getAskPrice(currentLevel)) {
+        askChanges.add(previous.getAskPrice(previousLevel++), 0);
+      } else if (previousLevel == previous.getNumAsks()
+          || current.getAskPrice(currentLevel) < previous.getAskPrice(previousLevel)) {
+        askChanges.add(current.getAskPrice(currentLevel), current.getAskQuantity(currentLevel++));
+      } else {
+        if (previous.getAskQuantity(previousLevel) != current.getAskQuantity(currentLevel)) {
+          askChanges.add(current.getAskPrice(currentLevel), current.getAskQuantity(currentLevel));
+        }
+        previousLevel++;
+        currentLevel++;
+      }
+    }
+
+    return new DepthUpdate(current.getExchange(), current.getMarket(), UpdateType.DELTA, epoch,
+        sequence, current.getPriceScale(), current.getQuantityScale(), bidChanges.prices(),
+        bidChanges.quantities(), askChanges.prices(), askChanges.quantities(),
+        current.getTimestamp());
+  }
+
+  /**
+   * @return the snapshot book, or {@code book} with the changed levels of this delta merged in.
+   */
+  public ScaledMarketDepth applyTo(final ScaledMarketDepth book) {
+    final ScaledMarketDepthBuilder builder = ScaledMarketDepth.builder(exchange, market);
+    if (isSnapshot()) {
+      for (int level = 0; level < bidPrices.length; level++) {
+        builder.addScaledBid(bidPrices[level], bidQuantities[level]);
+      }
+      for (int level = 0; level < askPrices.length; level++) {
+        builder.addScaledAsk(askPrices[level], askQuantities[level]);
+      }
+      return builder.build();
+    }
+
+    int bookLevel = 0;
+    int changeLevel = 0;
+    while (bookLevel < book.getNumBids() || changeLevel < bidPrices.length) {
+      if (changeLevel == bidPrices.length || bookLevel < book.getNumBids()
+          && book.getBidPrice(bookLevel) > bidPrices[changeLevel]) {
+        builder.addScaledBid(book.getBidPrice(bookLevel), book.getBidQuantity(bookLevel++));
+      } else {
+        if (bookLevel < book.getNumBids() && book.getBidPrice(bookLevel) == bidPrices[changeLevel]) {
+          bookLevel++;
+        }
+        builder.addScaledBid(bidPrices[changeLevel], bidQuantities[changeLevel++]);
+      }
+    }
+
+    bookLevel = 0;
+    changeLevel = 0;
+    while (bookLevel < book.getNumAsks() || changeLevel < askPrices.length) {
+      if (changeLevel == askPrices.length || bookLevel < book.getNumAsks()
+          && book.getAskPrice(bookLevel) < askPrices[changeLevel]) {
+        builder.addScaledAsk(book.getAskPrice(bookLevel), book.getAskQuantity(bookLevel++));
+      } else {
+        if (bookLevel < book.getNumAsks() && book.getAskPrice(bookLevel) == askPrices[changeLevel]) {
+          bookLevel++;
+        }
+        builder.addScaledAsk(askPrices[changeLevel], askQuantities[changeLevel++]);
+      }
+    }
+    return builder.build();
+  }
+
+  public Exchange getExchange() {
+    return exchange;
+  }
+
+  public AssetPair getMarket() {
+    return market;
+  }
+
+  public UpdateType getType() {
+    return type;
+  }
+
+  public boolean isSnapshot() {
+    return type == UpdateType.SNAPSHOT;
+  }
+
+  public long getEpoch() {
+    return epoch;
+  }
+
+  public long getSequence() {
+    return sequence;
+  }
+
+  public boolean isSequenced() {
+    return sequence != UNSEQUENCED;
+  }
+
+  public int getNumLevels() {
+    return bidPrices.length + askPrices.length;
+  }
+
+  public boolean isEmpty() {
+    return getNumLevels() == 0;
+  }
+
+  public Instant getTimestamp() {
+    return timestamp;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("exchange", exchange).add("market", market)
+        .add("type", type).add("epoch", epoch).add("sequence", sequence)
+        .add("bidPrices", Arrays.toString(bidPrices))
+        .add("bidQuantities", Arrays.toString(bidQuantities))
+        .add("askPrices", Arrays.toString(askPrices))
+        .add("askQuantities", Arrays.toString(askQuantities)).add("timestamp", timestamp)
+        .toString();
+  }
+
+  private static class LevelChanges {
+
+    private long[] prices = new long[16];
+    private long[] quantities = new long[16];
+    private int size = 0;
+
+    private void add(final long price, final long quantity) {
+      if (size == prices.length) {
+        prices = Arrays.copyOf(prices, size << 1);
+        quantities = Arrays.copyOf(quantities, size << 1);
+      }
+      prices[size] = price;
+      quantities[size++] = quantity;
+    }
+
+    private long[] prices() {
+      return Arrays.copyOf(prices, size);
+    }
+
+    private long[] quantities() {
+      return Arrays.copyOf(quantities, size);
+    }
+  }
+
+  /**
+   * Levels are written as {@code [quantity, price]} string pairs, the same as
+   * {@link com.marketstem.exchanges.data.PublicLimitOrder.PublicLimitOrderSerializer}.
+   */
+  public static class DepthUpdateMarshaller implements JsonMarshaller<DepthUpdate, DepthUpdate> {
+
+    @Override
+    public JsonElement serialize(final DepthUpdate src, final Type typeOfSrc,
+        final JsonSerializationContext context) {
+      final JsonObject depthJsonObject = new JsonObject();
+      depthJsonObject.addProperty("exchange", src.getExchange().toString());
+      depthJsonObject.addProperty("market", src.getMarket().toString());
+      depthJsonObject.addProperty("type", src.getType().toString());
+      depthJsonObject.addProperty("epoch", src.getEpoch());
+      depthJsonObject.addProperty("sequence", src.getSequence());
+      depthJsonObject.add("bids",
+          toJsonArray(src.bidPrices, src.bidQuantities, src.priceScale, src.quantityScale));
+      depthJsonObject.add("asks",
+          toJsonArray(src.askPrices, src.askQuantities, src.priceScale, src.quantityScale));
+      depthJsonObject.addProperty("timestamp", src.getTimestamp().toString());
+      return depthJsonObject;
+    }
+
+    private static JsonArray toJsonArray(final long[] prices, final long[] quantities,
+        final int priceScale, final int quantityScale) {
+      final JsonArray levels = new JsonArray();
+      for (int level = 0; level < prices.length; level++) {
+        final JsonArray quantityPrice = new JsonArray();
+        quantityPrice.add(new JsonPrimitive(ScaledMarketDepth.toPlainString(quantities[level],
+            quantityScale)));
+        quantityPrice.add(new JsonPrimitive(ScaledMarketDepth.toPlainString(prices[level],
+            priceScale)));
+        levels.add(quantityPrice);
+      }
+      return levels;
+    }
+
+    @Override
+    public DepthUpdate deserialize(final JsonElement json, final Type typeOfT,
+        final JsonDeserializationContext context) throws JsonParseException {
+      final JsonObject jsonObject = json.getAsJsonObject();
+      final Exchange exchange = Exchange.fromString(jsonObject.get("exchange").getAsString());
+      final AssetPair market = AssetPair.fromString(jsonObject.get("market").getAsString()).get();
+      final UpdateType type = UpdateType.fromString(jsonObject.get("type").getAsString());
+      final long epoch = jsonObject.has("epoch") ? jsonObject.get("epoch").getAsLong() : NO_EPOCH;
+      final long sequence = jsonObject.get("sequence").getAsLong();
+      final int priceScale = ScaledMarketDepth.getPriceScale(market);
+      final int quantityScale = ScaledMarketDepth.getQuantityScale(market);
+
+      final JsonArray bids = jsonObject.get("bids").getAsJsonArray();
+      final long[] bidPrices = new long[bids.size()];
+      final long[] bidQuantities = new long[bidPrices.length];
+      parseLevels(bids, bidPrices, bidQuantities, priceScale, quantityScale);
+
+      final JsonArray asks = jsonObject.get("asks").getAsJsonArray();
+      final long[] askPrices = new long[asks.size()];
+      final long[] askQuantities = new long[askPrices.length];
+      parseLevels(asks, askPrices, askQuantities, priceScale, quantityScale);
+
+      final Instant timestamp = GsonUtils.getIso8601Instant(jsonObject.get("timestamp"));
+
+      return new DepthUpdate(exchange, market, type, epoch, sequence, priceScale, quantityScale,
+          bidPrices, bidQuantities, askPrices, askQuantities, timestamp);
+    }
+
+    private static void parseLevels(final JsonArray levels, final long[] prices,
+        final long[] quantities, final int priceScale, final int quantityScale) {
+      for (int level = 0; level < prices.length; level++) {
+        final JsonArray quantityPrice = levels.get(level).getAsJsonArray();
+        quantities[level] =
+            ScaledMarketDepth.parseScaled(quantityPrice.get(0).getAsString(), quantityScale);
+        prices[level] =
+            ScaledMarketDepth.parseScaled(quantityPrice.get(1).getAsString(), priceScale);
+      }
+    }
+  }
+
+  /**
+   * Streaming equivalent of {@link DepthUpdateMarshaller}. A message without a type or sequence is a
+   * full depth in the format published before the depth book engine and reads as an
+   * {@link #UNSEQUENCED} snapshot.
+   */
+  public static class DepthUpdateTypeAdapter extends TypeAdapter<DepthUpdate> {
+
+    @Override
+    public void write(final JsonWriter out, final DepthUpdate src) throws IOException {
+      out.beginObject();
+      out.name("exchange").value(src.getExchange().toString());
+      out.name("market").value(src.getMarket().toString());
+      out.name("type").value(src.getType().toString());
+      out.name("epoch").value(src.getEpoch());
+      out.name("sequence").value(src.getSequence());
+      writeLevels(out.name("bids"), src.bidPrices, src.bidQuantities, src.priceScale,
+          src.quantityScale);
+      writeLevels(out.name("asks"), src.askPrices, src.askQuantities, src.priceScale,
+          src.quantityScale);
+      JsonStreams.writeInstant(out, "timestamp", src.getTimestamp());
+      out.endObject();
+    }
+
+    private static void writeLevels(final JsonWriter out, final long[] prices,
+        final long[] quantities, final int priceScale, final int quantityScale) throws IOException {
+      out.beginArray();
+      for (int level = 0; level < prices.length; level++) {
+        out.beginArray();
+        out.value(ScaledMarketDepth.toPlainString(quantities[level], quantityScale));
+        out.value(ScaledMarketDepth.toPlainString(prices[level], priceScale));
+        out.endArray();
+      }
+      out.endArray();
+    }
+
+    @Override
+    public DepthUpdate read(final JsonReader in) throws IOException {
+      Exchange exchange = null;
+      AssetPair market = null;
+      UpdateType type = UpdateType.SNAPSHOT;
+      long epoch = NO_EPOCH;
+      long sequence = UNSEQUENCED;
+      List<String> bids = null;
+      List<String> asks = null;
+      Instant timestamp = null;
+
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "exchange":
+            exchange = Exchange.fromString(in.nextString());
+            break;
+          case "market":
+            market = AssetPair.fromString(in.nextString()).get();
+            break;
+          case "type":
+            type = UpdateType.fromString(in.nextString());
+            break;
+          case "epoch":
+            epoch = in.nextLong();
+            break;
+          case "sequence":
+            sequence = in.nextLong();
+            break;
+          case "bids":
+            bids = readLevels(in);
+            break;
+          case "asks":
+            asks = readLevels(in);
+            break;
+          case "timestamp":
+            timestamp = JsonStreams.nextInstant(in);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+
+      final int priceScale = ScaledMarketDepth.getPriceScale(market);
+      final int quantityScale = ScaledMarketDepth.getQuantityScale(market);
+      final int numBids = bids == null ? 0 : bids.size() / 2;
+      final long[] bidPrices = new long[numBids];
+      final long[] bidQuantities = new long[numBids];
+      parseLevels(bids, bidPrices, bidQuantities, priceScale, quantityScale);
+      final int numAsks = asks == null ? 0 : asks.size() / 2;
+      final long[] askPrices = new long[numAsks];
+      final long[] askQuantities = new long[numAsks];
+      parseLevels(asks, askPrices, askQuantities, priceScale, quantityScale);
+
+      return new DepthUpdate(exchange, market, type, epoch, sequence, priceScale, quantityScale,
+          bidPrices, bidQuantities, askPrices, askQuantities, timestamp == null ? Instant.now()
+              : timestamp);
+    }
+
+    /**
+     * The scales depend on the market, which older full depths write after their levels, so levels
+     * are kept as flattened {@code quantity, price} strings until the whole object is read.
+     */
+    private static List<String> readLevels(final JsonReader in) throws IOException {
+      final List<String> levels = new ArrayList<>();
+      in.beginArray();
+      while (in.hasNext()) {
+        in.beginArray();
+        levels.add(in.nextString());
+        levels.add(in.nextString());
+        in.endArray();
+      }
+      in.endArray();
+      return levels;
+    }
+
+    private static void parseLevels(final List<String> levels, final long[] prices,
+        final long[] quantities, final int priceScale, final int quantityScale) {
+      for (int level = 0; level < prices.length; level++) {
+        quantities[level] = ScaledMarketDepth.parseScaled(levels.get(level << 1), quantityScale);
+        prices[level] = ScaledMarketDepth.parseScaled(levels.get((level << 1) + 1), priceScale);
+      }
+    }
+  }
+
+  /**
+   * Prices are written as zigzag deltas from the previous level of the same side, so dense books
+   * cost one or two bytes per price. Levels written at a different scale than the local market
+   * scale are rescaled on read.
+   */
+  public static class DepthUpdateBinaryMarshaller implements BinaryMarshaller<DepthUpdate> {
+
+    @Override
+    public void write(final BinaryWriter out, final DepthUpdate src) {
+      out.writeInterned(src.getExchange().toString());
+      out.writeInterned(src.getMarket().toString());
+      out.writeByte(src.getType().ordinal());
+      out.writeVarLong(src.getEpoch());
+      out.writeVarLong(src.getSequence());
+      out.writeVarInt(src.priceScale);
+      out.writeVarInt(src.quantityScale);
+      writeLevels(out, src.bidPrices, src.bidQuantities);
+      writeLevels(out, src.askPrices, src.askQuantities);
+      out.writeInstant(src.getTimestamp());
+    }
+
+    private static void writeLevels(final BinaryWriter out, final long[] prices,
+        final long[] quantities) {
+      out.writeVarInt(prices.length);
+      long previousPrice = 0;
+      for (int level = 0; level < prices.length; level++) {
+        out.writeZigZag(prices[level] - previousPrice);
+        out.writeVarLong(quantities[level]);
+        previousPrice = prices[level];
+      }
+    }
+
+    @Override
+    public DepthUpdate read(final BinaryReader in) {
+      final Exchange exchange = Exchange.fromString(in.readInterned());
+      final AssetPair market = AssetPair.fromString(in.readInterned()).get();
+      final UpdateType type = UpdateType.values()[in.readByte()];
+      final long epoch = in.readVarLong();
+      final long sequence = in.readVarLong();
+      final int writtenPriceScale = in.readVarInt();
+      final int writtenQuantityScale = in.readVarInt();
+      final int priceScale = ScaledMarketDepth.getPriceScale(market);
+      final int quantityScale = ScaledMarketDepth.getQuantityScale(market);
+
+      // Each level takes at least a byte for its price and one for its quantity.
+      final int numBids = in.readLength(2);
+      final long[] bidPrices = new long[numBids];
+      final long[] bidQuantities = new long[numBids];
+      readLevels(in, bidPrices, bidQuantities);
+      final int numAsks = in.readLength(2);
+      final long[] askPrices = new long[numAsks];
+      final long[] askQuantities = new long[numAsks];
+      readLevels(in, askPrices, askQuantities);
+
+      rescale(bidPrices, writtenPriceScale, priceScale);
+      rescale(askPrices, writtenPriceScale, priceScale);
+      rescale(bidQuantities, writtenQuantityScale, quantityScale);
+      rescale(askQuantities, writtenQuantityScale, quantityScale);
+
+      return new DepthUpdate(exchange, market, type, epoch, sequence, priceScale, quantityScale,
+          bidPrices, bidQuantities, askPrices, askQuantities, in.readInstant());
+    }
+
+    private static void readLevels(final BinaryReader in, final long[] prices,
+        final long[] quantities) {
+      long previousPrice = 0;
+      for (int level = 0; level < prices.length; level++) {
+        previousPrice += in.readZigZag();
+        prices[level] = previousPrice;
+        quantities[level] = in.readVarLong();
+      }
+    }
+
+    private static void rescale(final long[] values, final int fromScale, final int toScale) {
+      if (fromScale == toScale)
+        return;
+      for (int i = 0; i < values.length; i++) {
+        values[i] = ScaledMarketDepth.toScaled(BigDecimal.valueOf(values[i], fromScale), toScale);
+      }
+    }
+  }
+}
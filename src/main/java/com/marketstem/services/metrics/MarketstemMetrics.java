@@ -0,0 +1,22 @@
+package com.marketstem.services.metrics;
+
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Metrics of the background services, which run outside of the rest application's registry.
+ */
+public enum MarketstemMetrics {
+
+  MARKETSTEM;
+
+  private final MetricRegistry registry = new MetricRegistry();
+
+  private MarketstemMetrics() {
+    JmxReporter.forRegistry(registry).inDomain(name().toLowerCase()).build().start();
+  }
+
+  public MetricRegistry getRegistry() {
+    return registry;
+  }
+}
@@ -7,11 +7,14 @@ import com.fabahaba.dropwizard.healthchecks.RunscopeHealthCheck;
 import com.fabahaba.fava.system.HostUtils;
 import com.fabahaba.runscope.client.RunscopeClient;
 import com.google.common.util.concurrent.RateLimiter;
+import com.marketstem.services.rest.filters.RevalidateFilter;
 import com.marketstem.services.rest.resources.AggregateTickerResource;
 import com.marketstem.services.rest.resources.AssetsResource;
 import com.marketstem.services.rest.resources.ExchangeResource;
 import com.marketstem.services.rest.resources.ExchangesResource;
 import com.marketstem.services.rest.resources.MarketsResource;
+import com.marketstem.services.rest.stream.MarketStreamHub;
+import com.marketstem.services.rest.stream.MarketStreamServlet;
 import com.marketstem.services.rest.testing.RunscopeClients;
 
 import org.eclipse.jetty.servlets.CrossOriginFilter;
@@ -24,6 +27,7 @@ import io.dropwizard.setup.Environment;
 
 import javax.servlet.DispatcherType;
 import javax.servlet.FilterRegistration;
+import javax.servlet.ServletRegistration;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
@@ -42,6 +46,7 @@ public class MarketstemApplication extends Application<MarketstemConfiguration>
 
     registerResources(environment.jersey());
     registerProviders(environment.jersey());
+    registerStreamServlet(environment);
     registerHealthChecks(environment);
 
     JmxReporter.forRegistry(environment.metrics()).build().start();
@@ -78,6 +83,15 @@ public class MarketstemApplication extends Application<MarketstemConfiguration>
 
   private void registerProviders(final JerseyEnvironment environment) {
     environment.register(FormProvider.class);
+    environment.register(RevalidateFilter.class);
+  }
+
+  private void registerStreamServlet(final Environment environment) {
+    final ServletRegistration.Dynamic stream =
+        environment.servlets().addServlet("stream", new MarketStreamServlet());
+    stream.setAsyncSupported(true);
+    stream.addMapping("/api/stream");
+    MarketStreamHub.MARKETSTEM.start();
   }
 
   private void configureCrossOriginFilter(final Environment environment, final String urlPattern) {
@@ -85,6 +99,8 @@ public class MarketstemApplication extends Application<MarketstemConfiguration>
     final FilterRegistration.Dynamic filter =
         environment.servlets().addFilter("CORS", CrossOriginFilter.class);
     filter.addMappingForUrlPatterns(EnumSet.allOf(DispatcherType.class), true, urlPattern);
+    // Filters in front of the async stream servlet must support async requests too.
+    filter.setAsyncSupported(true);
     filter.setInitParameter("allowedOrigins", "*");
     filter
         .setInitParameter("allowedHeaders",
@@ -0,0 +1,26 @@
+package com.marketstem.services.rest.filters;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Market data changes every few seconds, so responses carrying an ETag must be revalidated with
+ * If-None-Match instead of being reused by clients or proxies on their own heuristics.
+ */
+@Provider
+public class RevalidateFilter implements ContainerResponseFilter {
+
+  private static final String NO_CACHE = "no-cache";
+
+  @Override
+  public void filter(final ContainerRequestContext request,
+      final ContainerResponseContext response) {
+    if (response.getHeaderString(HttpHeaders.ETAG) != null
+        && response.getHeaderString(HttpHeaders.CACHE_CONTROL) == null) {
+      response.getHeaders().putSingle(HttpHeaders.CACHE_CONTROL, NO_CACHE);
+    }
+  }
+}
@@ -5,18 +5,24 @@ import com.fabahaba.dropwizard.utils.QueryParamUtils;
 import com.fabahaba.jedipus.cache.RedisHashCache;
 import com.google.common.base.Optional;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
 import com.marketstem.exchanges.data.AssetPair;
 import com.marketstem.services.cache.RedisHashCaches;
 import com.marketstem.services.marketdata.aggregation.data.AggregateTickerSnapshot;
 import com.marketstem.services.marketdata.aggregation.data.AggregateTickerSnapshot.AggregateTickerSnapshotMarshaller;
+import com.marketstem.services.rest.util.ConditionalGetUtils;
 import com.marketstem.services.rest.util.NewRelicUtils;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -42,7 +48,8 @@ public class AggregateTickerResource {
   @GET
   @Path("ticker")
   @Timed
-  public String aggregateTicker(@QueryParam("markets") final Optional<String> assetPairsCommaList) {
+  public Response aggregateTicker(@QueryParam("markets") final Optional<String> assetPairsCommaList,
+      @Context final Request request) {
     NewRelicUtils.addOptionalCustomStringParameter("markets", assetPairsCommaList);
 
     final List<AggregateTickerSnapshot> aggregateTickers =
@@ -50,7 +57,23 @@ public class AggregateTickerResource {
             .map(AggregateTickerResource::getAggregateTicker).filter(java.util.Optional::isPresent)
             .map(java.util.Optional::get).collect(Collectors.toList());
 
-    return AGGREGATE_TICKER_MARSHALLER.toJsonArray(aggregateTickers).toString();
+    return ConditionalGetUtils.respond(request, getVersion(aggregateTickers),
+        () -> AGGREGATE_TICKER_MARSHALLER.toJsonArray(aggregateTickers).toString());
+  }
+
+  /**
+   * Snapshots are immutable and timestamped, so their markets and timestamps version the response.
+   * Combined independently of order because the markets are collected into a set.
+   */
+  private static long getVersion(final List<AggregateTickerSnapshot> aggregateTickers) {
+    long version = aggregateTickers.size();
+    for (final AggregateTickerSnapshot aggregateTicker : aggregateTickers) {
+      version +=
+          Hashing.murmur3_128().newHasher()
+              .putString(aggregateTicker.getMarket().toString(), StandardCharsets.UTF_8)
+              .putLong(aggregateTicker.getTimestamp().toEpochMilli()).hash().asLong();
+    }
+    return version;
   }
 
   public Collection<AssetPair> assetPairsFromParamList(final Optional<String> assetPairsCommaList) {
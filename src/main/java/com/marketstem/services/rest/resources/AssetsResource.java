@@ -7,29 +7,45 @@ import com.fabahaba.fava.logging.Loggable;
 import com.google.common.base.Optional;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.gson.JsonParseException;
 import com.marketstem.exchanges.Exchange;
 import com.marketstem.exchanges.data.Asset;
 import com.marketstem.exchanges.data.Asset.AssetMarshaller;
 import com.marketstem.exchanges.data.AssetPair;
 import com.marketstem.exchanges.data.AssetSymbol;
+import com.marketstem.serialization.EncodedPayload;
+import com.marketstem.serialization.Marshalling;
 import com.marketstem.services.marketdata.aggregation.AssetConverter;
 import com.marketstem.services.marketdata.aggregation.data.ConversionRate;
+import com.marketstem.services.rest.util.ContentEncodingUtils;
 import com.marketstem.services.rest.util.NewRelicUtils;
 
+import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Path("/api/assets")
 @Produces(MediaType.APPLICATION_JSON)
@@ -37,14 +53,15 @@ public class AssetsResource implements Loggable {
 
   private static final AssetMarshaller ASSET_MARSHALLER = new AssetMarshaller();
 
-  private static final LoadingCache<String, String> ASSETS_CACHE = CacheBuilder.newBuilder()
+  private static final LoadingCache<String, EncodedPayload> ASSETS_CACHE = CacheBuilder
+      .newBuilder()
       .refreshAfterWrite(15, TimeUnit.MINUTES).expireAfterWrite(6, TimeUnit.HOURS)
       .build(AsyncCacheLoader.create(dummyKey -> {
         final Set<Asset> assets = Sets.newHashSet();
         for (final Exchange exchange : Exchange.values()) {
           assets.addAll(exchange.getData().getCachedAssets());
         }
-        return ASSET_MARSHALLER.toJsonArray(assets).toString();
+        return EncodedPayload.precompressed(ASSET_MARSHALLER.toJsonArray(assets).toString());
       }, true));
 
   private static final LoadingCache<AssetPair, java.util.Optional<ConversionRate>> CONVERSION_CACHE =
@@ -58,8 +75,9 @@ public class AssetsResource implements Loggable {
 
   @GET
   @Timed
-  public String assets() {
-    return AssetsResource.ASSETS_CACHE.getUnchecked("assets");
+  public Response assets(@HeaderParam(HttpHeaders.ACCEPT_ENCODING) final String acceptEncoding) {
+    return ContentEncodingUtils.respond(acceptEncoding,
+        AssetsResource.ASSETS_CACHE.getUnchecked("assets"));
   }
 
   @GET
@@ -100,4 +118,143 @@ public class AssetsResource implements Loggable {
 
     return convertedAmounts;
   }
+
+  /**
+   * Body of a batch conversion, e.g.
+   * {@code {"amounts":{"BTC":["1.5","0.2"],"LTC":["40"]},"to":["USD","EUR"]}}.
+   */
+  public static class BatchConversion {
+
+    private Map<String, List<BigDecimal>> amounts;
+    private List<String> to;
+  }
+
+  /**
+   * A {@link BatchConversion} whose assets are all known.
+   */
+  static class ResolvedBatchConversion {
+
+    private final Map<Asset, List<BigDecimal>> amounts = new LinkedHashMap<>();
+    private final Set<Asset> toAssets = new LinkedHashSet<>();
+
+    Map<Asset, List<BigDecimal>> getAmounts() {
+      return amounts;
+    }
+
+    Set<Asset> getToAssets() {
+      return toAssets;
+    }
+  }
+
+  static class InvalidBatchConversionException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+    private final Status status;
+
+    private InvalidBatchConversionException(final Status status, final String message) {
+      super(message);
+      this.status = status;
+    }
+
+    Status getStatus() {
+      return status;
+    }
+  }
+
+  static final int MAX_BATCH_ASSETS = 1_000;
+  static final int MAX_BATCH_CONVERSIONS = 100_000;
+
+  /**
+   * @return converted amounts by source then target asset, {@code -1} where no rate is known. A
+   *         malformed batch or unknown assets are a 400, a batch over the caps a 413.
+   */
+  @POST
+  @Path("convert")
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Timed
+  public Response convertAll(final String batchConversionJson) {
+    final ResolvedBatchConversion batch;
+    try {
+      batch = resolve(batchConversionJson);
+    } catch (final InvalidBatchConversionException e) {
+      warn("Rejected batch conversion: " + e.getMessage());
+      return Response.status(e.getStatus())
+          .entity(Marshalling.BASE_GSON.toJson(ImmutableMap.of("error", e.getMessage()))).build();
+    }
+
+    final Map<String, Map<String, List<String>>> convertedAmounts = new LinkedHashMap<>();
+    AssetConverter.getInstance().convertAll(batch.getAmounts(), batch.getToAssets()).forEach(
+        (fromAsset, fromConvertedAmounts) -> {
+          final Map<String, List<String>> formattedAmounts = new LinkedHashMap<>();
+          fromConvertedAmounts.forEach((toAsset, toAmounts) -> formattedAmounts.put(toAsset
+              .toString(), toAmounts.stream()
+              .map(toAmount -> toAmount.map(toAsset::setScale).orElse(BigDecimal.ONE.negate())
+                  .stripTrailingZeros().toPlainString()).collect(Collectors.toList())));
+          convertedAmounts.put(fromAsset.toString(), formattedAmounts);
+        });
+    return Response.ok(Marshalling.BASE_GSON.toJson(convertedAmounts)).build();
+  }
+
+  /**
+   * Checks the caps before looking up any asset, and only looks up known assets, so a hostile
+   * batch can neither grow the known assets nor start conversion searches for made up ones.
+   */
+  static ResolvedBatchConversion resolve(final String batchConversionJson) {
+    final BatchConversion batchConversion;
+    try {
+      batchConversion = Marshalling.BASE_GSON.fromJson(batchConversionJson, BatchConversion.class);
+    } catch (final JsonParseException e) {
+      throw new InvalidBatchConversionException(Status.BAD_REQUEST, "Malformed json: "
+          + e.getMessage());
+    }
+    if (batchConversion == null || batchConversion.amounts == null || batchConversion.to == null)
+      throw new InvalidBatchConversionException(Status.BAD_REQUEST,
+          "Expected both \"amounts\" and \"to\".");
+
+    final int numAssets = Math.max(batchConversion.amounts.size(), batchConversion.to.size());
+    if (numAssets > MAX_BATCH_ASSETS)
+      throw new InvalidBatchConversionException(Status.REQUEST_ENTITY_TOO_LARGE, numAssets
+          + " assets exceed the limit of " + MAX_BATCH_ASSETS + ".");
+    long numAmounts = 0;
+    for (final List<BigDecimal> fromAmounts : batchConversion.amounts.values()) {
+      if (fromAmounts == null || fromAmounts.contains(null))
+        throw new InvalidBatchConversionException(Status.BAD_REQUEST, "Missing amounts.");
+      numAmounts += fromAmounts.size();
+    }
+    final long numConversions = numAmounts * batchConversion.to.size();
+    NewRelicUtils.addCustomParameter("conversions", numConversions);
+    if (numConversions > MAX_BATCH_CONVERSIONS)
+      throw new InvalidBatchConversionException(Status.REQUEST_ENTITY_TOO_LARGE, numConversions
+          + " conversions exceed the limit of " + MAX_BATCH_CONVERSIONS + ".");
+
+    final ResolvedBatchConversion batch = new ResolvedBatchConversion();
+    final Set<String> unknownAssets = new LinkedHashSet<>();
+    for (final Map.Entry<String, List<BigDecimal>> fromAmounts : batchConversion.amounts
+        .entrySet()) {
+      final java.util.Optional<Asset> asset = resolveAsset(fromAmounts.getKey());
+      if (asset.isPresent()) {
+        // Aliases or cases of the same asset, e.g. "xbt" and "BTC", convert all of their amounts.
+        batch.amounts.computeIfAbsent(asset.get(), from -> new ArrayList<>())
+            .addAll(fromAmounts.getValue());
+      } else {
+        unknownAssets.add(fromAmounts.getKey());
+      }
+    }
+    for (final String toAsset : batchConversion.to) {
+      final java.util.Optional<Asset> asset = resolveAsset(toAsset);
+      if (asset.isPresent()) {
+        batch.toAssets.add(asset.get());
+      } else {
+        unknownAssets.add(toAsset);
+      }
+    }
+    if (!unknownAssets.isEmpty())
+      throw new InvalidBatchConversionException(Status.BAD_REQUEST, "Unknown assets "
+          + unknownAssets + ".");
+    return batch;
+  }
+
+  private static java.util.Optional<Asset> resolveAsset(final String assetString) {
+    return assetString == null ? java.util.Optional.empty() : Asset.fromKnownString(assetString);
+  }
 }
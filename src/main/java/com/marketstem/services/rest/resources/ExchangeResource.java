@@ -8,65 +8,70 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import com.marketstem.exchanges.Exchange;
-import com.marketstem.exchanges.data.Asset;
-import com.marketstem.exchanges.data.Asset.AssetMarshaller;
+import com.marketstem.exchanges.ExchangeData;
+import com.marketstem.exchanges.SerializedJsonArray;
 import com.marketstem.exchanges.data.AssetPair;
-import com.marketstem.exchanges.data.AssetPair.AssetPairMarshaller;
-import com.marketstem.exchanges.data.PublicLimitOrder;
-import com.marketstem.exchanges.data.PublicLimitOrder.PublicLimitOrderSerializer;
-import com.marketstem.exchanges.data.Ticker;
-import com.marketstem.exchanges.data.Ticker.TickerMarshaller;
-import com.marketstem.serialization.Marshalling;
+import com.marketstem.services.rest.util.ConditionalGetUtils;
+import com.marketstem.services.rest.util.ContentEncodingUtils;
 import com.marketstem.services.rest.util.NewRelicUtils;
 
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import java.util.Collection;
-import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Path("/api/{exchange}")
 @Produces(MediaType.APPLICATION_JSON)
 public class ExchangeResource implements Loggable {
 
-  public static final Gson GSON = Marshalling.BASE_GSON_BUILDER
-      .registerTypeAdapter(PublicLimitOrder.class, new PublicLimitOrderSerializer())
-      .registerTypeAdapter(Asset.class, new AssetMarshaller())
-      .registerTypeAdapter(AssetPair.class, new AssetPairMarshaller())
-      .registerTypeAdapter(Ticker.class, new TickerMarshaller()).create();
+  public static final Gson GSON = ExchangeData.RESPONSE_GSON;
 
   private static final String EMPTY_RESPONSE = "[]";
 
-  private String getExchangeMarketDepths(final Exchange exchange,
-      final Collection<AssetPair> assetPairs) {
-
-    final String redisJson =
-        assetPairs
-            .stream()
-            .map(
-                assetPair -> exchange.getData().getCachedMarketDepth(assetPair).map(GSON::toJson)
-                    .orElse(null)).filter(Objects::nonNull).collect(Collectors.joining(","));
+  /**
+   * Without a markets param the exchange's precomputed array of all markets is written.
+   */
+  private SerializedJsonArray getExchangeMarketDepths(final Exchange exchange,
+      final Optional<String> assetPairsCommaList) {
+    if (QueryParamUtils.cleanStringListParam(assetPairsCommaList).isEmpty())
+      return exchange.getData().getAllCachedMarketDepthsJson();
 
-    return "[" + redisJson + "]";
+    return exchange.getData().getCachedMarketDepthsJson(
+        assetPairsFromParamList(exchange, assetPairsCommaList));
   }
 
-  private String
-      getExchangeTickers(final Exchange exchange, final Collection<AssetPair> assetPairs) {
+  private SerializedJsonArray getExchangeTickers(final Exchange exchange,
+      final Optional<String> assetPairsCommaList) {
+    if (QueryParamUtils.cleanStringListParam(assetPairsCommaList).isEmpty())
+      return exchange.getData().getAllCachedTickersJson();
 
-    final String redisJson =
-        assetPairs
-            .stream()
-            .map(
-                assetPair -> exchange.getData().getCachedTicker(assetPair).map(GSON::toJson)
-                    .orElse(null)).filter(Objects::nonNull).collect(Collectors.joining(","));
+    return exchange.getData().getCachedTickersJson(
+        assetPairsFromParamList(exchange, assetPairsCommaList));
+  }
 
-    return "[" + redisJson + "]";
+  /**
+   * Pre-assembled arrays are sent gzipped to clients that accept it.
+   */
+  private static Response respond(final Request request, final String acceptEncoding,
+      final SerializedJsonArray json) {
+    if (json.getPayload().isPresent() && ContentEncodingUtils.acceptsGzip(acceptEncoding)
+        && json.getPayload().get().getGzip().isPresent())
+      return ConditionalGetUtils.respond(request, json.getVersion(), ContentEncodingUtils.GZIP,
+          () -> ContentEncodingUtils.ok(acceptEncoding, json.getPayload().get()));
+
+    return ConditionalGetUtils.respond(request, json.getVersion(),
+        () -> (StreamingOutput) json::writeTo);
   }
 
   public Collection<AssetPair> assetPairsFromParamList(final Exchange exchange,
@@ -88,8 +93,10 @@ public class ExchangeResource implements Loggable {
   @GET
   @Path("depth")
   @Timed
-  public String depth(@PathParam("exchange") final String exchangeString,
-      @QueryParam("markets") final Optional<String> assetPairsCommaList) {
+  public Response depth(@PathParam("exchange") final String exchangeString,
+      @QueryParam("markets") final Optional<String> assetPairsCommaList,
+      @HeaderParam(HttpHeaders.ACCEPT_ENCODING) final String acceptEncoding,
+      @Context final Request request) {
 
     NewRelicUtils.addCustomParameter("exchange", exchangeString);
     NewRelicUtils.addOptionalCustomStringParameter("markets", assetPairsCommaList);
@@ -98,22 +105,24 @@ public class ExchangeResource implements Loggable {
       final Exchange exchange = Exchange.fromString(exchangeString);
 
       if (exchange == null)
-        return EMPTY_RESPONSE;
+        return Response.ok(EMPTY_RESPONSE).build();
 
-      return getExchangeMarketDepths(exchange,
-          assetPairsFromParamList(exchange, assetPairsCommaList));
+      return respond(request, acceptEncoding,
+          getExchangeMarketDepths(exchange, assetPairsCommaList));
     } catch (final Exception e) {
       catching(e);
     }
 
-    return EMPTY_RESPONSE;
+    return Response.ok(EMPTY_RESPONSE).build();
   }
 
   @GET
   @Path("ticker")
   @Timed
-  public String ticker(@PathParam("exchange") final String exchangeString,
-      @QueryParam("markets") final Optional<String> assetPairsCommaList) {
+  public Response ticker(@PathParam("exchange") final String exchangeString,
+      @QueryParam("markets") final Optional<String> assetPairsCommaList,
+      @HeaderParam(HttpHeaders.ACCEPT_ENCODING) final String acceptEncoding,
+      @Context final Request request) {
 
     NewRelicUtils.addCustomParameter("exchange", exchangeString);
     NewRelicUtils.addOptionalCustomStringParameter("markets", assetPairsCommaList);
@@ -122,13 +131,13 @@ public class ExchangeResource implements Loggable {
       final Exchange exchange = Exchange.fromString(exchangeString);
 
       if (exchange == null)
-        return EMPTY_RESPONSE;
+        return Response.ok(EMPTY_RESPONSE).build();
 
-      return getExchangeTickers(exchange, assetPairsFromParamList(exchange, assetPairsCommaList));
+      return respond(request, acceptEncoding, getExchangeTickers(exchange, assetPairsCommaList));
     } catch (final Exception e) {
       catching(e);
     }
 
-    return EMPTY_RESPONSE;
+    return Response.ok(EMPTY_RESPONSE).build();
   }
 }
@@ -14,13 +14,18 @@ import com.marketstem.exchanges.Exchange;
 import com.marketstem.exchanges.ExchangeClient;
 import com.marketstem.exchanges.data.Asset;
 import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.serialization.EncodedPayload;
+import com.marketstem.services.rest.util.ContentEncodingUtils;
 import com.marketstem.services.rest.util.NewRelicUtils;
 
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 import java.util.Arrays;
 import java.util.Collection;
@@ -91,13 +96,15 @@ public class ExchangesResource implements Loggable {
         return Maps.newHashMap();
       };
 
-  private static final LoadingCache<String, String> ASSETS_CACHE = CacheBuilder.newBuilder()
-      .refreshAfterWrite(15, TimeUnit.MINUTES).expireAfterWrite(6, TimeUnit.HOURS)
-      .build(AsyncCacheLoader.create(ExchangesResource.GET_ASSETS, true));
+  private static final LoadingCache<String, EncodedPayload> ASSETS_CACHE = CacheBuilder
+      .newBuilder().refreshAfterWrite(15, TimeUnit.MINUTES).expireAfterWrite(6, TimeUnit.HOURS)
+      .build(AsyncCacheLoader.create(
+          ExchangesResource.GET_ASSETS.andThen(EncodedPayload::precompressed), true));
 
-  private static final LoadingCache<String, String> MARKETS_CACHE = CacheBuilder.newBuilder()
-      .refreshAfterWrite(15, TimeUnit.MINUTES).expireAfterWrite(6, TimeUnit.HOURS)
-      .build(AsyncCacheLoader.create(ExchangesResource.GET_MARKETS, true));
+  private static final LoadingCache<String, EncodedPayload> MARKETS_CACHE = CacheBuilder
+      .newBuilder().refreshAfterWrite(15, TimeUnit.MINUTES).expireAfterWrite(6, TimeUnit.HOURS)
+      .build(AsyncCacheLoader.create(
+          ExchangesResource.GET_MARKETS.andThen(EncodedPayload::precompressed), true));
 
   private static final LoadingCache<String, Map<Exchange, ImmutableBiMap<String, String>>> ALIASES_CACHE =
       CacheBuilder.newBuilder().refreshAfterWrite(15, TimeUnit.MINUTES)
@@ -118,23 +125,25 @@ public class ExchangesResource implements Loggable {
   @GET
   @Path("assets")
   @Timed
-  public String assets(@QueryParam("exchanges") final Optional<String> exchangesStrings) {
+  public Response assets(@QueryParam("exchanges") final Optional<String> exchangesStrings,
+      @HeaderParam(HttpHeaders.ACCEPT_ENCODING) final String acceptEncoding) {
 
     NewRelicUtils.addOptionalCustomStringParameter("exchanges", exchangesStrings);
 
-    return ExchangesResource.ASSETS_CACHE.getUnchecked(QueryParamUtils
-        .cleanStringListParam(exchangesStrings));
+    return ContentEncodingUtils.respond(acceptEncoding, ExchangesResource.ASSETS_CACHE
+        .getUnchecked(QueryParamUtils.cleanStringListParam(exchangesStrings)));
   }
 
   @GET
   @Path("markets")
   @Timed
-  public String markets(@QueryParam("exchanges") final Optional<String> exchangesStrings) {
+  public Response markets(@QueryParam("exchanges") final Optional<String> exchangesStrings,
+      @HeaderParam(HttpHeaders.ACCEPT_ENCODING) final String acceptEncoding) {
 
     NewRelicUtils.addOptionalCustomStringParameter("exchanges", exchangesStrings);
 
-    return ExchangesResource.MARKETS_CACHE.getUnchecked(QueryParamUtils
-        .cleanStringListParam(exchangesStrings));
+    return ContentEncodingUtils.respond(acceptEncoding, ExchangesResource.MARKETS_CACHE
+        .getUnchecked(QueryParamUtils.cleanStringListParam(exchangesStrings)));
   }
 
   @GET
@@ -8,11 +8,16 @@ import com.google.common.collect.Sets;
 import com.marketstem.exchanges.Exchange;
 import com.marketstem.exchanges.data.AssetPair;
 import com.marketstem.exchanges.data.AssetPair.AssetPairMarshaller;
+import com.marketstem.serialization.EncodedPayload;
+import com.marketstem.services.rest.util.ContentEncodingUtils;
 
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -23,19 +28,22 @@ public class MarketsResource {
 
   private static final AssetPairMarshaller ASSET_PAIR_MARSHALLER = new AssetPairMarshaller();
 
-  private static final LoadingCache<String, String> MARKETS_CACHE = CacheBuilder.newBuilder()
+  private static final LoadingCache<String, EncodedPayload> MARKETS_CACHE = CacheBuilder
+      .newBuilder()
       .refreshAfterWrite(15, TimeUnit.MINUTES).expireAfterWrite(6, TimeUnit.HOURS)
       .build(AsyncCacheLoader.create(dummyKey -> {
         final Set<AssetPair> assetPairs = Sets.newHashSet();
         for (final Exchange exchange : Exchange.values()) {
           exchange.getData().getCachedAssetPairs().ifPresent(assetPairs::addAll);
         }
-        return ASSET_PAIR_MARSHALLER.toJsonArray(assetPairs).toString();
+        return EncodedPayload.precompressed(ASSET_PAIR_MARSHALLER.toJsonArray(assetPairs)
+            .toString());
       }, true));
 
   @GET
   @Timed
-  public String markets() {
-    return MarketsResource.MARKETS_CACHE.getUnchecked("markets");
+  public Response markets(@HeaderParam(HttpHeaders.ACCEPT_ENCODING) final String acceptEncoding) {
+    return ContentEncodingUtils.respond(acceptEncoding,
+        MarketsResource.MARKETS_CACHE.getUnchecked("markets"));
   }
 }
@@ -0,0 +1,180 @@
+package com.marketstem.services.rest.stream;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.fabahaba.fava.logging.Loggable;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.ExchangeData;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.exchanges.data.Ticker;
+import com.marketstem.services.cache.MarketDataCacheService;
+import com.marketstem.services.marketdata.ExchangeDepthService;
+import com.marketstem.services.marketdata.ExchangeTickerService;
+import com.marketstem.services.marketdata.aggregation.AggregateTickerService;
+import com.marketstem.services.marketdata.aggregation.data.AggregateTickerSnapshot;
+import com.marketstem.services.marketdata.aggregation.data.AggregateTickerSnapshot.AggregateTickerSnapshotMarshaller;
+import com.marketstem.services.marketdata.depth.DepthBookApplier;
+import com.marketstem.services.marketdata.depth.data.DepthUpdate;
+import com.marketstem.services.metrics.MarketstemMetrics;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Fans the tickers, depths and aggregate tickers consumed from kafka out to every connected
+ * {@link StreamClient}. An update is serialized once, as a server-sent event, and only if a client
+ * subscribed to it. Depth deltas are applied here so clients always receive full books, which lets
+ * a client that falls behind simply skip to the latest book of each market.
+ */
+public enum MarketStreamHub implements Loggable {
+
+  MARKETSTEM;
+
+  public static final String TICKER = "ticker";
+  public static final String DEPTH = "depth";
+  public static final String AGGREGATE_TICKER = "aggregate_ticker";
+  public static final Set<String> EVENT_TYPES = ImmutableSet.of(TICKER, DEPTH, AGGREGATE_TICKER);
+
+  private static final String HEARTBEAT_KEY = "heartbeat";
+  private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+  private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+  private static final Duration MAX_STALL = Duration.ofMinutes(1);
+  private static final AggregateTickerSnapshotMarshaller AGGREGATE_TICKER_MARSHALLER =
+      new AggregateTickerSnapshotMarshaller();
+
+  private final Set<StreamClient> clients = ConcurrentHashMap.newKeySet();
+  private final DepthBookApplier depthBookApplier = new DepthBookApplier();
+  private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2,
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("market-stream-%d").build());
+  private final AtomicBoolean started = new AtomicBoolean();
+  private final Meter droppedClients;
+
+  private MarketStreamHub() {
+    MarketstemMetrics.MARKETSTEM.getRegistry().register("stream.clients",
+        (Gauge<Integer>) clients::size);
+    this.droppedClients = MarketstemMetrics.MARKETSTEM.getRegistry().meter("stream.droppedClients");
+  }
+
+  public void start() {
+    if (!started.compareAndSet(false, true))
+      return;
+    MarketDataCacheService.KAFKA_CONSUMER.subscribe(MarketStreamHub.class.getSimpleName(),
+        Sets.newHashSet("tickers"), this::consumeTickers);
+    MarketDataCacheService.KAFKA_CONSUMER.subscribe(MarketStreamHub.class.getSimpleName(),
+        Sets.newHashSet("depths"), this::consumeDepths);
+    MarketDataCacheService.KAFKA_CONSUMER.subscribe(MarketStreamHub.class.getSimpleName(),
+        Sets.newHashSet("aggregate_tickers"), this::consumeAggregateTickers);
+    executor.scheduleWithFixedDelay(this::heartbeat, HEARTBEAT_INTERVAL.getSeconds(),
+        HEARTBEAT_INTERVAL.getSeconds(), TimeUnit.SECONDS);
+  }
+
+  void register(final StreamClient client) {
+    start();
+    clients.add(client);
+  }
+
+  void unregister(final StreamClient client) {
+    clients.remove(client);
+  }
+
+  void execute(final Runnable task) {
+    executor.execute(task);
+  }
+
+  private void consumeTickers(final String key, final byte[] message) {
+    try {
+      final List<Ticker> tickers = ExchangeTickerService.TICKER_CODEC.decode(message);
+      for (final Ticker ticker : tickers) {
+        if (ticker.getExchange() != null) {
+          publish(TICKER, ticker.getExchange(), ticker.getAssetPair(),
+              () -> ExchangeData.RESPONSE_GSON.toJson(ticker));
+        }
+      }
+    } catch (final Exception e) {
+      catching(e);
+    }
+  }
+
+  private void consumeDepths(final String key, final byte[] message) {
+    try {
+      final List<DepthUpdate> depthUpdates = ExchangeDepthService.DEPTH_CODEC.decode(message);
+      for (final DepthUpdate depthUpdate : depthUpdates) {
+        if (depthUpdate.getExchange() == null) {
+          continue;
+        }
+        if (depthUpdate.isSequenced()) {
+          depthBookApplier.apply(depthUpdate).ifPresent(
+              book -> publish(DEPTH, book.getExchange(), book.getMarket(),
+                  () -> ExchangeData.RESPONSE_GSON.toJson(book.toFullMarketDepth())));
+        } else {
+          depthBookApplier.invalidate(depthUpdate.getExchange(), depthUpdate.getMarket());
+          publish(DEPTH, depthUpdate.getExchange(), depthUpdate.getMarket(),
+              () -> ExchangeData.RESPONSE_GSON.toJson(depthUpdate.applyTo(null)
+                  .toFullMarketDepth()));
+        }
+      }
+    } catch (final Exception e) {
+      catching(e);
+    }
+  }
+
+  private void consumeAggregateTickers(final String key, final byte[] message) {
+    try {
+      final AggregateTickerSnapshot aggregateTicker =
+          AggregateTickerService.AGGREGATE_TICKER_CODEC.decode(message);
+      publish(AGGREGATE_TICKER, null, aggregateTicker.getMarket(),
+          () -> AGGREGATE_TICKER_MARSHALLER.serialize(aggregateTicker,
+              AggregateTickerSnapshot.class, null).toString());
+    } catch (final Exception e) {
+      catching(e);
+    }
+  }
+
+  /**
+   * @param exchange null for events that are not specific to an exchange.
+   */
+  private void publish(final String type, final Exchange exchange, final AssetPair market,
+      final Supplier<String> json) {
+    final String key = type + ":" + exchange + ":" + market;
+    byte[] event = null;
+    for (final StreamClient client : clients) {
+      if (!client.isSubscribed(type, exchange, market)) {
+        continue;
+      }
+      if (event == null) {
+        event =
+            ("event: " + type + "\ndata: " + json.get() + "\n\n").getBytes(StandardCharsets.UTF_8);
+      }
+      client.offer(key, event);
+    }
+  }
+
+  /**
+   * Keeps idle connections open through proxies and drops clients that have not accepted a write
+   * for {@link #MAX_STALL}.
+   */
+  private void heartbeat() {
+    final Instant stalledBefore = Instant.now().minus(MAX_STALL);
+    for (final StreamClient client : clients) {
+      if (client.isStalledSince(stalledBefore)) {
+        debug("Dropping stalled stream client " + client);
+        droppedClients.mark();
+        client.close();
+      } else {
+        client.offer(HEARTBEAT_KEY, HEARTBEAT);
+      }
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.marketstem.services.rest.stream;
+
+import com.google.common.base.Splitter;
+import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.data.AssetPair;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Server-sent event stream of market data, e.g.
+ * {@code /api/stream?types=ticker,depth&exchanges=BITSTAMP&markets=BTC_USD}. Each param is an
+ * optional comma separated list and an absent param matches everything. Event types are
+ * {@code ticker}, {@code depth} and {@code aggregate_ticker}, whose data is formatted as in the
+ * corresponding rest resources. The exchanges param does not apply to aggregate tickers.
+ */
+@SuppressWarnings("serial")
+public class MarketStreamServlet extends HttpServlet {
+
+  private static final Splitter PARAM_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+  @Override
+  protected void doGet(final HttpServletRequest request, final HttpServletResponse response)
+      throws IOException {
+    final Set<String> types = new HashSet<>();
+    for (final String type : PARAM_SPLITTER.split(getParam(request, "types"))) {
+      if (!MarketStreamHub.EVENT_TYPES.contains(type)) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+        return;
+      }
+      types.add(type);
+    }
+    final Set<Exchange> exchanges = new HashSet<>();
+    for (final String exchangeString : PARAM_SPLITTER.split(getParam(request, "exchanges"))) {
+      final Exchange exchange = Exchange.fromString(exchangeString);
+      if (exchange == null) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+        return;
+      }
+      exchanges.add(exchange);
+    }
+    final Set<AssetPair> markets = new HashSet<>();
+    for (final String market : PARAM_SPLITTER.split(getParam(request, "markets"))) {
+      final Optional<AssetPair> assetPair = AssetPair.fromString(market);
+      if (!assetPair.isPresent()) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+        return;
+      }
+      markets.add(assetPair.get());
+    }
+
+    response.setContentType("text/event-stream");
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+    response.flushBuffer();
+
+    final AsyncContext asyncContext = request.startAsync();
+    asyncContext.setTimeout(0);
+    final StreamClient client =
+        new StreamClient(MarketStreamHub.MARKETSTEM, asyncContext, types, exchanges, markets);
+    asyncContext.addListener(client);
+    client.getOutput().setWriteListener(client);
+    MarketStreamHub.MARKETSTEM.register(client);
+  }
+
+  private static String getParam(final HttpServletRequest request, final String name) {
+    final String param = request.getParameter(name);
+    return param == null ? "" : param;
+  }
+}
@@ -0,0 +1,150 @@
+package com.marketstem.services.rest.stream;
+
+import com.fabahaba.fava.logging.Loggable;
+import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.data.AssetPair;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One server-sent event connection. Writes never block: events are written only while the output
+ * stream is ready, and events that can not be written yet wait keyed by type, exchange and market
+ * so a newer event for the same key replaces the older one. A slow client therefore receives the
+ * latest value of every market it subscribed to and skips the intermediate ones.
+ */
+class StreamClient implements WriteListener, AsyncListener, Loggable {
+
+  private final MarketStreamHub hub;
+  private final AsyncContext asyncContext;
+  private final ServletOutputStream output;
+  private final Set<String> types;
+  private final Set<Exchange> exchanges;
+  private final Set<AssetPair> markets;
+
+  // Guarded by this.
+  private final Map<String, byte[]> pending = new LinkedHashMap<>();
+  private boolean drainScheduled = false;
+  private boolean flushNeeded = false;
+  private boolean closed = false;
+  private Instant lastProgress = Instant.now();
+
+  /**
+   * Empty subscription sets match everything.
+   */
+  StreamClient(final MarketStreamHub hub, final AsyncContext asyncContext,
+      final Set<String> types, final Set<Exchange> exchanges, final Set<AssetPair> markets)
+      throws IOException {
+    this.hub = hub;
+    this.asyncContext = asyncContext;
+    this.output = asyncContext.getResponse().getOutputStream();
+    this.types = types;
+    this.exchanges = exchanges;
+    this.markets = markets;
+  }
+
+  ServletOutputStream getOutput() {
+    return output;
+  }
+
+  boolean isSubscribed(final String type, final Exchange exchange, final AssetPair market) {
+    return (types.isEmpty() || types.contains(type))
+        && (exchange == null || exchanges.isEmpty() || exchanges.contains(exchange))
+        && (markets.isEmpty() || markets.contains(market));
+  }
+
+  synchronized void offer(final String key, final byte[] event) {
+    if (closed)
+      return;
+    if (pending.isEmpty()) {
+      lastProgress = Instant.now();
+    }
+    pending.put(key, event);
+    if (!drainScheduled) {
+      drainScheduled = true;
+      hub.execute(this::drain);
+    }
+  }
+
+  synchronized boolean isStalledSince(final Instant instant) {
+    return !pending.isEmpty() && lastProgress.isBefore(instant);
+  }
+
+  private synchronized void drain() {
+    drainScheduled = false;
+    try {
+      write();
+    } catch (final IOException | RuntimeException e) {
+      debug("Closing stream client after write failure: " + e.getMessage());
+      close();
+    }
+  }
+
+  @Override
+  public synchronized void onWritePossible() throws IOException {
+    write();
+  }
+
+  private void write() throws IOException {
+    while (!closed && output.isReady()) {
+      final Iterator<byte[]> events = pending.values().iterator();
+      if (events.hasNext()) {
+        output.write(events.next());
+        events.remove();
+        flushNeeded = true;
+        lastProgress = Instant.now();
+      } else if (flushNeeded) {
+        flushNeeded = false;
+        output.flush();
+      } else {
+        return;
+      }
+    }
+  }
+
+  synchronized void close() {
+    if (closed)
+      return;
+    closed = true;
+    pending.clear();
+    hub.unregister(this);
+    try {
+      asyncContext.complete();
+    } catch (final IllegalStateException e) {
+      // Already completed by the container.
+    }
+  }
+
+  @Override
+  public void onError(final Throwable throwable) {
+    close();
+  }
+
+  @Override
+  public void onComplete(final AsyncEvent event) {
+    close();
+  }
+
+  @Override
+  public void onTimeout(final AsyncEvent event) {
+    close();
+  }
+
+  @Override
+  public void onError(final AsyncEvent event) {
+    close();
+  }
+
+  @Override
+  public void onStartAsync(final AsyncEvent event) {}
+}
@@ -0,0 +1,38 @@
+package com.marketstem.services.rest.util;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+
+import java.util.function.Supplier;
+
+/**
+ * Resources version the content of a request before building it, so a request whose
+ * If-None-Match matches is answered with 304 Not Modified and no body.
+ */
+public class ConditionalGetUtils {
+
+  public static Response respond(final Request request, final long version,
+      final Supplier<?> entity) {
+    return respond(request, new EntityTag(Long.toHexString(version)),
+        () -> Response.ok(entity.get()));
+  }
+
+  /**
+   * @param contentCoding of the response {@code ok} builds, so each encoding of a version gets its
+   *        own tag.
+   */
+  public static Response respond(final Request request, final long version,
+      final String contentCoding, final Supplier<ResponseBuilder> ok) {
+    return respond(request, new EntityTag(Long.toHexString(version) + "-" + contentCoding), ok);
+  }
+
+  private static Response respond(final Request request, final EntityTag entityTag,
+      final Supplier<ResponseBuilder> ok) {
+    final ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+    if (notModified != null)
+      return notModified.build();
+    return ok.get().tag(entityTag).build();
+  }
+}
@@ -0,0 +1,64 @@
+package com.marketstem.services.rest.util;
+
+import com.google.common.base.Splitter;
+import com.marketstem.serialization.EncodedPayload;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Negotiates the encoding of {@link EncodedPayload}s with the request's Accept-Encoding. Responses
+ * that already carry a Content-Encoding are left alone by the server's own gzip handling.
+ */
+public class ContentEncodingUtils {
+
+  public static final String GZIP = "gzip";
+
+  private static final Splitter CODINGS_SPLITTER = Splitter.on(',').trimResults()
+      .omitEmptyStrings();
+  private static final Splitter PARAMS_SPLITTER = Splitter.on(';').trimResults();
+
+  public static Response respond(final String acceptEncoding, final EncodedPayload payload) {
+    return ok(acceptEncoding, payload).build();
+  }
+
+  public static ResponseBuilder ok(final String acceptEncoding, final EncodedPayload payload) {
+    final Optional<byte[]> gzip =
+        acceptsGzip(acceptEncoding) ? payload.getGzip() : Optional.empty();
+    final ResponseBuilder response =
+        gzip.isPresent() ? Response.ok(gzip.get()).header(HttpHeaders.CONTENT_ENCODING, GZIP)
+            : Response.ok(payload.getRaw());
+    return response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+  }
+
+  /**
+   * @return true if gzip or {@code *} is listed without {@code q=0}.
+   */
+  public static boolean acceptsGzip(final String acceptEncoding) {
+    if (acceptEncoding == null)
+      return false;
+    for (final String coding : CODINGS_SPLITTER.split(acceptEncoding)) {
+      final List<String> params = PARAMS_SPLITTER.splitToList(coding);
+      final String name = params.get(0);
+      if (!name.equalsIgnoreCase(GZIP) && !name.equals("*")) {
+        continue;
+      }
+      return params.stream().skip(1).noneMatch(ContentEncodingUtils::isZeroQuality);
+    }
+    return false;
+  }
+
+  private static boolean isZeroQuality(final String param) {
+    if (!param.startsWith("q="))
+      return false;
+    try {
+      return Double.parseDouble(param.substring(2)) == 0;
+    } catch (final NumberFormatException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package com.marketstem.exchanges.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.data.FullMarketDepth.MarketDepthTypeAdapter;
+
+import org.junit.Test;
+
+public class FullMarketDepthTest {
+
+  private static final AssetPair MARKET = AssetPair.fromStrings("BTC", "USD");
+
+  private static FullMarketDepth depth(final String bidQuantity, final String askPrice) {
+    return FullMarketDepth.builder(Exchange.BITSTAMP, MARKET).addBid("100", bidQuantity)
+        .addBid("99.5", "2").addAsk(askPrice, "1").addAsk("102", "3").build();
+  }
+
+  @Test
+  public void sameBooksHaveSameChecksum() {
+    assertEquals(depth("1", "101").getChecksum(), depth("1", "101").getChecksum());
+  }
+
+  @Test
+  public void checksumIgnoresTrailingZeros() {
+    assertEquals(depth("1", "101").getChecksum(), depth("1.000", "101.00").getChecksum());
+  }
+
+  @Test
+  public void checksumChangesWithAnyLevel() {
+    final long checksum = depth("1", "101").getChecksum();
+    assertNotEquals(checksum, depth("1.00000001", "101").getChecksum());
+    assertNotEquals(checksum, depth("1", "101.5").getChecksum());
+  }
+
+  @Test
+  public void checksumTellsBidsFromAsks() {
+    final FullMarketDepth bid = FullMarketDepth.builder(Exchange.BITSTAMP, MARKET)
+        .addBid("100", "1").build();
+    final FullMarketDepth ask = FullMarketDepth.builder(Exchange.BITSTAMP, MARKET)
+        .addAsk("100", "1").build();
+    assertNotEquals(bid.getChecksum(), ask.getChecksum());
+  }
+
+  @Test
+  public void deserializedDepthHasSameChecksum() {
+    final Gson gson = new GsonBuilder().registerTypeAdapter(FullMarketDepth.class,
+        new MarketDepthTypeAdapter()).create();
+    final FullMarketDepth depth = depth("1", "101");
+    assertEquals(depth.getChecksum(),
+        gson.fromJson(gson.toJson(depth), FullMarketDepth.class).getChecksum());
+  }
+
+  @Test
+  public void scaledBookHasSameChecksum() {
+    final FullMarketDepth depth = depth("1", "101");
+    assertEquals(depth.getChecksum(),
+        ScaledMarketDepth.fromFullMarketDepth(depth).toFullMarketDepth().getChecksum());
+  }
+}
@@ -0,0 +1,107 @@
+package com.marketstem.exchanges.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.marketstem.exchanges.Exchange;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.stream.IntStream;
+
+public class ScaledMarketDepthTest {
+
+  private static final AssetPair MARKET = AssetPair.fromStrings("BTC", "USD");
+  private static final int SCALE = 8;
+
+  private static long scaled(final String value) {
+    return ScaledMarketDepth.toScaled(new BigDecimal(value), SCALE);
+  }
+
+  private static long[] levels(final String... values) {
+    final long[] scaled = new long[values.length];
+    for (int i = 0; i < values.length; i++) {
+      scaled[i] = scaled(values[i]);
+    }
+    return scaled;
+  }
+
+  private static long[] bidPrices(final ScaledMarketDepth depth) {
+    return IntStream.range(0, depth.getNumBids()).mapToLong(depth::getBidPrice).toArray();
+  }
+
+  private static long[] bidQuantities(final ScaledMarketDepth depth) {
+    return IntStream.range(0, depth.getNumBids()).mapToLong(depth::getBidQuantity).toArray();
+  }
+
+  private static long[] askPrices(final ScaledMarketDepth depth) {
+    return IntStream.range(0, depth.getNumAsks()).mapToLong(depth::getAskPrice).toArray();
+  }
+
+  private static long[] askQuantities(final ScaledMarketDepth depth) {
+    return IntStream.range(0, depth.getNumAsks()).mapToLong(depth::getAskQuantity).toArray();
+  }
+
+  @Test
+  public void sortsBidsDescendingAndAsksAscending() {
+    final ScaledMarketDepth depth = ScaledMarketDepth.builder(Exchange.BITSTAMP, MARKET)
+        .addBid("99", "1").addBid("101", "2").addBid("98.5", "3").addBid("100", "4")
+        .addBid("-1", "5").addAsk("105", "1").addAsk("102", "2").addAsk("104.25", "3")
+        .addAsk("103", "4").build();
+    assertEquals(SCALE, depth.getPriceScale());
+    assertArrayEquals(levels("101", "100", "99", "98.5", "-1"), bidPrices(depth));
+    assertArrayEquals(levels("2", "4", "1", "3", "5"), bidQuantities(depth));
+    assertArrayEquals(levels("102", "103", "104.25", "105"), askPrices(depth));
+    assertArrayEquals(levels("2", "4", "3", "1"), askQuantities(depth));
+  }
+
+  @Test
+  public void keepsLevelsThatAreAlreadySorted() {
+    final ScaledMarketDepth depth = ScaledMarketDepth.builder(Exchange.BITSTAMP, MARKET)
+        .addBid("101", "1").addBid("100", "2").addAsk("102", "3").addAsk("103", "4").build();
+    assertArrayEquals(levels("101", "100"), bidPrices(depth));
+    assertArrayEquals(levels("1", "2"), bidQuantities(depth));
+    assertArrayEquals(levels("102", "103"), askPrices(depth));
+    assertArrayEquals(levels("3", "4"), askQuantities(depth));
+  }
+
+  @Test
+  public void sumsDuplicatePricesAndDropsEmptyLevels() {
+    final ScaledMarketDepth depth = ScaledMarketDepth.builder(Exchange.BITSTAMP, MARKET)
+        .addBid("100", "1").addBid("99", "0").addBid("100.0", "0.5").addBid("98", "2")
+        .addBid("97", "1").addBid("97", "-1").addAsk("103", "-1").addAsk("102", "1")
+        .addAsk("102", "2").addAsk("104", "0").build();
+    assertArrayEquals(levels("100", "98"), bidPrices(depth));
+    assertArrayEquals(levels("1.5", "2"), bidQuantities(depth));
+    assertArrayEquals(levels("102"), askPrices(depth));
+    assertArrayEquals(levels("3"), askQuantities(depth));
+  }
+
+  @Test
+  public void parsesLikeBigDecimal() {
+    for (final String value : new String[] {"0", "1", "-1.5", "+0.00000001", "123.", ".25",
+        "000100.10", "99999999.99999999", "1e3", "-2.5E-3", "0.000000005", "0.000000015",
+        "1.123456789", "1234567890.123456789"}) {
+      assertEquals(value, scaled(value), ScaledMarketDepth.parseScaled(value, SCALE));
+    }
+  }
+
+  @Test
+  public void rejectsValuesWithoutDigits() {
+    for (final String value : new String[] {"", ".", "-", "+.", "-.", "1.2.3", "abc"}) {
+      try {
+        ScaledMarketDepth.parseScaled(value, SCALE);
+        fail("Parsed \"" + value + "\"");
+      } catch (final NumberFormatException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test(expected = ArithmeticException.class)
+  public void rejectsValuesThatOverflow() {
+    ScaledMarketDepth.parseScaled("100000000000", SCALE);
+  }
+}
@@ -0,0 +1,129 @@
+package com.marketstem.exchanges.ratelimit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.xeiam.xchange.exceptions.ExchangeException;
+import com.xeiam.xchange.exceptions.NotAvailableFromExchangeException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AdaptiveRateControllerTest {
+
+  private static final AtomicInteger CONTROLLERS = new AtomicInteger();
+  private static final double DELTA = 1e-9;
+
+  private long nanos;
+  private AdaptiveRateController controller;
+
+  @Before
+  public void setUp() {
+    nanos = 0;
+    controller = new AdaptiveRateController("test" + CONTROLLERS.incrementAndGet(),
+        factor -> {}, () -> nanos);
+  }
+
+  private void advanceMillis(final long millis) {
+    nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  private static long millis(final long millis) {
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  private static ExchangeException throttled() {
+    return new ExchangeException("HTTP status code was not OK: 429");
+  }
+
+  @Test
+  public void increasesAtMostOncePerInterval() {
+    controller.recordSuccess(millis(10));
+    assertEquals(1, controller.getFactor(), DELTA);
+    advanceMillis(AdaptiveRateController.INCREASE_INTERVAL_MILLIS);
+    controller.recordSuccess(millis(10));
+    controller.recordSuccess(millis(10));
+    assertEquals(1 + AdaptiveRateController.ADDITIVE_INCREASE, controller.getFactor(), DELTA);
+  }
+
+  @Test
+  public void halvesOnThrottlingOncePerCooldown() {
+    controller.recordFailure(throttled());
+    assertEquals(AdaptiveRateController.MULTIPLICATIVE_DECREASE, controller.getFactor(), DELTA);
+    controller.recordFailure(throttled());
+    assertEquals(AdaptiveRateController.MULTIPLICATIVE_DECREASE, controller.getFactor(), DELTA);
+    advanceMillis(AdaptiveRateController.DECREASE_COOLDOWN_MILLIS);
+    controller.recordFailure(throttled());
+    assertEquals(AdaptiveRateController.MULTIPLICATIVE_DECREASE
+        * AdaptiveRateController.MULTIPLICATIVE_DECREASE, controller.getFactor(), DELTA);
+  }
+
+  @Test
+  public void doesNotIncreaseDuringCooldown() {
+    controller.recordFailure(throttled());
+    advanceMillis(AdaptiveRateController.DECREASE_COOLDOWN_MILLIS - 1);
+    controller.recordSuccess(millis(10));
+    assertEquals(AdaptiveRateController.MULTIPLICATIVE_DECREASE, controller.getFactor(), DELTA);
+    advanceMillis(1);
+    controller.recordSuccess(millis(10));
+    assertEquals(AdaptiveRateController.MULTIPLICATIVE_DECREASE
+        + AdaptiveRateController.ADDITIVE_INCREASE, controller.getFactor(), DELTA);
+  }
+
+  @Test
+  public void neverLeavesBounds() {
+    for (int i = 0; i < 100; i++) {
+      advanceMillis(AdaptiveRateController.DECREASE_COOLDOWN_MILLIS);
+      controller.recordFailure(throttled());
+    }
+    assertEquals(AdaptiveRateController.MIN_FACTOR, controller.getFactor(), DELTA);
+    for (int i = 0; i < 1000; i++) {
+      advanceMillis(AdaptiveRateController.DECREASE_COOLDOWN_MILLIS);
+      controller.recordSuccess(millis(10));
+    }
+    assertEquals(AdaptiveRateController.MAX_FACTOR, controller.getFactor(), DELTA);
+  }
+
+  @Test
+  public void halvesOnLatencySpike() {
+    for (int i = 0; i < 10; i++) {
+      controller.recordSuccess(millis(10));
+    }
+    controller.recordSuccess(millis(10 * (long) AdaptiveRateController.LATENCY_SPIKE_RATIO + 1));
+    assertEquals(AdaptiveRateController.MULTIPLICATIVE_DECREASE, controller.getFactor(), DELTA);
+  }
+
+  @Test
+  public void bulkLatencyDoesNotSpikeSingleMarketAverage() {
+    for (int i = 0; i < 10; i++) {
+      controller.recordSuccess(millis(10));
+      controller.recordBulkSuccess(millis(1000));
+    }
+    controller.recordBulkSuccess(millis(1000));
+    controller.recordSuccess(millis(10));
+    assertEquals(1, controller.getFactor(), DELTA);
+  }
+
+  @Test
+  public void ignoresFailuresOfSingleMarkets() {
+    controller.recordFailure(new ExchangeException("Unknown market SIM0/BTC"));
+    controller.recordFailure(new NotAvailableFromExchangeException());
+    assertEquals(1, controller.getFactor(), DELTA);
+  }
+
+  @Test
+  public void backsOffOnServerSignals() {
+    assertTrue(AdaptiveRateController.isBackoffSignal(new SocketTimeoutException()));
+    assertTrue(AdaptiveRateController.isBackoffSignal(throttled()));
+    assertTrue(AdaptiveRateController.isBackoffSignal(new ExchangeException("Rate limit")));
+    assertTrue(AdaptiveRateController.isBackoffSignal(new ExchangeException("Failed")
+        .initCause(new SocketTimeoutException())));
+    assertFalse(AdaptiveRateController.isBackoffSignal(new ExchangeException("Invalid pair")));
+    assertFalse(AdaptiveRateController.isBackoffSignal(new IllegalStateException()));
+  }
+}
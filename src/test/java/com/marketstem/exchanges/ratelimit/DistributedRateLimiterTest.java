@@ -0,0 +1,56 @@
+package com.marketstem.exchanges.ratelimit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DistributedRateLimiterTest {
+
+  private static final AtomicInteger LIMITERS = new AtomicInteger();
+
+  private static DistributedRateLimiter limiter(final double permitsPerSecond,
+      final AtomicInteger leases) {
+    return new DistributedRateLimiter("test" + LIMITERS.incrementAndGet(), permitsPerSecond,
+        requested -> {
+          leases.incrementAndGet();
+          return new long[] {requested, 1};
+        });
+  }
+
+  @Test
+  public void leasesTheNextBatchWhilePermitsAreInHand() {
+    final AtomicInteger leases = new AtomicInteger();
+    // A tenth of a second of 1/s rounds to the minimum batch.
+    final DistributedRateLimiter limiter = limiter(1, leases);
+    assertFalse(limiter.tryAcquire());
+    limiter.acquire();
+    assertEquals(1, leases.get());
+    // The last permit of the batch is granted without waiting, while the next batch is leased.
+    assertTrue(limiter.tryAcquire());
+    limiter.acquire();
+    assertEquals(2, leases.get());
+  }
+
+  @Test
+  public void grantsTheRestOfABatchWithoutWaiting() {
+    final AtomicInteger leases = new AtomicInteger();
+    final DistributedRateLimiter limiter = limiter(100, leases);
+    limiter.acquire();
+    for (int i = 1; i < 10; i++) {
+      assertTrue(limiter.tryAcquire());
+    }
+    limiter.acquire();
+    assertEquals(2, leases.get());
+  }
+
+  @Test
+  public void unlimitedNeverWaits() {
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(DistributedRateLimiter.UNLIMITED.tryAcquire());
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package com.marketstem.messaging.codec;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.marketstem.serialization.BinaryMarshaller;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+public class TopicCodecTest {
+
+  private static final List<String> MESSAGE = Arrays.asList("BITSTAMP", "BTC_USD", "BITSTAMP");
+
+  @SuppressWarnings("serial")
+  private static TopicCodec<List<String>> codec(final MessageFormat format) {
+    return new TopicCodec<>("test", new Gson(), new TypeToken<List<String>>() {}.getType(),
+        BinaryMarshaller.listOf(BinaryMarshaller.interned(Function.identity())), format);
+  }
+
+  @Test
+  public void jsonRoundTrips() {
+    final TopicCodec<List<String>> codec = codec(MessageFormat.JSON);
+    final byte[] encoded = codec.encode(MESSAGE);
+    assertEquals("[\"BITSTAMP\",\"BTC_USD\",\"BITSTAMP\"]",
+        new String(encoded, StandardCharsets.UTF_8));
+    assertEquals(MessageFormat.JSON, MessageFormat.detect(encoded));
+    assertEquals(MESSAGE, codec.decode(encoded));
+  }
+
+  @Test
+  public void binaryRoundTrips() {
+    final TopicCodec<List<String>> codec = codec(MessageFormat.BINARY);
+    final byte[] encoded = codec.encode(MESSAGE);
+    assertEquals(TopicCodec.SCHEMA_VERSION, encoded[0]);
+    assertEquals(MessageFormat.BINARY, MessageFormat.detect(encoded));
+    assertEquals(MESSAGE, codec.decode(encoded));
+  }
+
+  @Test
+  public void decodesEitherFormat() {
+    final TopicCodec<List<String>> jsonCodec = codec(MessageFormat.JSON);
+    assertEquals(MESSAGE, jsonCodec.decode(codec(MessageFormat.BINARY).encode(MESSAGE)));
+    assertEquals(MESSAGE, codec(MessageFormat.BINARY).decode(jsonCodec.encode(MESSAGE)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnknownSchemaVersion() {
+    final byte[] encoded = codec(MessageFormat.BINARY).encode(MESSAGE);
+    encoded[0] = TopicCodec.SCHEMA_VERSION + 1;
+    codec(MessageFormat.BINARY).decode(encoded);
+  }
+}
@@ -0,0 +1,81 @@
+package com.marketstem.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+public class BinaryReaderTest {
+
+  @Test
+  public void readsWhatWasWritten() {
+    final Instant instant = Instant.ofEpochSecond(1234567890L, 123456789);
+    final BigDecimal large = new BigDecimal(BigInteger.ONE.shiftLeft(80), 3);
+    final BinaryWriter out = new BinaryWriter(1);
+    out.writeByte(255).writeVarInt(300).writeVarLong(Long.MAX_VALUE).writeZigZag(-12345)
+        .writeString("market").writeInterned("BTC_USD").writeInterned("BTC_USD")
+        .writeDecimal(new BigDecimal("-0.00012300")).writeDecimal(large).writeDecimal(null)
+        .writeInstant(instant).writeInstant(null).writeBytes(new byte[] {1, 2, 3});
+
+    final BinaryReader in = new BinaryReader(out.toByteArray());
+    assertEquals(255, in.readByte());
+    assertEquals(300, in.readVarInt());
+    assertEquals(Long.MAX_VALUE, in.readVarLong());
+    assertEquals(-12345, in.readZigZag());
+    assertEquals("market", in.readString());
+    assertEquals("BTC_USD", in.readInterned());
+    assertEquals("BTC_USD", in.readInterned());
+    // Trailing zeros are stripped.
+    assertEquals(new BigDecimal("-0.000123"), in.readDecimal());
+    assertEquals(large, in.readDecimal());
+    assertNull(in.readDecimal());
+    assertEquals(instant, in.readInstant());
+    assertNull(in.readInstant());
+    assertArrayEquals(new byte[] {1, 2, 3}, in.readBytes());
+    assertFalse(in.hasRemaining());
+  }
+
+  @Test
+  public void readsLengthThatFits() {
+    final byte[] bytes = new BinaryWriter().writeVarInt(2).writeByte(0).writeByte(0).toByteArray();
+    assertEquals(2, new BinaryReader(bytes).readLength(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsLengthBeyondRemainingBytes() {
+    final byte[] bytes = new BinaryWriter().writeVarInt(2).writeByte(0).writeByte(0).toByteArray();
+    new BinaryReader(bytes).readLength(2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsHugeByteArrayBeforeAllocating() {
+    new BinaryReader(new BinaryWriter().writeVarInt(Integer.MAX_VALUE).toByteArray()).readBytes();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsHugeListBeforeAllocating() {
+    final BinaryMarshaller<List<String>> marshaller =
+        BinaryMarshaller.listOf(BinaryMarshaller.interned(Function.identity()));
+    marshaller.read(new BinaryReader(new BinaryWriter().writeVarInt(Integer.MAX_VALUE)
+        .toByteArray()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsTruncatedMessage() {
+    final BinaryMarshaller<List<String>> marshaller =
+        BinaryMarshaller.listOf(BinaryMarshaller.interned(Function.identity()));
+    final BinaryWriter out = new BinaryWriter();
+    marshaller.write(out, Arrays.asList("a", "b", "c"));
+    final byte[] bytes = out.toByteArray();
+    marshaller.read(new BinaryReader(Arrays.copyOf(bytes, bytes.length - 1)));
+  }
+}
@@ -0,0 +1,96 @@
+package com.marketstem.services.marketdata.aggregation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.services.marketdata.aggregation.data.AggregateTickerSnapshot;
+import com.marketstem.services.marketdata.aggregation.data.ConversionRate;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+
+public class AssetConversionGraphTest {
+
+  private static AggregateTickerSnapshot ticker(final String tradeAsset, final String priceAsset,
+      final String rate, final String volume) {
+    final Optional<BigDecimal> price = Optional.of(new BigDecimal(rate));
+    return new AggregateTickerSnapshot(AssetPair.fromStrings(tradeAsset, priceAsset), price, price,
+        price, price, price, price, new BigDecimal(volume), ImmutableMap.of(), BigDecimal.ZERO,
+        BigDecimal.ZERO, ImmutableMap.of(), Instant.now());
+  }
+
+  private static AssetConversionGraph graph(final AggregateTickerSnapshot... tickers) {
+    return new AssetConversionGraph(Arrays.asList(tickers));
+  }
+
+  private static void assertConverts(final String expected, final AssetConversionGraph graph,
+      final String from, final String to) {
+    final AssetPair market = AssetPair.fromStrings(from, to);
+    final Optional<ConversionRate> conversionRate = graph.getConversionRate(market);
+    assertTrue("No rate for " + market, conversionRate.isPresent());
+    final BigDecimal converted =
+        conversionRate.get().convert(BigDecimal.ONE, market.getTradeAsset());
+    assertEquals(expected + " != " + converted, 0, new BigDecimal(expected).compareTo(converted));
+  }
+
+  @Test
+  public void convertsAnAssetToItself() {
+    assertConverts("1", graph(), "BTC", "BTC");
+  }
+
+  @Test
+  public void usesDirectRatesBothWays() {
+    final AssetConversionGraph graph = graph(ticker("BTC", "USD", "500", "10"));
+    assertConverts("500", graph, "BTC", "USD");
+    assertConverts("0.002", graph, "USD", "BTC");
+  }
+
+  @Test
+  public void convertsThroughAProxy() {
+    final AssetConversionGraph graph =
+        graph(ticker("LTC", "BTC", "0.01", "1000"), ticker("BTC", "USD", "500", "10"));
+    assertConverts("5", graph, "LTC", "USD");
+    assertConverts("0.2", graph, "USD", "LTC");
+  }
+
+  @Test
+  public void prefersTheShortestPath() {
+    final AssetConversionGraph graph =
+        graph(ticker("LTC", "EUR", "4", "1000000"), ticker("EUR", "GBP", "0.8", "1000000"),
+            ticker("GBP", "USD", "1.5", "1000000"), ticker("LTC", "BTC", "0.01", "1"),
+            ticker("BTC", "USD", "500", "1"));
+    assertConverts("5", graph, "LTC", "USD");
+  }
+
+  @Test
+  public void prefersTheMostLiquidPathOfEqualLength() {
+    final AssetConversionGraph graph =
+        graph(ticker("LTC", "BTC", "0.01", "1000"), ticker("BTC", "USD", "500", "10"),
+            ticker("LTC", "EUR", "4", "10"), ticker("EUR", "USD", "1.2", "10"));
+    assertConverts("5", graph, "LTC", "USD");
+  }
+
+  @Test
+  public void stopsAfterMaxHops() {
+    // A chain one market longer than MAX_HOPS.
+    final AssetConversionGraph graph =
+        graph(ticker("XDG", "PPC", "2", "1"), ticker("PPC", "NMC", "2", "1"),
+            ticker("NMC", "FTC", "2", "1"), ticker("FTC", "USD", "2", "1"));
+    assertConverts("8", graph, "XDG", "FTC");
+    assertFalse(graph.getConversionRate(AssetPair.fromStrings("XDG", "USD")).isPresent());
+  }
+
+  @Test
+  public void findsNoRateForAssetsWithoutMarkets() {
+    final AssetConversionGraph graph = graph(ticker("BTC", "USD", "500", "10"));
+    assertFalse(graph.getConversionRate(AssetPair.fromStrings("LTC", "USD")).isPresent());
+    assertFalse(graph.getConversionRate(AssetPair.fromStrings("BTC", "EUR")).isPresent());
+  }
+}
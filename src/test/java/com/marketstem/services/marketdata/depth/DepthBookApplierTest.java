@@ -0,0 +1,156 @@
+package com.marketstem.services.marketdata.depth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.exchanges.data.ScaledMarketDepth;
+import com.marketstem.services.marketdata.depth.data.DepthUpdate;
+
+import org.junit.Test;
+
+import java.util.Optional;
+
+public class DepthBookApplierTest {
+
+  private static final AssetPair MARKET = AssetPair.fromStrings("BTC", "USD");
+  private static final long EPOCH = 1000;
+
+  private static ScaledMarketDepth book(final String bidPrice, final String askPrice) {
+    return ScaledMarketDepth.builder(Exchange.BITSTAMP, MARKET).addBid(bidPrice, "1")
+        .addBid("90", "2").addAsk(askPrice, "1").addAsk("120", "2").build();
+  }
+
+  private static void assertBook(final ScaledMarketDepth expected, final ScaledMarketDepth actual) {
+    assertEquals(expected.getNumBids(), actual.getNumBids());
+    assertEquals(expected.getNumAsks(), actual.getNumAsks());
+    for (int level = 0; level < expected.getNumBids(); level++) {
+      assertEquals(expected.getBidPrice(level), actual.getBidPrice(level));
+      assertEquals(expected.getBidQuantity(level), actual.getBidQuantity(level));
+    }
+    for (int level = 0; level < expected.getNumAsks(); level++) {
+      assertEquals(expected.getAskPrice(level), actual.getAskPrice(level));
+      assertEquals(expected.getAskQuantity(level), actual.getAskQuantity(level));
+    }
+  }
+
+  @Test
+  public void appliesConsecutiveDeltas() {
+    final DepthBookApplier applier = new DepthBookApplier();
+    final ScaledMarketDepth first = book("100", "110");
+    final ScaledMarketDepth second = book("101", "110");
+    final ScaledMarketDepth third = book("101", "109");
+
+    assertBook(first, applier.apply(DepthUpdate.snapshot(first, EPOCH, 1)).get());
+    assertBook(second, applier.apply(DepthUpdate.delta(first, second, EPOCH, 2)).get());
+    assertBook(third, applier.apply(DepthUpdate.delta(second, third, EPOCH, 3)).get());
+  }
+
+  @Test
+  public void ignoresDeltaWithoutSnapshot() {
+    final DepthBookApplier applier = new DepthBookApplier();
+    assertFalse(applier.apply(
+        DepthUpdate.delta(book("100", "110"), book("101", "110"), EPOCH, 2)).isPresent());
+  }
+
+  @Test
+  public void dropsMarketAfterSequenceGap() {
+    final DepthBookApplier applier = new DepthBookApplier();
+    final ScaledMarketDepth first = book("100", "110");
+    final ScaledMarketDepth second = book("101", "110");
+    final ScaledMarketDepth third = book("101", "109");
+    applier.apply(DepthUpdate.snapshot(first, EPOCH, 1));
+
+    assertFalse(applier.apply(DepthUpdate.delta(second, third, EPOCH, 3)).isPresent());
+    // The gap dropped the book, so even the missed delta can no longer apply.
+    assertFalse(applier.apply(DepthUpdate.delta(first, second, EPOCH, 2)).isPresent());
+    assertBook(third, applier.apply(DepthUpdate.snapshot(third, EPOCH, 4)).get());
+  }
+
+  @Test
+  public void ignoresDuplicateDelta() {
+    final DepthBookApplier applier = new DepthBookApplier();
+    final ScaledMarketDepth first = book("100", "110");
+    final ScaledMarketDepth second = book("101", "110");
+    final ScaledMarketDepth third = book("101", "109");
+    applier.apply(DepthUpdate.snapshot(first, EPOCH, 1));
+    applier.apply(DepthUpdate.delta(first, second, EPOCH, 2));
+
+    assertFalse(applier.apply(DepthUpdate.delta(first, second, EPOCH, 2)).isPresent());
+    assertBook(third, applier.apply(DepthUpdate.delta(second, third, EPOCH, 3)).get());
+  }
+
+  @Test
+  public void ignoresDeltaOfOlderEpoch() {
+    final DepthBookApplier applier = new DepthBookApplier();
+    final ScaledMarketDepth first = book("100", "110");
+    final ScaledMarketDepth second = book("101", "110");
+    final ScaledMarketDepth third = book("101", "109");
+    applier.apply(DepthUpdate.snapshot(first, EPOCH + 1, 1));
+
+    // A deposed leader's next delta has the right sequence but must not apply.
+    assertFalse(applier.apply(DepthUpdate.delta(first, third, EPOCH, 2)).isPresent());
+    assertBook(second, applier.apply(DepthUpdate.delta(first, second, EPOCH + 1, 2)).get());
+  }
+
+  @Test
+  public void ignoresSnapshotOfOlderEpoch() {
+    final DepthBookApplier applier = new DepthBookApplier();
+    final ScaledMarketDepth first = book("100", "110");
+    final ScaledMarketDepth second = book("101", "110");
+    final ScaledMarketDepth stale = book("99", "111");
+    applier.apply(DepthUpdate.snapshot(first, EPOCH + 1, 1));
+
+    // A deposed leader's late snapshot must not replace the current leader's book.
+    assertFalse(applier.apply(DepthUpdate.snapshot(stale, EPOCH, 7)).isPresent());
+    assertBook(second, applier.apply(DepthUpdate.delta(first, second, EPOCH + 1, 2)).get());
+  }
+
+  @Test
+  public void dropsMarketOnDeltaOfNewerEpoch() {
+    final DepthBookApplier applier = new DepthBookApplier();
+    final ScaledMarketDepth first = book("100", "110");
+    final ScaledMarketDepth second = book("101", "110");
+    final ScaledMarketDepth third = book("101", "109");
+    applier.apply(DepthUpdate.snapshot(first, EPOCH, 1));
+
+    // The new leader's snapshot was missed, its deltas are relative to an unknown book.
+    assertFalse(applier.apply(DepthUpdate.delta(first, second, EPOCH + 1, 2)).isPresent());
+    assertFalse(applier.apply(DepthUpdate.delta(second, third, EPOCH, 2)).isPresent());
+    assertBook(third, applier.apply(DepthUpdate.snapshot(third, EPOCH + 1, 3)).get());
+  }
+
+  @Test
+  public void restartsFromSnapshotAfterReset() {
+    final DepthBookEngine engine = new DepthBookEngine(Exchange.BITSTAMP);
+    final DepthBookApplier applier = new DepthBookApplier();
+    final ScaledMarketDepth first = book("100", "110");
+    final ScaledMarketDepth second = book("101", "110");
+
+    final DepthUpdate snapshot = engine.update(first.toFullMarketDepth()).get();
+    assertTrue(snapshot.isSnapshot());
+    applier.apply(snapshot);
+    final DepthUpdate delta = engine.update(second.toFullMarketDepth()).get();
+    assertFalse(delta.isSnapshot());
+    assertEquals(snapshot.getEpoch(), delta.getEpoch());
+
+    final long epoch = engine.getEpoch();
+    engine.reset();
+    assertTrue(engine.getEpoch() > epoch);
+    final DepthUpdate restarted = engine.update(second.toFullMarketDepth()).get();
+    assertTrue(restarted.isSnapshot());
+    assertEquals(1, restarted.getSequence());
+    final Optional<ScaledMarketDepth> applied = applier.apply(restarted);
+    assertBook(second, applied.get());
+  }
+
+  @Test
+  public void skipsUnchangedBook() {
+    final DepthBookEngine engine = new DepthBookEngine(Exchange.BITSTAMP);
+    final ScaledMarketDepth first = book("100", "110");
+    engine.update(first.toFullMarketDepth());
+    assertFalse(engine.update(first.toFullMarketDepth()).isPresent());
+  }
+}
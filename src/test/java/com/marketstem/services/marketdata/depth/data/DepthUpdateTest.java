@@ -0,0 +1,97 @@
+package com.marketstem.services.marketdata.depth.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.marketstem.exchanges.Exchange;
+import com.marketstem.exchanges.data.AssetPair;
+import com.marketstem.exchanges.data.ScaledMarketDepth;
+import com.marketstem.serialization.BinaryReader;
+import com.marketstem.serialization.BinaryWriter;
+import com.marketstem.services.marketdata.depth.data.DepthUpdate.DepthUpdateBinaryMarshaller;
+import com.marketstem.services.marketdata.depth.data.DepthUpdate.DepthUpdateMarshaller;
+import com.marketstem.services.marketdata.depth.data.DepthUpdate.DepthUpdateTypeAdapter;
+
+import org.junit.Test;
+
+import java.util.function.UnaryOperator;
+
+public class DepthUpdateTest {
+
+  private static final AssetPair MARKET = AssetPair.fromStrings("BTC", "USD");
+
+  private static final ScaledMarketDepth PREVIOUS = ScaledMarketDepth
+      .builder(Exchange.BITSTAMP, MARKET).addBid("100.5", "1").addBid("99", "2")
+      .addAsk("101", "1.25").addAsk("102", "3").build();
+  private static final ScaledMarketDepth CURRENT = ScaledMarketDepth
+      .builder(Exchange.BITSTAMP, MARKET).addBid("100.75", "1").addBid("99", "2")
+      .addAsk("101", "0.5").addAsk("103", "3").build();
+
+  private static final Gson MARSHALLER_GSON = new GsonBuilder().registerTypeAdapter(
+      DepthUpdate.class, new DepthUpdateMarshaller()).create();
+  private static final Gson TYPE_ADAPTER_GSON = new GsonBuilder().registerTypeAdapter(
+      DepthUpdate.class, new DepthUpdateTypeAdapter()).create();
+
+  private static void assertSameUpdate(final DepthUpdate expected, final DepthUpdate actual) {
+    assertEquals(expected.getExchange(), actual.getExchange());
+    assertEquals(expected.getMarket(), actual.getMarket());
+    assertEquals(expected.getType(), actual.getType());
+    assertEquals(expected.getEpoch(), actual.getEpoch());
+    assertEquals(expected.getSequence(), actual.getSequence());
+    assertEquals(expected.getTimestamp(), actual.getTimestamp());
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  private static void assertRoundTrips(final UnaryOperator<DepthUpdate> codec) {
+    final DepthUpdate snapshot = DepthUpdate.snapshot(CURRENT, 1234567890123L, 7);
+    assertSameUpdate(snapshot, codec.apply(snapshot));
+    final DepthUpdate delta = DepthUpdate.delta(PREVIOUS, CURRENT, 1234567890123L, 8);
+    assertSameUpdate(delta, codec.apply(delta));
+  }
+
+  @Test
+  public void marshallerRoundTrips() {
+    assertRoundTrips(update -> MARSHALLER_GSON.fromJson(MARSHALLER_GSON.toJson(update),
+        DepthUpdate.class));
+  }
+
+  @Test
+  public void typeAdapterRoundTrips() {
+    assertRoundTrips(update -> TYPE_ADAPTER_GSON.fromJson(TYPE_ADAPTER_GSON.toJson(update),
+        DepthUpdate.class));
+  }
+
+  @Test
+  public void binaryMarshallerRoundTrips() {
+    final DepthUpdateBinaryMarshaller marshaller = new DepthUpdateBinaryMarshaller();
+    assertRoundTrips(update -> {
+      final BinaryWriter out = new BinaryWriter();
+      marshaller.write(out, update);
+      return marshaller.read(new BinaryReader(out.toByteArray()));
+    });
+  }
+
+  @Test
+  public void readsLegacyFullDepthAsUnsequencedSnapshot() {
+    final DepthUpdate update = TYPE_ADAPTER_GSON.fromJson("{\"asks\":[[\"1.5\",\"101\"]],"
+        + "\"bids\":[[\"2\",\"100\"]],\"exchange\":\"BITSTAMP\",\"market\":\"BTC_USD\"}",
+        DepthUpdate.class);
+    assertTrue(update.isSnapshot());
+    assertEquals(DepthUpdate.NO_EPOCH, update.getEpoch());
+    assertEquals(DepthUpdate.UNSEQUENCED, update.getSequence());
+    assertEquals(2, update.getNumLevels());
+  }
+
+  @Test
+  public void deltaAppliesToPreviousBook() {
+    final DepthUpdate delta = DepthUpdate.delta(PREVIOUS, CURRENT, 1, 2);
+    // Changed bid, added and removed bid, changed ask, removed and added ask.
+    assertEquals(5, delta.getNumLevels());
+    final ScaledMarketDepth applied = delta.applyTo(PREVIOUS);
+    assertEquals(CURRENT.getNumBids(), applied.getNumBids());
+    assertEquals(CURRENT.getNumAsks(), applied.getNumAsks());
+    assertTrue(DepthUpdate.delta(CURRENT, applied, 1, 3).isEmpty());
+  }
+}
@@ -0,0 +1,87 @@
+package com.marketstem.services.rest.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import com.marketstem.exchanges.data.Asset;
+import com.marketstem.services.rest.resources.AssetsResource.InvalidBatchConversionException;
+import com.marketstem.services.rest.resources.AssetsResource.ResolvedBatchConversion;
+
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class AssetsResourceTest {
+
+  private static void assertRejected(final Status status, final String batchConversionJson) {
+    try {
+      AssetsResource.resolve(batchConversionJson);
+      fail("Accepted " + batchConversionJson);
+    } catch (final InvalidBatchConversionException e) {
+      assertEquals(status, e.getStatus());
+    }
+  }
+
+  private static String repeat(final String element, final int times) {
+    return String.join(",", Collections.nCopies(times, element));
+  }
+
+  @Test
+  public void resolvesKnownAssetsAndAliases() {
+    final ResolvedBatchConversion batch = AssetsResource
+        .resolve("{\"amounts\":{\"xbt\":[\"1.5\",\"0.2\"]},\"to\":[\"USD\",\"EUR\"]}");
+    assertEquals(Arrays.asList(new BigDecimal("1.5"), new BigDecimal("0.2")),
+        batch.getAmounts().get(Asset.fromString("BTC")));
+    assertEquals(Arrays.asList(Asset.fromString("USD"), Asset.fromString("EUR")),
+        batch.getToAssets().stream().collect(Collectors.toList()));
+  }
+
+  @Test
+  public void combinesAmountsOfTheSameAsset() {
+    final ResolvedBatchConversion batch = AssetsResource.resolve(
+        "{\"amounts\":{\"BTC\":[\"1\"],\"xbt\":[\"2\"],\"btc\":[\"3\"]},\"to\":[\"USD\"]}");
+    assertEquals(1, batch.getAmounts().size());
+    assertEquals(Arrays.asList(new BigDecimal("1"), new BigDecimal("2"), new BigDecimal("3")),
+        batch.getAmounts().get(Asset.fromString("BTC")));
+  }
+
+  @Test
+  public void rejectsMalformedBatches() {
+    assertRejected(Status.BAD_REQUEST, "{\"amounts\":");
+    assertRejected(Status.BAD_REQUEST, "");
+    assertRejected(Status.BAD_REQUEST, "{\"amounts\":{\"BTC\":[\"1\"]}}");
+    assertRejected(Status.BAD_REQUEST, "{\"amounts\":{\"BTC\":[\"one\"]},\"to\":[\"USD\"]}");
+    assertRejected(Status.BAD_REQUEST, "{\"amounts\":{\"BTC\":null},\"to\":[\"USD\"]}");
+    assertRejected(Status.BAD_REQUEST, "{\"amounts\":{\"BTC\":[null]},\"to\":[\"USD\"]}");
+    assertRejected(Status.BAD_REQUEST, "{\"amounts\":{\"BTC\":[\"1\"]},\"to\":[null]}");
+  }
+
+  @Test
+  public void rejectsUnknownAssetsWithoutCreatingThem() {
+    assertRejected(Status.BAD_REQUEST, "{\"amounts\":{\"NOTANASSET1\":[\"1\"]},\"to\":[\"USD\"]}");
+    assertRejected(Status.BAD_REQUEST, "{\"amounts\":{\"BTC\":[\"1\"]},\"to\":[\"NOTANASSET2\"]}");
+    assertFalse(Asset.fromKnownString("NOTANASSET1").isPresent());
+    assertFalse(Asset.fromKnownString("NOTANASSET2").isPresent());
+  }
+
+  @Test
+  public void rejectsTooManyConversions() {
+    final int amounts = AssetsResource.MAX_BATCH_CONVERSIONS / 2 + 1;
+    assertRejected(Status.REQUEST_ENTITY_TOO_LARGE, "{\"amounts\":{\"BTC\":["
+        + repeat("\"1\"", amounts) + "]},\"to\":[\"USD\",\"EUR\"]}");
+  }
+
+  @Test
+  public void rejectsTooManyAssetsBeforeLookingThemUp() {
+    final String to = IntStream.rangeClosed(0, AssetsResource.MAX_BATCH_ASSETS)
+        .mapToObj(i -> "\"UNKNOWN" + i + "\"").collect(Collectors.joining(","));
+    assertRejected(Status.REQUEST_ENTITY_TOO_LARGE, "{\"amounts\":{},\"to\":[" + to + "]}");
+  }
+}